@@ -0,0 +1,97 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The <code>BulkLoadReport</code> class holds the outcome of a bulk load: how many rows
+ * were loaded and why each of the other rows was rejected.
+ */
+public class BulkLoadReport {
+    private int loaded;
+    private List<RowError> errors;
+
+    /**
+     * Parameterized constructor for creating a report.
+     * @param loaded
+     * The number of rows that were loaded.
+     * @param errors
+     * The rows that were rejected, in feed order.
+     */
+    public BulkLoadReport(int loaded, List<RowError> errors) {
+        this.loaded = loaded;
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * Gets the number of rows that were loaded.
+     * @return
+     * Returns the number of loaded rows.
+     */
+    public int getLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Gets the rows that were rejected.
+     * @return
+     * Returns the rejected rows, in feed order.
+     */
+    public List<RowError> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns a one line summary of the load.
+     * @return
+     * Returns the number of rows loaded and rejected.
+     */
+    public String toString() {
+        return loaded + " item(s) loaded, " + errors.size() + " row(s) rejected.";
+    }
+
+    /**
+     * The <code>RowError</code> class describes one rejected row.
+     */
+    public static class RowError {
+        private int lineNumber;
+        private String message;
+
+        /**
+         * Parameterized constructor for creating a row error.
+         * @param lineNumber
+         * The line or record number of the rejected row.
+         * @param message
+         * The reason the row was rejected.
+         */
+        public RowError(int lineNumber, String message) {
+            this.lineNumber = lineNumber;
+            this.message = message;
+        }
+
+        /**
+         * Gets the line or record number of the rejected row.
+         * @return
+         * Returns the line number.
+         */
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * Gets the reason the row was rejected.
+         * @return
+         * Returns the error message.
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * Returns the error in the form "Line n: message".
+         * @return
+         * Returns the formatted error.
+         */
+        public String toString() {
+            return "Line " + lineNumber + ": " + message;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The <code>CartEvictionPolicy</code> interface decides which open carts of an
+ * <code>ItemList</code> have been left behind, so that <code>evictCarts</code> can put their
+ * items back on their original shelves.
+ */
+public interface CartEvictionPolicy {
+    /**
+     * Decides whether to evict a cart.
+     * @param session
+     * The session of the open cart.
+     * @param nowMillis
+     * The current time in milliseconds since the epoch.
+     * @return
+     * Returns whether the cart should be emptied back onto the shelves.
+     */
+    boolean shouldEvict(CartSession session, long nowMillis);
+
+    /**
+     * Creates a policy that evicts carts nothing has been moved into or out of for a while.
+     * @param duration
+     * How long a cart may be idle.
+     * @param unit
+     * The unit of <code>duration</code>.
+     * @return
+     * Returns the policy.
+     */
+    static CartEvictionPolicy idleFor(long duration, TimeUnit unit) {
+        long millis = unit.toMillis(duration);
+        return (session, nowMillis) -> nowMillis - session.getLastActivityMillis() >= millis;
+    }
+
+    /**
+     * Creates a policy that evicts carts that have been open for a while, however busy they
+     * are, such as carts still open at closing time.
+     * @param duration
+     * How long a cart may be open.
+     * @param unit
+     * The unit of <code>duration</code>.
+     * @return
+     * Returns the policy.
+     */
+    static CartEvictionPolicy openFor(long duration, TimeUnit unit) {
+        long millis = unit.toMillis(duration);
+        return (session, nowMillis) -> nowMillis - session.getOpenedMillis() >= millis;
+    }
+
+    /**
+     * Combines this policy with another.
+     * @param other
+     * The other policy.
+     * @return
+     * Returns a policy that evicts a cart if either policy would.
+     */
+    default CartEvictionPolicy or(CartEvictionPolicy other) {
+        return (session, nowMillis) -> shouldEvict(session, nowMillis) || other.shouldEvict(session, nowMillis);
+    }
+}
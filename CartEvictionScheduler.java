@@ -0,0 +1,97 @@
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * The <code>CartEvictionScheduler</code> class checks the open carts of an
+ * <code>ItemList</code> in the background and puts the items of the carts a policy picks
+ * back on their original shelves.
+ * <p>
+ * It runs as a <code>ScheduledListTask</code>, so each check holds the monitor of the list.
+ */
+public class CartEvictionScheduler implements Closeable {
+    private ItemList list;
+    private CartEvictionPolicy policy;
+    private Consumer<CartSession> evicted;
+    private ScheduledListTask task;
+    private AtomicLong evictedCount;
+
+    /**
+     * Parameterized constructor which starts checking right away.
+     * @param list
+     * The list whose carts are checked.
+     * @param policy
+     * Decides which carts to evict.
+     * @param period
+     * The time between checks.
+     * @param unit
+     * The unit of <code>period</code>.
+     * @param evicted
+     * Receives the session of each evicted cart, as it was before the eviction. It is called
+     * while the list is locked.
+     * @throws IllegalArgumentException
+     * Indicates that the period is not positive.
+     */
+    public CartEvictionScheduler(ItemList list, CartEvictionPolicy policy, long period, TimeUnit unit, Consumer<CartSession> evicted) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive.");
+        }
+        this.list = list;
+        this.policy = policy;
+        this.evicted = evicted;
+        this.evictedCount = new AtomicLong();
+        this.task = new ScheduledListTask(list, "cart-eviction", this::evictCarts);
+        task.start(period, unit);
+    }
+
+    /**
+     * Evicts the carts the policy picks now.
+     * @return
+     * Returns the number of carts evicted, or 0 if the check failed.
+     */
+    public int evict() {
+        return task.run();
+    }
+
+    /**
+     * A helper method to evict the carts the policy picks while the list is locked.
+     * @return
+     * Returns the number of carts evicted.
+     */
+    private int evictCarts() {
+        List<CartSession> sessions = task.locked(() -> {
+            List<CartSession> evictedNow = list.evictCarts(policy);
+            evictedNow.forEach(evicted);
+            return evictedNow;
+        });
+        evictedCount.addAndGet(sessions.size());
+        return sessions.size();
+    }
+
+    /**
+     * Gets the number of carts evicted since the scheduler started.
+     * @return
+     * Returns the number of carts evicted.
+     */
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    /**
+     * Gets the last error thrown by a check, such as a failing consumer.
+     * @return
+     * Returns the last error, or null if there has been none.
+     */
+    public RuntimeException getLastError() {
+        return task.getLastError();
+    }
+
+    /**
+     * Stops checking, waiting for a check that is running to finish.
+     */
+    public void close() {
+        task.close();
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * The <code>CartSession</code> class describes an open cart of an <code>ItemList</code> at
+ * one moment: how many items it holds, their subtotal, when the first of them was put in
+ * and when the cart last changed. A cart is open from the moment an item is moved into it
+ * until it is checked out, emptied or evicted.
+ */
+public class CartSession {
+    private String cartNumber;
+    private int itemCount;
+    private long subtotalCents;
+    private long openedMillis;
+    private long lastActivityMillis;
+
+    /**
+     * Parameterized constructor for creating a description of a session.
+     * @param cartNumber
+     * The cart number.
+     * @param itemCount
+     * The number of items in the cart.
+     * @param subtotalCents
+     * The total price of the items in the cart in cents.
+     * @param openedMillis
+     * The time the cart was opened, in milliseconds since the epoch.
+     * @param lastActivityMillis
+     * The time an item was last moved into or out of the cart, in milliseconds since the epoch.
+     */
+    public CartSession(String cartNumber, int itemCount, long subtotalCents, long openedMillis, long lastActivityMillis) {
+        this.cartNumber = cartNumber;
+        this.itemCount = itemCount;
+        this.subtotalCents = subtotalCents;
+        this.openedMillis = openedMillis;
+        this.lastActivityMillis = lastActivityMillis;
+    }
+
+    /**
+     * Gets the cart number.
+     * @return
+     * Returns the cart number, such as c001.
+     */
+    public String getCartNumber() {
+        return cartNumber;
+    }
+
+    /**
+     * Gets the number of items in the cart.
+     * @return
+     * Returns the number of items.
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Gets the subtotal of the cart, which is what <code>checkOut</code> would charge for it.
+     * @return
+     * Returns the subtotal in cents.
+     */
+    public long getSubtotalCents() {
+        return subtotalCents;
+    }
+
+    /**
+     * Gets the time the cart was opened.
+     * @return
+     * Returns the time in milliseconds since the epoch.
+     */
+    public long getOpenedMillis() {
+        return openedMillis;
+    }
+
+    /**
+     * Gets the time an item was last moved into or out of the cart.
+     * @return
+     * Returns the time in milliseconds since the epoch.
+     */
+    public long getLastActivityMillis() {
+        return lastActivityMillis;
+    }
+
+    /**
+     * Returns a one line summary of the session.
+     * @return
+     * Returns the cart number, the number of items, the subtotal and how long the cart has
+     * been idle.
+     */
+    public String toString() {
+        long idleSeconds = Math.max(0, System.currentTimeMillis() - lastActivityMillis) / 1000;
+        return cartNumber + ": " + itemCount + " item(s), subtotal "
+                + String.format("%.2f", ItemCodes.toDollars(subtotalCents)) + ", idle " + idleSeconds + "s.";
+    }
+}
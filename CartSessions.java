@@ -0,0 +1,96 @@
+import java.util.Arrays;
+
+/**
+ * The <code>CartSessions</code> class keeps track of which carts of an <code>ItemList</code>
+ * are open, when each was opened and when it last changed. The items in a cart and their
+ * subtotal are already kept by the <code>LocationIndex</code>, so a session only adds the
+ * times. There are at most <code>ItemCodes.CART_COUNT</code> carts, so the sessions are
+ * plain arrays indexed by cart, allocated when the first cart is opened.
+ */
+public class CartSessions {
+    private long[] openedAt;
+    private long[] lastActivityAt;
+    private int openCount;
+
+    /**
+     * Default constructor which initializes this object with every cart closed.
+     */
+    public CartSessions() {
+    }
+
+    /**
+     * Records that an item was moved into or out of a cart, opening it if it was closed.
+     * @param cart
+     * The location code of the cart.
+     * @param nowMillis
+     * The current time in milliseconds since the epoch.
+     */
+    public void touch(int cart, long nowMillis) {
+        int i = cart - ItemCodes.CART_BASE;
+        if (openedAt == null) {
+            openedAt = new long[ItemCodes.CART_COUNT];
+            lastActivityAt = new long[ItemCodes.CART_COUNT];
+            Arrays.fill(openedAt, -1);
+        }
+        if (openedAt[i] < 0) {
+            openedAt[i] = nowMillis;
+            openCount++;
+        }
+        lastActivityAt[i] = nowMillis;
+    }
+
+    /**
+     * Closes a cart, such as once it has been checked out or emptied.
+     * @param cart
+     * The location code of the cart.
+     */
+    public void close(int cart) {
+        int i = cart - ItemCodes.CART_BASE;
+        if (openedAt != null && openedAt[i] >= 0) {
+            openedAt[i] = -1;
+            openCount--;
+        }
+    }
+
+    /**
+     * Checks whether a cart is open.
+     * @param cart
+     * The location code of the cart.
+     * @return
+     * Returns whether the cart is open.
+     */
+    public boolean isOpen(int cart) {
+        return openedAt != null && openedAt[cart - ItemCodes.CART_BASE] >= 0;
+    }
+
+    /**
+     * Gets the time a cart was opened.
+     * @param cart
+     * The location code of the cart.
+     * @return
+     * Returns the time in milliseconds since the epoch, or -1 if the cart is closed.
+     */
+    public long openedAt(int cart) {
+        return openedAt == null ? -1 : openedAt[cart - ItemCodes.CART_BASE];
+    }
+
+    /**
+     * Gets the time a cart last changed.
+     * @param cart
+     * The location code of the cart.
+     * @return
+     * Returns the time in milliseconds since the epoch. It is only meaningful for an open cart.
+     */
+    public long lastActivityAt(int cart) {
+        return lastActivityAt == null ? 0 : lastActivityAt[cart - ItemCodes.CART_BASE];
+    }
+
+    /**
+     * Gets the number of open carts.
+     * @return
+     * Returns the number of open carts.
+     */
+    public int openCount() {
+        return openCount;
+    }
+}
@@ -0,0 +1,645 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The <code>CatalogImage</code> class is a read only image of every item of a list, laid out
+ * so that a list can be served from it as soon as the file is mapped, without reading the
+ * items first. See <code>ItemList(CatalogImage)</code>, which only turns the records it
+ * needs into items.
+ * <p>
+ * The file starts with a fixed header of the magic number, the version, the item, name,
+ * location and misplaced item counts, the offset of each section and the checksums of the
+ * small sections, followed by a CRC32 of the header itself. The sections are:
+ * <ul>
+ * <li>the table of distinct item names;</li>
+ * <li>one fixed width record per item in list order, and so sorted by rfid tag, holding the
+ * index of the name in the table, the packed tag, both location codes and the price in
+ * cents, as in <code>ItemSnapshot</code>;</li>
+ * <li>a sparse index holding the first tag of every block of <code>BLOCK_SIZE</code>
+ * records and a CRC32 of the block;</li>
+ * <li>a directory of the non-empty locations in location code order, holding where the
+ * location's record numbers start in the postings, how many there are, their total price
+ * in cents and a CRC32 of them;</li>
+ * <li>the postings: the record numbers of the items at each location, in list order, except
+ * that the items that are out are kept in the order they went out.</li>
+ * </ul>
+ * The header, names, sparse index and directory are checked when the image is opened. A
+ * block of records or the postings of a location are checked the first time they are read,
+ * so opening costs time in the number of names and locations, not items. An image is
+ * written to a temporary file and renamed into place, so a crash never leaves half of one.
+ */
+public class CatalogImage {
+    private static final int MAGIC = 0x49434154;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 80;
+    private static final int RECORD_SIZE = 4 + 8 + 4 + 4 + 8;
+    private static final int INDEX_ENTRY_SIZE = 8 + 4;
+    private static final int DIRECTORY_ENTRY_SIZE = 4 + 4 + 4 + 8 + 4;
+    private static final int BLOCK_SIZE = 1024;
+
+    private Path file;
+    private ByteBuffer buffer;
+    private int count;
+    private int[] nameIds;
+    private long recordsOffset;
+    private long indexOffset;
+    private long postingsOffset;
+    private int blocks;
+    private BitSet checkedBlocks;
+    private int[] entryAt;
+    private int[] postingStart;
+    private int[] postingCrc;
+    private BitSet checkedLocations;
+    private int[] countAt;
+    private long[] valueAt;
+    private int misplaced;
+
+    /**
+     * A helper constructor for an image that <code>open</code> has mapped, and fills in.
+     */
+    private CatalogImage(Path file, ByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Writes an image of a list.
+     * @param file
+     * The file to write the image to.
+     * @param list
+     * The list to save.
+     * @throws IOException
+     * Indicates that the image could not be written.
+     */
+    public static void write(Path file, ItemList list) throws IOException {
+        ItemInfo[] items = new ItemInfo[list.size()];
+        int[] filled = new int[1];
+        list.forEach(item -> items[filled[0]++] = item);
+        write(file, items, list.purchasedInOrder());
+    }
+
+    /**
+     * Writes an image of items that have been copied out of a list, so that it can be
+     * written while the list carries on changing.
+     * @param file
+     * The file to write the image to.
+     * @param items
+     * The items, in list order.
+     * @param purchased
+     * The items of <code>items</code> that are out, in the order they went out.
+     * @throws IOException
+     * Indicates that the image could not be written.
+     */
+    static void write(Path file, ItemInfo[] items, List<ItemInfo> purchased) throws IOException {
+        // The Big-O notation of this method is O(n + l) for the n items and l possible
+        // locations, because the postings are filled with a counting sort by location.
+        int n = items.length;
+        int[] nameIndex = new int[NameDictionary.size()];
+        Arrays.fill(nameIndex, -1);
+        List<String> names = new ArrayList<>();
+        int[] countAt = new int[ItemCodes.LOCATION_COUNT];
+        long[] valueAt = new long[ItemCodes.LOCATION_COUNT];
+        int misplaced = 0;
+        Map<ItemInfo, Integer> outRecords = new IdentityHashMap<>();
+        for (int r = 0; r < n; r++) {
+            ItemInfo item = items[r];
+            if (nameIndex[item.getNameId()] < 0) {
+                nameIndex[item.getNameId()] = names.size();
+                names.add(item.getName());
+            }
+            int location = item.getCurrentLocationCode();
+            countAt[location]++;
+            valueAt[location] += item.getPriceCents();
+            if (LocationIndex.isMisplaced(item)) {
+                misplaced++;
+            }
+            if (location == ItemCodes.OUT) {
+                outRecords.put(item, r);
+            }
+        }
+        int[] start = new int[ItemCodes.LOCATION_COUNT];
+        int locations = 0;
+        for (int location = 0, next = 0; location < ItemCodes.LOCATION_COUNT; location++) {
+            start[location] = next;
+            next += countAt[location];
+            if (countAt[location] > 0) {
+                locations++;
+            }
+        }
+        int[] postings = new int[n];
+        int[] fill = start.clone();
+        for (int r = 0; r < n; r++) {
+            int location = items[r].getCurrentLocationCode();
+            if (location != ItemCodes.OUT) {
+                postings[fill[location]++] = r;
+            }
+        }
+        for (ItemInfo item : purchased) {
+            postings[fill[ItemCodes.OUT]++] = outRecords.get(item);
+        }
+
+        byte[][] encoded = new byte[names.size()][];
+        long namesSize = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = names.get(i).getBytes(StandardCharsets.UTF_8);
+            namesSize += 2 + encoded[i].length;
+        }
+        int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        long namesOffset = HEADER_SIZE;
+        long recordsOffset = namesOffset + namesSize;
+        long indexOffset = recordsOffset + (long) n * RECORD_SIZE;
+        long directoryOffset = indexOffset + (long) blocks * INDEX_ENTRY_SIZE;
+        long postingsOffset = directoryOffset + (long) locations * DIRECTORY_ENTRY_SIZE;
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer out = ByteBuffer.allocate(Math.max(1 << 16, BLOCK_SIZE * RECORD_SIZE));
+            CRC32 crc = new CRC32();
+            channel.position(namesOffset);
+            for (byte[] name : encoded) {
+                if (out.remaining() < 2 + name.length) {
+                    flush(channel, out, crc);
+                }
+                out.putShort((short) name.length);
+                out.put(name);
+            }
+            flush(channel, out, crc);
+            int namesCrc = (int) crc.getValue();
+
+            ByteBuffer index = ByteBuffer.allocate(blocks * INDEX_ENTRY_SIZE);
+            for (int block = 0; block < blocks; block++) {
+                int first = block * BLOCK_SIZE;
+                int last = Math.min(n, first + BLOCK_SIZE);
+                for (int r = first; r < last; r++) {
+                    ItemInfo item = items[r];
+                    out.putInt(nameIndex[item.getNameId()]);
+                    out.putLong(item.getRfidTag());
+                    out.putInt(item.getOriginalLocationCode());
+                    out.putInt(item.getCurrentLocationCode());
+                    out.putLong(item.getPriceCents());
+                }
+                crc.reset();
+                flush(channel, out, crc);
+                index.putLong(items[first].getRfidTag());
+                index.putInt((int) crc.getValue());
+            }
+            crc.reset();
+            index.flip();
+            crc.update(index.duplicate());
+            int indexCrc = (int) crc.getValue();
+            write(channel, index);
+
+            ByteBuffer directory = ByteBuffer.allocate(locations * DIRECTORY_ENTRY_SIZE);
+            for (int location = 0; location < ItemCodes.LOCATION_COUNT; location++) {
+                if (countAt[location] == 0) {
+                    continue;
+                }
+                crc.reset();
+                ByteBuffer posting = ByteBuffer.allocate(countAt[location] * 4);
+                posting.asIntBuffer().put(postings, start[location], countAt[location]);
+                crc.update(posting);
+                directory.putInt(location);
+                directory.putInt(start[location]);
+                directory.putInt(countAt[location]);
+                directory.putLong(valueAt[location]);
+                directory.putInt((int) crc.getValue());
+            }
+            crc.reset();
+            directory.flip();
+            crc.update(directory.duplicate());
+            int directoryCrc = (int) crc.getValue();
+            write(channel, directory);
+
+            for (int i = 0; i < n; i += out.capacity() / 4) {
+                int length = Math.min(n - i, out.capacity() / 4);
+                out.asIntBuffer().put(postings, i, length);
+                out.position(length * 4);
+                flush(channel, out, null);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(n);
+            header.putInt(names.size());
+            header.putInt(locations);
+            header.putInt(misplaced);
+            header.putLong(namesOffset);
+            header.putLong(recordsOffset);
+            header.putLong(indexOffset);
+            header.putLong(directoryOffset);
+            header.putLong(postingsOffset);
+            header.putInt(namesCrc);
+            header.putInt(indexCrc);
+            header.putInt(directoryCrc);
+            crc.reset();
+            crc.update(header.array(), 0, HEADER_SIZE - 4);
+            header.putInt((int) crc.getValue());
+            header.flip();
+            channel.position(0);
+            write(channel, header);
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Opens an image by mapping it into memory. The names are added to the
+     * <code>NameDictionary</code>, but no record is read.
+     * @param file
+     * The file to open.
+     * @return
+     * Returns the image.
+     * @throws IOException
+     * Indicates that the image could not be read, is not an image, or is damaged.
+     */
+    public static CatalogImage open(Path file) throws IOException {
+        // The Big-O notation of this method is O(d + b + l) for the d distinct names, b blocks
+        // and l non-empty locations, since the records and postings are only checked once
+        // they are read.
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to be a catalog image.");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a catalog image.");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(file + " is a catalog image of version " + buffer.getInt(4) + ", not " + VERSION + ".");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, HEADER_SIZE - 4));
+        if ((int) crc.getValue() != buffer.getInt(HEADER_SIZE - 4)) {
+            throw new IOException(file + " is damaged: its header checksum does not match.");
+        }
+        CatalogImage image = new CatalogImage(file, buffer);
+        image.count = buffer.getInt(8);
+        int nameCount = buffer.getInt(12);
+        int locations = buffer.getInt(16);
+        image.misplaced = buffer.getInt(20);
+        long namesOffset = buffer.getLong(24);
+        image.recordsOffset = buffer.getLong(32);
+        image.indexOffset = buffer.getLong(40);
+        long directoryOffset = buffer.getLong(48);
+        image.postingsOffset = buffer.getLong(56);
+        image.blocks = (image.count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (image.count < 0 || nameCount < 0 || locations < 0 || locations > ItemCodes.LOCATION_COUNT
+                || namesOffset != HEADER_SIZE
+                || image.indexOffset != image.recordsOffset + (long) image.count * RECORD_SIZE
+                || directoryOffset != image.indexOffset + (long) image.blocks * INDEX_ENTRY_SIZE
+                || image.postingsOffset != directoryOffset + (long) locations * DIRECTORY_ENTRY_SIZE
+                || buffer.limit() != image.postingsOffset + (long) image.count * 4) {
+            throw new IOException(file + " is damaged: its sections do not fit the file.");
+        }
+        check(file, buffer, namesOffset, image.recordsOffset, buffer.getInt(64), "names");
+        check(file, buffer, image.indexOffset, directoryOffset, buffer.getInt(68), "index");
+        check(file, buffer, directoryOffset, image.postingsOffset, buffer.getInt(72), "directory");
+
+        image.nameIds = new int[nameCount];
+        int position = (int) namesOffset;
+        for (int i = 0; i < nameCount; i++) {
+            int length = buffer.getShort(position) & 0xFFFF;
+            byte[] bytes = new byte[length];
+            buffer.get(position + 2, bytes);
+            image.nameIds[i] = NameDictionary.idOf(new String(bytes, StandardCharsets.UTF_8));
+            position += 2 + length;
+        }
+
+        image.entryAt = new int[ItemCodes.LOCATION_COUNT];
+        Arrays.fill(image.entryAt, -1);
+        image.postingStart = new int[locations];
+        image.postingCrc = new int[locations];
+        image.countAt = new int[ItemCodes.LOCATION_COUNT];
+        image.valueAt = new long[ItemCodes.LOCATION_COUNT];
+        long total = 0;
+        for (int i = 0; i < locations; i++) {
+            int entry = (int) directoryOffset + i * DIRECTORY_ENTRY_SIZE;
+            int location = buffer.getInt(entry);
+            int start = buffer.getInt(entry + 4);
+            int count = buffer.getInt(entry + 8);
+            if (location < 0 || location >= ItemCodes.LOCATION_COUNT || start < 0 || count < 0 || (long) start + count > image.count) {
+                throw new IOException(file + " is damaged: its directory names an invalid location.");
+            }
+            image.entryAt[location] = i;
+            image.postingStart[i] = start;
+            image.countAt[location] = count;
+            image.valueAt[location] = buffer.getLong(entry + 12);
+            image.postingCrc[i] = buffer.getInt(entry + 20);
+            total += count;
+        }
+        if (total != image.count) {
+            throw new IOException(file + " is damaged: its directory does not hold " + image.count + " items.");
+        }
+        image.checkedBlocks = new BitSet(image.blocks);
+        image.checkedLocations = new BitSet(locations);
+        return image;
+    }
+
+    /**
+     * Gets the number of items in the image.
+     * @return
+     * Returns the number of items.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Gets the number of items in the image that are on a shelf other than their original one.
+     * @return
+     * Returns the number of misplaced items.
+     */
+    public int misplacedCount() {
+        return misplaced;
+    }
+
+    /**
+     * Gets the number of items in the image at every location.
+     * @return
+     * Returns a new array of the item counts, indexed by location code.
+     */
+    public int[] countsByLocation() {
+        return countAt.clone();
+    }
+
+    /**
+     * Gets the total price of the items in the image at every location.
+     * @return
+     * Returns a new array of the totals in cents, indexed by location code.
+     */
+    public long[] valuesByLocation() {
+        return valueAt.clone();
+    }
+
+    /**
+     * Finds the first record with an rfid tag.
+     * @param tag
+     * The packed rfid tag.
+     * @return
+     * Returns the number of the first record with the tag, or -1 if there is none. The
+     * other records with the tag follow it directly.
+     */
+    int findTag(long tag) {
+        // The Big-O notation of this method is O(log n): a binary search of the sparse index
+        // picks the block, and a binary search of that block finds the record.
+        int low = 0;
+        int high = blocks - 1;
+        int block = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getLong((int) (indexOffset + (long) mid * INDEX_ENTRY_SIZE)) < tag) {
+                block = mid;
+                low = mid + 1;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        low = block * BLOCK_SIZE;
+        high = Math.min(count, low + BLOCK_SIZE);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (tagOf(mid) < tag) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low < count && tagOf(low) == tag ? low : -1;
+    }
+
+    /**
+     * Gets the rfid tag of a record.
+     * @param record
+     * The record number.
+     * @return
+     * Returns the packed rfid tag.
+     */
+    long tagOf(int record) {
+        checkBlock(record / BLOCK_SIZE);
+        return buffer.getLong(offsetOf(record) + 4);
+    }
+
+    /**
+     * Gets the original location of a record.
+     * @param record
+     * The record number.
+     * @return
+     * Returns the original location code.
+     */
+    int originalOf(int record) {
+        checkBlock(record / BLOCK_SIZE);
+        return buffer.getInt(offsetOf(record) + 12);
+    }
+
+    /**
+     * Gets the index of the name of a record in the table of names.
+     * @param record
+     * The record number.
+     * @return
+     * Returns the index of the name, from 0 to <code>nameCount() - 1</code>.
+     */
+    int nameIndexOf(int record) {
+        checkBlock(record / BLOCK_SIZE);
+        return buffer.getInt(offsetOf(record));
+    }
+
+    /**
+     * Gets the number of distinct names in the table of names.
+     * @return
+     * Returns the number of names.
+     */
+    int nameCount() {
+        return nameIds.length;
+    }
+
+    /**
+     * Gets a name from the table of names.
+     * @param index
+     * The index of the name.
+     * @return
+     * Returns the name.
+     */
+    String nameAt(int index) {
+        return NameDictionary.nameOf(nameIds[index]);
+    }
+
+    /**
+     * Gets the current location of a record.
+     * @param record
+     * The record number.
+     * @return
+     * Returns the current location code.
+     */
+    int locationOf(int record) {
+        checkBlock(record / BLOCK_SIZE);
+        return buffer.getInt(offsetOf(record) + 16);
+    }
+
+    /**
+     * Reads a record as a new item.
+     * @param record
+     * The record number.
+     * @return
+     * Returns the item, which belongs to no list yet.
+     */
+    ItemInfo read(int record) {
+        checkBlock(record / BLOCK_SIZE);
+        int offset = offsetOf(record);
+        return new ItemInfo(nameIds[buffer.getInt(offset)], buffer.getLong(offset + 4), buffer.getInt(offset + 12),
+                buffer.getInt(offset + 16), buffer.getLong(offset + 20));
+    }
+
+    /**
+     * Gets the records of the items at a location.
+     * @param location
+     * The location code.
+     * @return
+     * Returns the record numbers in list order, or in the order they went out for out.
+     */
+    int[] recordsAt(int location) {
+        int entry = entryAt[location];
+        if (entry < 0) {
+            return new int[0];
+        }
+        int position = (int) (postingsOffset + (long) postingStart[entry] * 4);
+        ByteBuffer posting = buffer.slice(position, countAt[location] * 4);
+        if (!checkedLocations.get(entry)) {
+            CRC32 crc = new CRC32();
+            crc.update(posting.duplicate());
+            if ((int) crc.getValue() != postingCrc[entry]) {
+                throw new UncheckedIOException(new IOException(file + " is damaged: the postings of "
+                        + ItemCodes.decodeLocation(location) + " do not match their checksum."));
+            }
+            checkedLocations.set(entry);
+        }
+        int[] records = new int[countAt[location]];
+        posting.asIntBuffer().get(records);
+        for (int record : records) {
+            if (record < 0 || record >= count) {
+                throw new UncheckedIOException(new IOException(file + " is damaged: the postings of "
+                        + ItemCodes.decodeLocation(location) + " name an invalid record."));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * A helper method to check the CRC32 of a block of records the first time it is read.
+     * @param block
+     * The block number.
+     * @throws UncheckedIOException
+     * Indicates that the block is damaged.
+     */
+    private void checkBlock(int block) {
+        if (checkedBlocks.get(block)) {
+            return;
+        }
+        int first = block * BLOCK_SIZE;
+        int length = Math.min(count - first, BLOCK_SIZE) * RECORD_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offsetOf(first), length));
+        if ((int) crc.getValue() != buffer.getInt((int) (indexOffset + (long) block * INDEX_ENTRY_SIZE + 8))) {
+            throw new UncheckedIOException(new IOException(file + " is damaged: block " + block
+                    + " of its records does not match its checksum."));
+        }
+        for (int r = first; r < first + length / RECORD_SIZE; r++) {
+            int offset = offsetOf(r);
+            if (buffer.getInt(offset) < 0 || buffer.getInt(offset) >= nameIds.length) {
+                throw new UncheckedIOException(new IOException(file + " is damaged: record " + r + " names an invalid name."));
+            }
+        }
+        checkedBlocks.set(block);
+    }
+
+    /**
+     * A helper method to find where a record starts in the file.
+     * @param record
+     * The record number.
+     * @return
+     * Returns the offset of the record.
+     */
+    private int offsetOf(int record) {
+        return (int) (recordsOffset + (long) record * RECORD_SIZE);
+    }
+
+    /**
+     * A helper method used by <code>open</code> to check the CRC32 of a section.
+     * @param file
+     * The file being opened, for the error message.
+     * @param buffer
+     * The mapped file.
+     * @param from
+     * The offset of the section.
+     * @param to
+     * The offset after the end of the section.
+     * @param expected
+     * The checksum stored in the header.
+     * @param section
+     * The name of the section, for the error message.
+     * @throws IOException
+     * Indicates that the section does not match its checksum.
+     */
+    private static void check(Path file, ByteBuffer buffer, long from, long to, int expected, String section) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice((int) from, (int) (to - from)));
+        if ((int) crc.getValue() != expected) {
+            throw new IOException(file + " is damaged: its " + section + " checksum does not match.");
+        }
+    }
+
+    /**
+     * A helper method used by <code>write</code> to write out a buffer and empty it.
+     * @param channel
+     * The file being written.
+     * @param out
+     * The buffer, filled up to its position.
+     * @param crc
+     * The checksum to add the bytes to, or null for none.
+     * @throws IOException
+     * Indicates that the buffer could not be written.
+     */
+    private static void flush(FileChannel channel, ByteBuffer out, CRC32 crc) throws IOException {
+        out.flip();
+        if (crc != null) {
+            crc.update(out.duplicate());
+        }
+        write(channel, out);
+        out.clear();
+    }
+
+    /**
+     * A helper method used by <code>write</code> to write all of a buffer.
+     * @param channel
+     * The file being written.
+     * @param out
+     * The buffer, ready to be read.
+     * @throws IOException
+     * Indicates that the buffer could not be written.
+     */
+    private static void write(FileChannel channel, ByteBuffer out) throws IOException {
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The <code>CheckOutReport</code> class holds the outcome of checking out several carts at
+ * once: the total of each cart and of the whole batch. Totals are kept in whole cents so
+ * that they add up exactly.
+ */
+public class CheckOutReport {
+    private SortedMap<String, Long> totals;
+    private int itemCount;
+    private long grandTotalCents;
+
+    /**
+     * Parameterized constructor for creating a report.
+     * @param totals
+     * The total of each cart in cents, keyed by cart number.
+     * @param itemCount
+     * The number of items that were checked out.
+     */
+    public CheckOutReport(Map<String, Long> totals, int itemCount) {
+        this.totals = Collections.unmodifiableSortedMap(new TreeMap<>(totals));
+        this.itemCount = itemCount;
+        for (long cents : totals.values()) {
+            this.grandTotalCents += cents;
+        }
+    }
+
+    /**
+     * Gets the total of each cart.
+     * @return
+     * Returns the total of each cart in cents, in cart number order.
+     */
+    public SortedMap<String, Long> getTotals() {
+        return totals;
+    }
+
+    /**
+     * Gets the total of a cart in cents.
+     * @param cartNumber
+     * The cart number.
+     * @return
+     * Returns the total of the cart, or 0 if it was not part of the batch.
+     */
+    public long getTotalCents(String cartNumber) {
+        return totals.getOrDefault(cartNumber, 0L);
+    }
+
+    /**
+     * Gets the total of a cart, the same value <code>checkOut</code> returns for it.
+     * @param cartNumber
+     * The cart number.
+     * @return
+     * Returns the total of the cart, or 0 if it was not part of the batch.
+     */
+    public double getTotal(String cartNumber) {
+        return ItemCodes.toDollars(getTotalCents(cartNumber));
+    }
+
+    /**
+     * Gets the total of every cart in the batch in cents.
+     * @return
+     * Returns the total of the batch.
+     */
+    public long getGrandTotalCents() {
+        return grandTotalCents;
+    }
+
+    /**
+     * Gets the number of items that were checked out.
+     * @return
+     * Returns the number of items.
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Returns a one line summary of the batch.
+     * @return
+     * Returns the number of carts and items checked out and the total.
+     */
+    public String toString() {
+        return totals.size() + " cart(s) checked out, " + itemCount + " item(s), total "
+                + String.format("%.2f", ItemCodes.toDollars(grandTotalCents)) + ".";
+    }
+}
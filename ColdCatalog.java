@@ -0,0 +1,303 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * The <code>ColdCatalog</code> class keeps track of the records of a <code>CatalogImage</code>
+ * that an <code>ItemList</code> has not turned into items yet.
+ * <p>
+ * It keeps the count and total price of those records at every location, so that counts and
+ * valuations need no records at all, and it finds the records a query needs by their tag,
+ * location, name or misplacement, so that the list only hydrates those. The records of a
+ * name are found through postings that are built from the name column of the image the first
+ * time a name is looked up.
+ */
+public class ColdCatalog {
+    private CatalogImage image;
+    private BitSet hydrated;
+    private int remaining;
+    private int[] countAt;
+    private long[] valueAt;
+    private long totalValue;
+    private int misplaced;
+    private String[] lowerNames;
+    private int[] nameStart;
+    private int[] byName;
+
+    /**
+     * Parameterized constructor for an image none of whose records are hydrated yet.
+     * @param image
+     * The image to keep track of.
+     */
+    public ColdCatalog(CatalogImage image) {
+        this.image = image;
+        this.hydrated = new BitSet(image.size());
+        this.remaining = image.size();
+        this.countAt = image.countsByLocation();
+        this.valueAt = image.valuesByLocation();
+        for (long cents : valueAt) {
+            totalValue += cents;
+        }
+        this.misplaced = image.misplacedCount();
+    }
+
+    /**
+     * Gets the number of records not yet hydrated.
+     * @return
+     * Returns the number of records.
+     */
+    public int size() {
+        return remaining;
+    }
+
+    /**
+     * Gets the number of records not yet hydrated at a location.
+     * @param location
+     * The location code.
+     * @return
+     * Returns the number of records.
+     */
+    public int countAt(int location) {
+        return countAt[location];
+    }
+
+    /**
+     * Gets the total price of the records not yet hydrated at a location.
+     * @param location
+     * The location code.
+     * @return
+     * Returns the total price in cents.
+     */
+    public long valueAt(int location) {
+        return valueAt[location];
+    }
+
+    /**
+     * Gets the total price of every record not yet hydrated.
+     * @return
+     * Returns the total price in cents.
+     */
+    public long totalValue() {
+        return totalValue;
+    }
+
+    /**
+     * Gets the number of records not yet hydrated that are on a shelf other than their
+     * original one.
+     * @return
+     * Returns the number of misplaced records.
+     */
+    public int misplacedCount() {
+        return misplaced;
+    }
+
+    /**
+     * Checks whether a record has been hydrated.
+     * @param record
+     * The record number.
+     * @return
+     * Returns true if the record is an item of the list now.
+     */
+    public boolean isHydrated(int record) {
+        return hydrated.get(record);
+    }
+
+    /**
+     * Finds the next record not yet hydrated, in list order.
+     * @param record
+     * The record number to start from.
+     * @return
+     * Returns the first record at or after <code>record</code> that is not hydrated, or -1
+     * if there is none.
+     */
+    public int next(int record) {
+        int next = hydrated.nextClearBit(record);
+        return next < image.size() ? next : -1;
+    }
+
+    /**
+     * Gets the rfid tag of a record.
+     * @param record
+     * The record number.
+     * @return
+     * Returns the packed rfid tag.
+     */
+    public long tagOf(int record) {
+        return image.tagOf(record);
+    }
+
+    /**
+     * Gets the current location of a record.
+     * @param record
+     * The record number.
+     * @return
+     * Returns the current location code.
+     */
+    public int locationOf(int record) {
+        return image.locationOf(record);
+    }
+
+    /**
+     * Reads a record as a new item without hydrating it, for reads that do not keep it.
+     * @param record
+     * The record number.
+     * @return
+     * Returns a copy of the item, which belongs to no list.
+     */
+    public ItemInfo peek(int record) {
+        return image.read(record);
+    }
+
+    /**
+     * Reads a record as a new item and counts it as hydrated.
+     * @param record
+     * The record number. It must not be hydrated already.
+     * @return
+     * Returns the item, which belongs to no list yet.
+     */
+    public ItemInfo take(int record) {
+        ItemInfo item = image.read(record);
+        int location = item.getCurrentLocationCode();
+        hydrated.set(record);
+        remaining--;
+        countAt[location]--;
+        valueAt[location] -= item.getPriceCents();
+        totalValue -= item.getPriceCents();
+        if (LocationIndex.isMisplaced(item)) {
+            misplaced--;
+        }
+        return item;
+    }
+
+    /**
+     * Gets the records of the items at a location, hydrated or not.
+     * @param location
+     * The location code.
+     * @return
+     * Returns the record numbers in list order, or in the order they went out for out.
+     */
+    public int[] recordsAt(int location) {
+        return image.recordsAt(location);
+    }
+
+    /**
+     * Finds the records not yet hydrated with an rfid tag.
+     * @param tag
+     * The packed rfid tag.
+     * @return
+     * Returns the records with the tag in increasing order, or none if there are none or
+     * they are hydrated already.
+     */
+    public int[] recordsOfTag(long tag) {
+        // The Big-O notation of this method is O(log n + k) for the k records sharing the tag.
+        int first = image.findTag(tag);
+        if (first < 0 || hydrated.get(first)) {
+            return new int[0];
+        }
+        return withTags(new int[] {first});
+    }
+
+    /**
+     * Finds the records not yet hydrated whose name matches, ignoring case.
+     * @param matches
+     * Receives the lower case form of each distinct name in the image, and returns whether
+     * its records are wanted.
+     * @return
+     * Returns the matching records in increasing order.
+     */
+    public int[] recordsNamed(Predicate<String> matches) {
+        // The Big-O notation of this method is O(d + k) for the d distinct names in the image
+        // and the k records with a matching name, once the postings are built in O(n).
+        if (lowerNames == null) {
+            indexNames();
+        }
+        IntStream.Builder records = IntStream.builder();
+        for (int index = 0; index < lowerNames.length; index++) {
+            if (nameStart[index] < nameStart[index + 1] && matches.test(lowerNames[index])) {
+                for (int i = nameStart[index]; i < nameStart[index + 1]; i++) {
+                    if (!hydrated.get(byName[i])) {
+                        records.add(byName[i]);
+                    }
+                }
+            }
+        }
+        return records.build().sorted().toArray();
+    }
+
+    /**
+     * Finds the records not yet hydrated that are on a shelf other than their original one.
+     * @return
+     * Returns the misplaced records in increasing order.
+     */
+    public int[] misplacedRecords() {
+        // The Big-O notation of this method is O(c) for the c records not yet hydrated, but
+        // it only reads their location columns and stops once every misplaced one is found.
+        int[] records = new int[misplaced];
+        int count = 0;
+        for (int r = next(0); r >= 0 && count < records.length; r = next(r + 1)) {
+            int current = image.locationOf(r);
+            if (ItemCodes.isShelf(current) && current != image.originalOf(r)) {
+                records[count++] = r;
+            }
+        }
+        return Arrays.copyOf(records, count);
+    }
+
+    /**
+     * Adds to some records every other record not yet hydrated that shares an rfid tag
+     * with one of them, since the items of a tag are hydrated together.
+     * @param records
+     * The records, in any order.
+     * @return
+     * Returns the records of those tags that are not hydrated, in increasing order.
+     */
+    public int[] withTags(int[] records) {
+        int[] firsts = new int[records.length];
+        int count = 0;
+        for (int r : records) {
+            if (!hydrated.get(r)) {
+                firsts[count++] = image.findTag(image.tagOf(r));
+            }
+        }
+        firsts = Arrays.stream(firsts, 0, count).sorted().distinct().toArray();
+        IntStream.Builder tagged = IntStream.builder();
+        for (int first : firsts) {
+            long tag = image.tagOf(first);
+            for (int r = first; r < image.size() && image.tagOf(r) == tag; r++) {
+                tagged.add(r);
+            }
+        }
+        return tagged.build().toArray();
+    }
+
+    /**
+     * A helper method to build the postings of each name of the image with a counting sort
+     * of the name column.
+     */
+    private void indexNames() {
+        int names = image.nameCount();
+        String[] lower = new String[names];
+        for (int index = 0; index < names; index++) {
+            lower[index] = image.nameAt(index).toLowerCase(Locale.ROOT);
+        }
+        int[] nameOf = new int[image.size()];
+        int[] start = new int[names + 1];
+        for (int r = 0; r < nameOf.length; r++) {
+            nameOf[r] = image.nameIndexOf(r);
+            start[nameOf[r] + 1]++;
+        }
+        for (int index = 0; index < names; index++) {
+            start[index + 1] += start[index];
+        }
+        int[] filled = Arrays.copyOf(start, names);
+        int[] postings = new int[nameOf.length];
+        for (int r = 0; r < nameOf.length; r++) {
+            postings[filled[nameOf[r]]++] = r;
+        }
+        this.nameStart = start;
+        this.byName = postings;
+        this.lowerNames = lower;
+    }
+}
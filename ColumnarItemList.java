@@ -0,0 +1,608 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The <code>ColumnarItemList</code> class is an item store that keeps its items off the Java
+ * heap, in fixed width columns of a memory mapped file. There is one column each for the
+ * rfid tag, the original location, the current location, the price in cents and the offset
+ * of the name in a second, append only names file. Each distinct name is written to the names
+ * file once, as <code>NameDictionary</code> does, and names no item uses any more are dropped
+ * when the columns are compacted. The rfid index is an open addressing table in the same
+ * mapped file, so nothing has to be rebuilt when the file is reopened.
+ * <p>
+ * Rows are kept in insertion order. Scans such as <code>printByLocation</code> and
+ * <code>checkOut</code> are tight loops over the current location column, and only the
+ * matching rows are sorted by rfid tag number for printing.
+ */
+public class ColumnarItemList implements ItemStore, Closeable {
+    private static final int MAGIC = 0x49544d43;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int NAMES_HEADER_SIZE = 8;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int COPY_CHUNK = 64 * 1024;
+
+    private Path itemsPath;
+    private Path namesPath;
+    private FileChannel itemsChannel;
+    private FileChannel namesChannel;
+    private MappedByteBuffer columns;
+    private MappedByteBuffer names;
+    private Map<String, Integer> nameOffsets;
+    private PrintStream out;
+    private int capacity;
+    private int tableSize;
+    private int count;
+
+    private long tagColumn;
+    private long originalColumn;
+    private long currentColumn;
+    private long priceColumn;
+    private long nameColumn;
+    private long chainColumn;
+    private long tableStart;
+
+    /**
+     * Parameterized constructor which opens a columnar store, creating it if it does not exist.
+     * The items live in <code>path</code> and the names in <code>path</code> with ".names" added.
+     * @param path
+     * The file to keep the item columns in.
+     * @throws IOException
+     * Indicates that the files could not be opened or are not columnar item files.
+     */
+    public ColumnarItemList(String path) throws IOException {
+        this.itemsPath = Paths.get(path);
+        this.namesPath = Paths.get(path + ".names");
+        boolean exists = Files.exists(itemsPath) && Files.size(itemsPath) >= HEADER_SIZE;
+        this.itemsChannel = new RandomAccessFile(itemsPath.toFile(), "rw").getChannel();
+        this.namesChannel = new RandomAccessFile(namesPath.toFile(), "rw").getChannel();
+        this.nameOffsets = new HashMap<>();
+        this.out = System.out;
+        if (exists) {
+            MappedByteBuffer header = itemsChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException(path + " is not a columnar item file.");
+            }
+            mapColumns(header.getInt(12));
+            count = columns.getInt(8);
+            mapNames(Math.max(namesChannel.size(), NAMES_HEADER_SIZE));
+            indexNames();
+        }
+        else {
+            mapColumns(INITIAL_CAPACITY);
+            columns.putInt(0, MAGIC);
+            columns.putInt(4, VERSION);
+            setCount(0);
+            mapNames(64 * 1024);
+            names.putLong(0, NAMES_HEADER_SIZE);
+        }
+    }
+
+    /**
+     * Sets where the tables printed by this store are written. By default they go to
+     * <code>System.out</code>.
+     * @param out
+     * The stream to print to.
+     */
+    public void setOutput(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Gets the number of items in the store.
+     * @return
+     * Returns the number of items.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * A method to insert items into the store.
+     * @param name
+     * The name of the item to insert.
+     * @param rfidTag
+     * The rfidTag number of the item to insert.
+     * @param price
+     * The price of the item to insert.
+     * @param initPosition
+     * The initial position of the item to insert.
+     */
+    public void insertInfo(String name, String rfidTag, double price, String initPosition) throws IllegalArgumentException {
+        // The Big-O notation of this method is O(1) amortized, because the row is appended
+        // and the rfid index is a hash table.
+        long tag = ItemCodes.parseTag(rfidTag);
+        int location = ItemCodes.parseShelf(initPosition);
+        ItemList.checkInsert(name, tag, price, location);
+        if (count == capacity) {
+            grow(capacity * 2);
+        }
+        int row = count;
+        columns.putLong((int) (tagColumn + row * 8L), tag);
+        columns.putInt((int) (originalColumn + row * 4L), location);
+        columns.putInt((int) (currentColumn + row * 4L), location);
+        columns.putLong((int) (priceColumn + row * 8L), ItemCodes.toCents(price));
+        columns.putInt((int) (nameColumn + row * 4L), appendName(name));
+        indexRow(row, tag);
+        setCount(count + 1);
+    }
+
+    /**
+     * A method to move the item from a source location to a dest location.
+     * @param rfidTag
+     * The rfidTag number of the item to be moved.
+     * @param source
+     * The source location of the item to be moved.
+     * @param dest
+     * The destination location of the item to be moved.
+     * @return
+     * Return whether the item was found.
+     */
+    public boolean moveItem(String rfidTag, String source, String dest) throws IllegalArgumentException {
+        // The Big-O notation of this method is O(k) on average, where k is the number of
+        // items sharing the tag.
+        long tag = ItemCodes.parseTag(rfidTag);
+        int sourceCode = ItemCodes.parseLocation(source);
+        int destCode = ItemCodes.parseLocation(dest);
+        ItemList.checkMove(tag, sourceCode, destCode);
+        for (int row = firstRow(tag); row >= 0; row = chain(row)) {
+            if (current(row) == sourceCode) {
+                columns.putInt((int) (currentColumn + row * 4L), destCode);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A method to print a neatly formatted list of all items in the store.
+     */
+    public void printAll() {
+        // The Big-O notation of this method is O(n log n) because rows are stored in
+        // insertion order and have to be sorted by rfid tag number for the table.
+        int[] rows = new int[count];
+        for (int row = 0; row < count; row++) {
+            rows[row] = row;
+        }
+        printRows(null, rows, rows.length, false);
+    }
+
+    /**
+     * Prints a neatly formatted list of all items in a specified location.
+     * @param location
+     * The location of the items to be printed in the table.
+     */
+    public void printByLocation(String location) {
+        // The Big-O notation of this method is O(n) for one pass over the current location
+        // column, plus O(k log k) to sort the k matching rows.
+        ItemList.validateLocation(location);
+        int code = ItemCodes.encodeLocation(location);
+        int[] rows = new int[16];
+        int matches = 0;
+        for (int row = 0; row < count; row++) {
+            if (current(row) == code) {
+                if (matches == rows.length) {
+                    rows = Arrays.copyOf(rows, matches * 2);
+                }
+                rows[matches++] = row;
+            }
+        }
+        printRows(null, rows, matches, false);
+    }
+
+    /**
+     * A method to print all items that have the same rfid number.
+     * @param rfid
+     * The rfid of the items.
+     */
+    public void printByRFID(String rfid) {
+        ItemList.validateRfid(rfid);
+        ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+        report.header();
+        report.setCurrentFirst(true);
+        for (int row = firstRow(ItemCodes.packTag(rfid)); row >= 0; row = chain(row)) {
+            report.item(name(row), tag(row), original(row), current(row), priceCents(row));
+        }
+        report.finish();
+    }
+
+    /**
+     * A method to take every item that is in the store and on the wrong shelf and place it where
+     * it belongs.
+     */
+    public void cleanStore() {
+        // The Big-O notation of this method is O(n) for one pass over the location columns.
+        int[] rows = new int[16];
+        int matches = 0;
+        for (int row = 0; row < count; row++) {
+            int current = current(row);
+            if (ItemCodes.isShelf(current) && current != original(row)) {
+                if (matches == rows.length) {
+                    rows = Arrays.copyOf(rows, matches * 2);
+                }
+                rows[matches++] = row;
+            }
+        }
+        printRows("The following items(s) have been moved back to their original locations: ", rows, matches, true);
+        for (int i = 0; i < matches; i++) {
+            columns.putInt((int) (currentColumn + rows[i] * 4L), original(rows[i]));
+        }
+    }
+
+    /**
+     * A method that checks out each item in a cart.
+     * @param cartNumber
+     * The cart number to check out.
+     * @return
+     * Returns the total price of all items in that cart.
+     */
+    public double checkOut(String cartNumber) {
+        // The Big-O notation of this method is O(n) for one pass over the current location
+        // column, plus O(k log k) to sort the k items in the cart.
+        ItemList.validateCart(cartNumber);
+        int code = ItemCodes.encodeLocation(cartNumber);
+        int[] rows = new int[16];
+        int matches = 0;
+        for (int row = 0; row < count; row++) {
+            if (current(row) == code) {
+                if (matches == rows.length) {
+                    rows = Arrays.copyOf(rows, matches * 2);
+                }
+                rows[matches++] = row;
+            }
+        }
+        printRows(null, rows, matches, false);
+        long totalCents = 0;
+        for (int i = 0; i < matches; i++) {
+            totalCents += priceCents(rows[i]);
+            columns.putInt((int) (currentColumn + rows[i] * 4L), ItemCodes.OUT);
+        }
+        return ItemCodes.toDollars(totalCents);
+    }
+
+    /**
+     * A method to remove all purchased items from the store and display them. The remaining
+     * rows are compacted in place, the rfid index is rebuilt and the names no remaining row
+     * uses are dropped from the names file.
+     */
+    public void removeAllPurchased() {
+        // The Big-O notation of this method is O(n) for one compacting pass over the columns,
+        // plus O(k log k) to sort the k removed rows for printing.
+        int[] rows = new int[16];
+        int matches = 0;
+        for (int row = 0; row < count; row++) {
+            if (current(row) == ItemCodes.OUT) {
+                if (matches == rows.length) {
+                    rows = Arrays.copyOf(rows, matches * 2);
+                }
+                rows[matches++] = row;
+            }
+        }
+        printRows("The following items(s) have been removed from the system: ", rows, matches, false);
+        int kept = 0;
+        for (int row = 0; row < count; row++) {
+            if (current(row) != ItemCodes.OUT) {
+                if (kept != row) {
+                    copyRow(row, kept);
+                }
+                kept++;
+            }
+        }
+        setCount(kept);
+        rebuildIndex();
+        compactNames();
+    }
+
+    /**
+     * Writes any changes to the files and closes them.
+     * @throws IOException
+     * Indicates that the files could not be closed.
+     */
+    public void close() throws IOException {
+        columns.force();
+        names.force();
+        itemsChannel.close();
+        namesChannel.close();
+    }
+
+    /**
+     * A helper method to print a table of rows sorted by rfid tag number. Among equal tags,
+     * the most recently inserted row comes first, as it does in <code>ItemList</code>.
+     * @param title
+     * The line to print above the table, or null for none.
+     * @param rows
+     * The rows to print. The array is sorted in place.
+     * @param length
+     * The number of rows in the array to print.
+     * @param currentFirst
+     * Whether to print the current location before the original one, as
+     * <code>cleanStore</code> does.
+     */
+    private void printRows(String title, int[] rows, int length, boolean currentFirst) {
+        long[] keys = new long[length];
+        for (int i = 0; i < length; i++) {
+            // The tag fills 36 bits, leaving the low bits free for the reversed row number.
+            keys[i] = (tag(rows[i]) << 26) | (0x3FFFFFF - rows[i]);
+        }
+        Arrays.sort(keys);
+        ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+        if (title != null) {
+            report.title(title);
+        }
+        report.header();
+        report.setCurrentFirst(currentFirst);
+        for (int i = 0; i < length; i++) {
+            rows[i] = 0x3FFFFFF - (int) (keys[i] & 0x3FFFFFF);
+            int row = rows[i];
+            report.item(name(row), tag(row), original(row), current(row), priceCents(row));
+        }
+        report.finish();
+    }
+
+    /**
+     * A helper method to add a row to the rfid index, in front of any row with the same tag.
+     * @param row
+     * The row to add.
+     * @param tag
+     * The packed tag of the row.
+     */
+    private void indexRow(int row, long tag) {
+        int slot = slotFor(tag);
+        int head = columns.getInt((int) (tableStart + slot * 4L)) - 1;
+        columns.putInt((int) (chainColumn + row * 4L), head);
+        columns.putInt((int) (tableStart + slot * 4L), row + 1);
+    }
+
+    /**
+     * A helper method to find the first row with a tag.
+     * @param tag
+     * The packed tag.
+     * @return
+     * Returns the most recently inserted row with the tag, or -1 if there is none.
+     */
+    private int firstRow(long tag) {
+        return columns.getInt((int) (tableStart + slotFor(tag) * 4L)) - 1;
+    }
+
+    /**
+     * A helper method to find the slot of the index that holds a tag, or the empty slot
+     * where it would go.
+     * @param tag
+     * The packed tag.
+     * @return
+     * Returns the slot.
+     */
+    private int slotFor(long tag) {
+        int mask = tableSize - 1;
+        int slot = (int) ((tag * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        while (true) {
+            int head = columns.getInt((int) (tableStart + slot * 4L)) - 1;
+            if (head < 0 || tag(head) == tag) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * A helper method to empty the rfid index and add every row to it again.
+     */
+    private void rebuildIndex() {
+        for (int slot = 0; slot < tableSize; slot++) {
+            columns.putInt((int) (tableStart + slot * 4L), 0);
+        }
+        for (int row = 0; row < count; row++) {
+            indexRow(row, tag(row));
+        }
+    }
+
+    /**
+     * A helper method to copy one row over another.
+     * @param from
+     * The row to copy.
+     * @param to
+     * The row to overwrite.
+     */
+    private void copyRow(int from, int to) {
+        columns.putLong((int) (tagColumn + to * 8L), tag(from));
+        columns.putInt((int) (originalColumn + to * 4L), original(from));
+        columns.putInt((int) (currentColumn + to * 4L), current(from));
+        columns.putLong((int) (priceColumn + to * 8L), columns.getLong((int) (priceColumn + from * 8L)));
+        columns.putInt((int) (nameColumn + to * 4L), columns.getInt((int) (nameColumn + from * 4L)));
+    }
+
+    /**
+     * A helper method to move every column into a larger file.
+     * @param newCapacity
+     * The number of rows the file should hold.
+     * @throws IllegalStateException
+     * Indicates that the file could not be grown.
+     */
+    private void grow(int newCapacity) {
+        long[] oldOffsets = {tagColumn, originalColumn, currentColumn, priceColumn, nameColumn};
+        int[] widths = {8, 4, 4, 8, 4};
+        MappedByteBuffer old = columns;
+        try {
+            mapColumns(newCapacity);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Could not grow " + itemsPath + ": " + e.getMessage(), e);
+        }
+        long[] newOffsets = {tagColumn, originalColumn, currentColumn, priceColumn, nameColumn};
+        // Columns move towards the end of the file as they grow, so copying from the last
+        // column backwards, a chunk at a time from the end of each column, never overwrites
+        // data that has not been copied yet. Both mappings share the file's pages, so each
+        // chunk goes through a heap array rather than one overlapping buffer copy.
+        byte[] chunk = new byte[COPY_CHUNK];
+        for (int c = widths.length - 1; c >= 0; c--) {
+            for (int end = count * widths[c]; end > 0; end -= COPY_CHUNK) {
+                int start = Math.max(0, end - COPY_CHUNK);
+                old.get((int) (oldOffsets[c] + start), chunk, 0, end - start);
+                columns.put((int) (newOffsets[c] + start), chunk, 0, end - start);
+            }
+        }
+        rebuildIndex();
+    }
+
+    /**
+     * A helper method to map the item file for a capacity and work out where each column starts.
+     * @param newCapacity
+     * The number of rows the file should hold.
+     * @throws IOException
+     * Indicates that the file could not be mapped.
+     */
+    private void mapColumns(int newCapacity) throws IOException {
+        capacity = newCapacity;
+        tableSize = Integer.highestOneBit(newCapacity) * 4;
+        tagColumn = HEADER_SIZE;
+        originalColumn = tagColumn + 8L * capacity;
+        currentColumn = originalColumn + 4L * capacity;
+        priceColumn = currentColumn + 4L * capacity;
+        nameColumn = priceColumn + 8L * capacity;
+        chainColumn = nameColumn + 4L * capacity;
+        tableStart = chainColumn + 4L * capacity;
+        long size = tableStart + 4L * tableSize;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("A columnar item file for " + capacity + " items would be larger than 2 GB.");
+        }
+        columns = itemsChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        columns.putInt(12, capacity);
+    }
+
+    /**
+     * A helper method to map the names file.
+     * @param size
+     * The number of bytes to map.
+     * @throws IOException
+     * Indicates that the file could not be mapped.
+     */
+    private void mapNames(long size) throws IOException {
+        names = namesChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * A helper method to find the offset of every name in the names file when it is opened.
+     */
+    private void indexNames() {
+        int end = (int) names.getLong(0);
+        for (int offset = NAMES_HEADER_SIZE; offset < end; offset += 1 + (names.get(offset) & 0xFF)) {
+            nameOffsets.putIfAbsent(nameAt(offset), offset);
+        }
+    }
+
+    /**
+     * A helper method to get the offset of a name in the names file, appending it if no
+     * item has used it yet.
+     * @param name
+     * The name to look up.
+     * @return
+     * Returns the offset of the name in the file.
+     */
+    private int appendName(String name) {
+        // The Big-O notation of this method is O(c) for a name of c characters, because the
+        // offsets of the names already in the file are kept in a hash table.
+        Integer known = nameOffsets.get(name);
+        if (known != null) {
+            return known;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int offset = (int) names.getLong(0);
+        if (offset + 1 + bytes.length > names.capacity()) {
+            try {
+                mapNames(names.capacity() * 2L);
+            }
+            catch (IOException e) {
+                throw new IllegalStateException("Could not grow " + namesPath + ": " + e.getMessage(), e);
+            }
+        }
+        names.put(offset, (byte) bytes.length);
+        names.put(offset + 1, bytes);
+        names.putLong(0, offset + 1 + bytes.length);
+        nameOffsets.put(name, offset);
+        return offset;
+    }
+
+    /**
+     * A helper method to drop the names no row uses from the names file, moving the rest
+     * towards the start of the file and pointing the name column at their new offsets.
+     */
+    private void compactNames() {
+        // The Big-O notation of this method is O(n + d log d) for the d distinct names the
+        // n rows use. Names are moved in file order, so a name is only ever moved towards
+        // the start of the file and never over a name that has not been moved yet.
+        int[] used = new int[count];
+        for (int row = 0; row < count; row++) {
+            used[row] = columns.getInt((int) (nameColumn + row * 4L));
+        }
+        int[] live = Arrays.stream(used).sorted().distinct().toArray();
+        int[] moved = new int[live.length];
+        int end = NAMES_HEADER_SIZE;
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < live.length; i++) {
+            int length = 1 + (names.get(live[i]) & 0xFF);
+            names.get(live[i], bytes, 0, length);
+            names.put(end, bytes, 0, length);
+            moved[i] = end;
+            end += length;
+        }
+        for (int row = 0; row < count; row++) {
+            columns.putInt((int) (nameColumn + row * 4L), moved[Arrays.binarySearch(live, used[row])]);
+        }
+        names.putLong(0, end);
+        nameOffsets.clear();
+        for (int offset : moved) {
+            nameOffsets.put(nameAt(offset), offset);
+        }
+    }
+
+    /**
+     * A helper method to store the item count in the file header.
+     * @param newCount
+     * The number of items.
+     */
+    private void setCount(int newCount) {
+        count = newCount;
+        columns.putInt(8, newCount);
+    }
+
+    private long tag(int row) {
+        return columns.getLong((int) (tagColumn + row * 8L));
+    }
+
+    private int original(int row) {
+        return columns.getInt((int) (originalColumn + row * 4L));
+    }
+
+    private int current(int row) {
+        return columns.getInt((int) (currentColumn + row * 4L));
+    }
+
+    private long priceCents(int row) {
+        return columns.getLong((int) (priceColumn + row * 8L));
+    }
+
+    private int chain(int row) {
+        return columns.getInt((int) (chainColumn + row * 4L));
+    }
+
+    private String name(int row) {
+        return nameAt(columns.getInt((int) (nameColumn + row * 4L)));
+    }
+
+    private String nameAt(int offset) {
+        byte[] bytes = new byte[names.get(offset) & 0xFF];
+        names.get(offset + 1, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
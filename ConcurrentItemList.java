@@ -0,0 +1,831 @@
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The <code>ConcurrentItemList</code> class is an item store that many threads can use at
+ * once, such as checkout lanes and floor scanners sharing one inventory.
+ * <p>
+ * Items are kept in a concurrent skip list keyed by packed rfid tag, so lookups and printing
+ * never take a lock. Changes to the items of one tag are made under one of a fixed set of
+ * stripe locks chosen by the tag, so moves of different items run in parallel. Each cart also
+ * has its own lock, taken before any stripe lock, which makes a checkout atomic with respect
+ * to moves into or out of that cart.
+ * <p>
+ * Every insert, move and removal is stamped with the next sequence number, so long reports
+ * can read the store as of one point in time through a <code>ReadView</code> while moves and
+ * checkouts carry on. Opening a view copies nothing: while a view is open, an entry keeps the
+ * locations it had since the oldest view, and removed entries stay behind as tombstones.
+ * They are dropped when the last view that could see them is closed.
+ */
+public class ConcurrentItemList implements ItemStore {
+    private static final int STRIPES = 256;
+    private static final Comparator<Entry> LIST_ORDER = (a, b) -> {
+        int byTag = Long.compare(a.getItem().getRfidTag(), b.getItem().getRfidTag());
+        return byTag != 0 ? byTag : Long.compare(b.getSequence(), a.getSequence());
+    };
+
+    private ConcurrentSkipListMap<Long, Entry[]> byTag;
+    private AtomicReferenceArray<Set<Entry>> byLocation;
+    private Set<Entry> misplaced;
+    private ReentrantLock[] stripes;
+    private ReentrantLock[] carts;
+    private AtomicLong sequence;
+    private Set<ReadView> views;
+    private Set<Entry> changed;
+    private volatile PrintStream out;
+
+    /**
+     * Default constructor which initializes this object to an empty store.
+     */
+    public ConcurrentItemList() {
+        this.byTag = new ConcurrentSkipListMap<>();
+        this.byLocation = new AtomicReferenceArray<>(ItemCodes.LOCATION_COUNT);
+        this.misplaced = ConcurrentHashMap.newKeySet();
+        this.stripes = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.carts = new ReentrantLock[ItemCodes.OUT - ItemCodes.CART_BASE];
+        for (int i = 0; i < carts.length; i++) {
+            carts[i] = new ReentrantLock();
+        }
+        this.sequence = new AtomicLong();
+        this.views = ConcurrentHashMap.newKeySet();
+        this.changed = ConcurrentHashMap.newKeySet();
+        this.out = System.out;
+    }
+
+    /**
+     * Sets where the tables printed by this store are written. By default they go to
+     * <code>System.out</code>.
+     * @param out
+     * The stream to print to.
+     */
+    public void setOutput(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * A method to insert items into the store.
+     * @param name
+     * The name of the item to insert.
+     * @param rfidTag
+     * The rfidTag number of the item to insert.
+     * @param price
+     * The price of the item to insert.
+     * @param initPosition
+     * The initial position of the item to insert.
+     */
+    public void insertInfo(String name, String rfidTag, double price, String initPosition) throws IllegalArgumentException {
+        // The Big-O notation of this method is O(log n) for the skip list insert.
+        long tag = ItemCodes.parseTag(rfidTag);
+        int shelf = ItemCodes.parseShelf(initPosition);
+        ItemList.checkInsert(name, tag, price, shelf);
+        ItemInfo item = new ItemInfo(NameDictionary.idOf(name), tag, shelf, shelf, ItemCodes.toCents(price));
+        ReentrantLock stripe = stripeFor(tag);
+        stripe.lock();
+        try {
+            Entry entry = new Entry(item, sequence.incrementAndGet());
+            Entry[] existing = byTag.get(tag);
+            Entry[] entries;
+            if (existing == null) {
+                entries = new Entry[] {entry};
+            }
+            else {
+                entries = new Entry[existing.length + 1];
+                entries[0] = entry;
+                System.arraycopy(existing, 0, entries, 1, existing.length);
+            }
+            byTag.put(tag, entries);
+            locationSet(entry.getLocation()).add(entry);
+        }
+        finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * A method to move the item from a source location to a dest location.
+     * @param rfidTag
+     * The rfidTag number of the item to be moved.
+     * @param source
+     * The source location of the item to be moved.
+     * @param dest
+     * The destination location of the item to be moved.
+     * @return
+     * Return whether the item was found.
+     */
+    public boolean moveItem(String rfidTag, String source, String dest) throws IllegalArgumentException {
+        // The Big-O notation of this method is O(log n) for the skip list lookup.
+        long tag = ItemCodes.parseTag(rfidTag);
+        int sourceCode = ItemCodes.parseLocation(source);
+        int destCode = ItemCodes.parseLocation(dest);
+        ItemList.checkMove(tag, sourceCode, destCode);
+        ReentrantLock first = cartLock(Math.min(sourceCode, destCode));
+        ReentrantLock second = cartLock(Math.max(sourceCode, destCode));
+        if (first == second) {
+            second = null;
+        }
+        lock(first);
+        lock(second);
+        ReentrantLock stripe = stripeFor(tag);
+        stripe.lock();
+        try {
+            Entry[] entries = byTag.get(tag);
+            if (entries == null) {
+                return false;
+            }
+            for (Entry entry : entries) {
+                if (entry.isLive() && entry.getLocation() == sourceCode) {
+                    relocate(entry, destCode);
+                    return true;
+                }
+            }
+            return false;
+        }
+        finally {
+            stripe.unlock();
+            unlock(second);
+            unlock(first);
+        }
+    }
+
+    /**
+     * Opens a view of the store as it is now. Reports printed through the view show every
+     * item where it was when the view was opened, however long they take and whatever
+     * changes meanwhile. The view should be closed once it is no longer needed, so that the
+     * history kept for it can be dropped.
+     * @return
+     * Returns the new view.
+     */
+    public ReadView openView() {
+        // The Big-O notation of this method is O(1). Registering before reading the sequence
+        // stops writers from dropping history the view needs, and passing through every
+        // stripe lock waits out writers that took a sequence number at or below the view's.
+        ReadView view = new ReadView();
+        views.add(view);
+        view.sequence = sequence.get();
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+            stripe.unlock();
+        }
+        return view;
+    }
+
+    /**
+     * A method to print a neatly formatted list of all items in the store. The items are
+     * printed as they were when the method was called, through a <code>ReadView</code>.
+     */
+    public void printAll() {
+        printAll(out);
+    }
+
+    /**
+     * A method to print a neatly formatted list of all items in the store to a given stream.
+     * @param stream
+     * The stream to print to.
+     */
+    public void printAll(PrintStream stream) {
+        // The Big-O notation of this method is O(n) to walk the skip list.
+        ItemReportWriter report = new ItemReportWriter(stream, ItemReportWriter.Format.TABLE);
+        try (ReadView view = openView()) {
+            view.printAll(report);
+        }
+        report.finish();
+    }
+
+    /**
+     * Prints a neatly formatted list of all items in a specified location.
+     * @param location
+     * The location of the items to be printed in the table.
+     */
+    public void printByLocation(String location) {
+        printByLocation(location, out);
+    }
+
+    /**
+     * Prints a neatly formatted list of all items in a specified location to a given stream,
+     * as they were when the method was called.
+     * @param location
+     * The location of the items to be printed in the table.
+     * @param stream
+     * The stream to print to.
+     */
+    public void printByLocation(String location, PrintStream stream) {
+        // The Big-O notation of this method is O(k log k) for the k items at the location.
+        ItemList.validateLocation(location);
+        ItemReportWriter report = new ItemReportWriter(stream, ItemReportWriter.Format.TABLE);
+        try (ReadView view = openView()) {
+            view.printByLocation(location, report);
+        }
+        report.finish();
+    }
+
+    /**
+     * A method to print all items that have the same rfid number.
+     * @param rfid
+     * The rfid of the items.
+     */
+    public void printByRFID(String rfid) {
+        ItemList.validateRfid(rfid);
+        ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+        report.header();
+        report.setCurrentFirst(true);
+        Entry[] entries = byTag.get(ItemCodes.packTag(rfid));
+        if (entries != null) {
+            for (Entry entry : entries) {
+                if (entry.isLive()) {
+                    entry.report(report, entry.getLocation());
+                }
+            }
+        }
+        report.finish();
+    }
+
+    /**
+     * A method to take every item that is in the store and on the wrong shelf and place it where
+     * it belongs.
+     */
+    public void cleanStore() {
+        cleanStore(out);
+    }
+
+    /**
+     * A method to put every misplaced item back on its shelf, printing them to a given stream.
+     * @param stream
+     * The stream to print the moved items to.
+     */
+    public void cleanStore(PrintStream stream) {
+        // The Big-O notation of this method is O(k log k) for the k misplaced items.
+        ItemReportWriter report = new ItemReportWriter(stream, ItemReportWriter.Format.TABLE);
+        report.title("The following items(s) have been moved back to their original locations: ");
+        report.header();
+        report.setCurrentFirst(true);
+        for (Entry entry : sorted(misplaced)) {
+            ItemInfo item = entry.getItem();
+            ReentrantLock stripe = stripeFor(item.getRfidTag());
+            stripe.lock();
+            try {
+                int current = entry.getLocation();
+                if (!isMisplaced(entry) || !isLinked(entry)) {
+                    continue;
+                }
+                entry.report(report, current);
+                relocate(entry, item.getOriginalLocationCode());
+            }
+            finally {
+                stripe.unlock();
+            }
+        }
+        report.finish();
+    }
+
+    /**
+     * A method that checks out each item in a cart. No item can be moved into or out of the
+     * cart while it is being checked out.
+     * @param cartNumber
+     * The cart number to check out.
+     * @return
+     * Returns the total price of all items in that cart.
+     */
+    public double checkOut(String cartNumber) {
+        return checkOut(cartNumber, out);
+    }
+
+    /**
+     * A method that checks out each item in a cart, printing them to a given stream.
+     * @param cartNumber
+     * The cart number to check out.
+     * @param stream
+     * The stream to print the checked out items to.
+     * @return
+     * Returns the total price of all items in that cart.
+     */
+    public double checkOut(String cartNumber, PrintStream stream) {
+        // The Big-O notation of this method is O(k log k) for the k items in the cart.
+        ItemList.validateCart(cartNumber);
+        int cart = ItemCodes.encodeLocation(cartNumber);
+        long cents = 0;
+        ItemReportWriter report = new ItemReportWriter(stream, ItemReportWriter.Format.TABLE);
+        ReentrantLock cartLock = cartLock(cart);
+        cartLock.lock();
+        try {
+            report.header();
+            for (Entry entry : sorted(locationSet(cart))) {
+                ReentrantLock stripe = stripeFor(entry.getItem().getRfidTag());
+                stripe.lock();
+                try {
+                    if (entry.getLocation() != cart) {
+                        continue;
+                    }
+                    cents += entry.getItem().getPriceCents();
+                    entry.report(report, cart);
+                    relocate(entry, ItemCodes.OUT);
+                }
+                finally {
+                    stripe.unlock();
+                }
+            }
+        }
+        finally {
+            cartLock.unlock();
+        }
+        report.finish();
+        return ItemCodes.toDollars(cents);
+    }
+
+    /**
+     * A method to remove all purchased items from the store and display them.
+     */
+    public void removeAllPurchased() {
+        removeAllPurchased(out);
+    }
+
+    /**
+     * A method to remove all purchased items from the store, printing them to a given stream.
+     * @param stream
+     * The stream to print the removed items to.
+     */
+    public void removeAllPurchased(PrintStream stream) {
+        // The Big-O notation of this method is O(k log n) for the k purchased items.
+        ItemReportWriter report = new ItemReportWriter(stream, ItemReportWriter.Format.TABLE);
+        report.title("The following items(s) have been removed from the system: ");
+        report.header();
+        for (Entry entry : sorted(locationSet(ItemCodes.OUT))) {
+            long tag = entry.getItem().getRfidTag();
+            ReentrantLock stripe = stripeFor(tag);
+            stripe.lock();
+            try {
+                if (entry.getLocation() != ItemCodes.OUT || !unlink(entry)) {
+                    continue;
+                }
+                locationSet(ItemCodes.OUT).remove(entry);
+                entry.report(report, ItemCodes.OUT);
+            }
+            finally {
+                stripe.unlock();
+            }
+        }
+        report.finish();
+    }
+
+    /**
+     * Gets the number of items in the store. Items added or removed while it runs may or may
+     * not be counted.
+     * @return
+     * Returns the number of items.
+     */
+    public int size() {
+        int count = 0;
+        for (Entry[] entries : byTag.values()) {
+            for (Entry entry : entries) {
+                if (entry.isLive()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the current location of every item with a tag, most recently inserted first.
+     * @param rfid
+     * The rfid tag number to look up.
+     * @return
+     * Returns the current locations of the items with that tag.
+     */
+    public List<String> locationsOf(String rfid) {
+        ItemList.validateRfid(rfid);
+        List<String> locations = new ArrayList<>();
+        Entry[] entries = byTag.get(ItemCodes.packTag(rfid));
+        if (entries != null) {
+            for (Entry entry : entries) {
+                if (entry.isLive()) {
+                    locations.add(ItemCodes.decodeLocation(entry.getLocation()));
+                }
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * A helper method to change the location of an item and its place in the indexes.
+     * The caller must hold the stripe lock of the item's tag.
+     * @param entry
+     * The item to move.
+     * @param dest
+     * The location code to move it to.
+     */
+    private void relocate(Entry entry, int dest) {
+        long change = sequence.incrementAndGet();
+        boolean viewed = oldestView() < change;
+        if (viewed) {
+            changed.add(entry);
+        }
+        int source = entry.getLocation();
+        locationSet(source).remove(entry);
+        entry.setLocation(dest, change, viewed);
+        locationSet(dest).add(entry);
+        if (isMisplaced(entry)) {
+            misplaced.add(entry);
+        }
+        else {
+            misplaced.remove(entry);
+        }
+    }
+
+    /**
+     * A helper method to take an item out of the store. The caller must hold the stripe lock
+     * of the item's tag. If an open view can still see the item, it stays in the tag map as
+     * a tombstone until that view is closed.
+     * @param entry
+     * The item to remove.
+     * @return
+     * Returns whether the item was still in the store.
+     */
+    private boolean unlink(Entry entry) {
+        if (!isLinked(entry)) {
+            return false;
+        }
+        long change = sequence.incrementAndGet();
+        misplaced.remove(entry);
+        if (oldestView() < change) {
+            changed.add(entry);
+            entry.remove(change);
+            return true;
+        }
+        entry.remove(change);
+        drop(entry);
+        return true;
+    }
+
+    /**
+     * A helper method to take a removed item out of the tag map for good. The caller must
+     * hold the stripe lock of the item's tag.
+     * @param entry
+     * The item to drop.
+     */
+    private void drop(Entry entry) {
+        long tag = entry.getItem().getRfidTag();
+        Entry[] entries = byTag.get(tag);
+        if (entries == null) {
+            return;
+        }
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] == entry) {
+                if (entries.length == 1) {
+                    byTag.remove(tag);
+                }
+                else {
+                    Entry[] rest = new Entry[entries.length - 1];
+                    System.arraycopy(entries, 0, rest, 0, i);
+                    System.arraycopy(entries, i + 1, rest, i, rest.length - i);
+                    byTag.put(tag, rest);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * A helper method to find the sequence number of the oldest open view.
+     * @return
+     * Returns the oldest sequence an open view reads at, or <code>Long.MAX_VALUE</code> if
+     * no view is open.
+     */
+    private long oldestView() {
+        if (views.isEmpty()) {
+            return Long.MAX_VALUE;
+        }
+        long oldest = Long.MAX_VALUE;
+        for (ReadView view : views) {
+            oldest = Math.min(oldest, view.sequence);
+        }
+        return oldest;
+    }
+
+    /**
+     * A helper method to drop the history and tombstones that no open view can see any more.
+     * Each entry is checked under its stripe lock, so that it cannot change in the meantime.
+     */
+    private void vacuum() {
+        // The Big-O notation of this method is O(c) for the c entries changed since the
+        // oldest view, which include the tombstones.
+        for (Entry entry : changed) {
+            ReentrantLock stripe = stripeFor(entry.getItem().getRfidTag());
+            stripe.lock();
+            try {
+                long oldest = oldestView();
+                if (entry.lastChange() <= oldest) {
+                    changed.remove(entry);
+                    entry.forgetHistory();
+                    if (!entry.isLive()) {
+                        drop(entry);
+                    }
+                }
+            }
+            finally {
+                stripe.unlock();
+            }
+        }
+    }
+
+    /**
+     * A helper method to check whether an item is still in the tag map.
+     * @param entry
+     * The item to check.
+     * @return
+     * Returns whether the item is in the store.
+     */
+    private boolean isLinked(Entry entry) {
+        Entry[] entries = byTag.get(entry.getItem().getRfidTag());
+        if (entries != null) {
+            for (Entry e : entries) {
+                if (e == entry) {
+                    return e.isLive();
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isMisplaced(Entry entry) {
+        int current = entry.getLocation();
+        return ItemCodes.isShelf(current) && current != entry.getItem().getOriginalLocationCode();
+    }
+
+    /**
+     * A helper method to get the set of items at a location, creating it if needed.
+     * @param location
+     * The location code.
+     * @return
+     * Returns the set of items at that location.
+     */
+    private Set<Entry> locationSet(int location) {
+        Set<Entry> set = byLocation.get(location);
+        if (set == null) {
+            byLocation.compareAndSet(location, null, ConcurrentHashMap.newKeySet());
+            set = byLocation.get(location);
+        }
+        return set;
+    }
+
+    private static List<Entry> sorted(Collection<Entry> entries) {
+        List<Entry> list = new ArrayList<>(entries);
+        list.sort(LIST_ORDER);
+        return list;
+    }
+
+    private ReentrantLock stripeFor(long tag) {
+        return stripes[(int) ((tag * 0x9E3779B97F4A7C15L) >>> 56) & (STRIPES - 1)];
+    }
+
+    private ReentrantLock cartLock(int location) {
+        return ItemCodes.isCart(location) ? carts[location - ItemCodes.CART_BASE] : null;
+    }
+
+    private static void lock(ReentrantLock lock) {
+        if (lock != null) {
+            lock.lock();
+        }
+    }
+
+    private static void unlock(ReentrantLock lock) {
+        if (lock != null) {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The <code>ReadView</code> class is a point-in-time view of the store. It reads the
+     * live entries, and picks out of each one the location it had when the view was opened,
+     * so it never blocks writers and opening it costs the same however big the store is.
+     */
+    public class ReadView implements Closeable {
+        private volatile long sequence = Long.MIN_VALUE;
+
+        /**
+         * Gets the sequence number the view reads at. Changes stamped with a higher number
+         * are not seen.
+         * @return
+         * Returns the sequence number.
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Gets the number of items in the store as of the view.
+         * @return
+         * Returns the number of items.
+         */
+        public int size() {
+            // The Big-O notation of this method is O(n) to walk the skip list.
+            int count = 0;
+            for (Entry[] entries : byTag.values()) {
+                for (Entry entry : entries) {
+                    if (entry.locationAt(sequence) >= 0) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * A method to print a neatly formatted list of all items in the store as of the view.
+         */
+        public void printAll() {
+            ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+            printAll(report);
+            report.finish();
+        }
+
+        /**
+         * A method to write all items in the store as of the view to a report. The walk stops
+         * once the page of the report is full.
+         * @param report
+         * The report to write to. The caller finishes it.
+         */
+        public void printAll(ItemReportWriter report) {
+            // The Big-O notation of this method is O(n) to walk the skip list.
+            report.header();
+            for (Entry[] entries : byTag.values()) {
+                for (Entry entry : entries) {
+                    int location = entry.locationAt(sequence);
+                    if (location >= 0 && !entry.report(report, location)) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Prints a neatly formatted list of all items in a specified location as of the view.
+         * @param location
+         * The location of the items to be printed in the table.
+         */
+        public void printByLocation(String location) {
+            ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+            printByLocation(location, report);
+            report.finish();
+        }
+
+        /**
+         * Writes all items in a specified location as of the view to a report.
+         * @param location
+         * The location of the items to write.
+         * @param report
+         * The report to write to. The caller finishes it.
+         */
+        public void printByLocation(String location, ItemReportWriter report) {
+            // The Big-O notation of this method is O((k + c) log k), where k is the number of
+            // items at the location and c the number changed since the oldest open view,
+            // because an item that has left the location since can only be among those.
+            ItemList.validateLocation(location);
+            int code = ItemCodes.encodeLocation(location);
+            Set<Entry> candidates = new HashSet<>(locationSet(code));
+            candidates.addAll(changed);
+            List<Entry> found = new ArrayList<>();
+            for (Entry entry : candidates) {
+                if (entry.locationAt(sequence) == code) {
+                    found.add(entry);
+                }
+            }
+            found.sort(LIST_ORDER);
+            report.header();
+            for (Entry entry : found) {
+                if (!entry.report(report, code)) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Closes the view, letting the store drop the history only it could see.
+         */
+        public void close() {
+            if (views.remove(this)) {
+                vacuum();
+            }
+        }
+    }
+
+    /**
+     * The <code>Entry</code> class holds one item of the store. The current location lives
+     * here rather than in the <code>ItemInfo</code>, so that it can be read without a lock,
+     * along with the earlier locations open views may still need.
+     */
+    private static class Entry {
+        private final ItemInfo item;
+        private final long sequence;
+        private volatile Version version;
+        private volatile long removed;
+
+        Entry(ItemInfo item, long sequence) {
+            this.item = item;
+            this.sequence = sequence;
+            this.version = new Version(item.getCurrentLocationCode(), sequence, null);
+            this.removed = Long.MAX_VALUE;
+        }
+
+        ItemInfo getItem() {
+            return item;
+        }
+
+        long getSequence() {
+            return sequence;
+        }
+
+        int getLocation() {
+            return version.location;
+        }
+
+        boolean isLive() {
+            return removed == Long.MAX_VALUE;
+        }
+
+        /**
+         * Moves the item. The caller must hold the stripe lock of the item's tag.
+         * @param location
+         * The new location code.
+         * @param change
+         * The sequence number of the move.
+         * @param keep
+         * Whether an open view may still need the earlier locations.
+         */
+        void setLocation(int location, long change, boolean keep) {
+            this.version = new Version(location, change, keep ? version : null);
+        }
+
+        void remove(long change) {
+            this.removed = change;
+        }
+
+        long lastChange() {
+            return isLive() ? version.since : removed;
+        }
+
+        void forgetHistory() {
+            Version current = version;
+            if (current.older != null) {
+                version = new Version(current.location, current.since, null);
+            }
+        }
+
+        /**
+         * Gets the location the item had as of a sequence number.
+         * @param at
+         * The sequence number.
+         * @return
+         * Returns the location code, or -1 if the item was not in the store then.
+         */
+        int locationAt(long at) {
+            if (sequence > at || removed <= at) {
+                return -1;
+            }
+            for (Version v = version; v != null; v = v.older) {
+                if (v.since <= at) {
+                    return v.location;
+                }
+            }
+            return -1;
+        }
+
+        boolean report(ItemReportWriter report, int location) {
+            return report.item(item.getName(), item.getRfidTag(), item.getOriginalLocationCode(), location, item.getPriceCents());
+        }
+
+        public String toString() {
+            return String.format("%-16s%-17s%-16s%-15s%.2f", item.getName(), item.getRfidTagNumber(),
+                    item.getOriginalLocation(), ItemCodes.decodeLocation(getLocation()), item.getPrice());
+        }
+    }
+
+    /**
+     * The <code>Version</code> class is one location an item has had, from the sequence number
+     * of the change that put it there, linked to the location it had before.
+     */
+    private static class Version {
+        private final int location;
+        private final long since;
+        private final Version older;
+
+        Version(int location, long since, Version older) {
+            this.location = location;
+            this.since = since;
+            this.older = older;
+        }
+    }
+}
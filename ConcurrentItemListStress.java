@@ -0,0 +1,173 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The <code>ConcurrentItemListStress</code> class hammers a <code>ConcurrentItemList</code> from
+ * many threads at once and then checks that no update was lost.
+ * <p>
+ * Each worker thread owns its own range of rfid tags. It inserts items, moves them between
+ * shelves, and drops some into a handful of carts shared by every thread, remembering where
+ * each of its items should be. Meanwhile checker threads keep checking out the shared carts.
+ * At the end the carts are checked out one last time, and every item must be where its owner
+ * expects, or out if its owner put it in a cart. The checkout totals must add up to exactly
+ * the prices of the items that went into carts.
+ * <p>
+ * Usage: <code>java ConcurrentItemListStress [threads] [operationsPerThread]</code>
+ */
+public class ConcurrentItemListStress {
+    private static final int SHARED_CARTS = 8;
+    private static final int ITEMS_PER_THREAD = 2000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        ConcurrentItemList store = new ConcurrentItemList();
+        store.setOutput(new PrintStream(OutputStream.nullOutputStream()));
+        AtomicLong cartedCents = new AtomicLong();
+        AtomicLong checkedOutCents = new AtomicLong();
+        AtomicReference<String> failure = new AtomicReference<>();
+        int[][] expected = new int[threads][];
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch workersDone = new CountDownLatch(threads);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    expected[id] = work(store, id, operations, cartedCents);
+                }
+                catch (RuntimeException | InterruptedException e) {
+                    failure.compareAndSet(null, "Worker " + id + " failed: " + e);
+                }
+                finally {
+                    workersDone.countDown();
+                }
+            });
+            workers[t].start();
+        }
+        Thread[] checkers = new Thread[Math.max(1, threads / 4)];
+        for (int c = 0; c < checkers.length; c++) {
+            int id = c;
+            checkers[c] = new Thread(() -> {
+                Random random = new Random(id);
+                while (workersDone.getCount() > 0) {
+                    String cart = String.format("c%03d", random.nextInt(SHARED_CARTS));
+                    checkedOutCents.addAndGet(ItemCodes.toCents(store.checkOut(cart)));
+                }
+            });
+            checkers[c].start();
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        for (Thread checker : checkers) {
+            checker.join();
+        }
+        long elapsed = System.nanoTime() - began;
+        for (int cart = 0; cart < SHARED_CARTS; cart++) {
+            checkedOutCents.addAndGet(ItemCodes.toCents(store.checkOut(String.format("c%03d", cart))));
+        }
+        if (failure.get() == null) {
+            failure.set(verify(store, expected));
+        }
+        if (failure.get() == null && cartedCents.get() != checkedOutCents.get()) {
+            failure.set("Items worth " + cartedCents.get() + " cents went into carts, but checkouts totaled "
+                    + checkedOutCents.get() + " cents.");
+        }
+        System.out.printf("%d threads, %d operations in %.1f ms (%.0f operations/s)%n", threads, (long) threads * operations,
+                elapsed / 1e6, threads * (double) operations / (elapsed / 1e9));
+        if (failure.get() != null) {
+            System.out.println("FAILED: " + failure.get());
+            System.exit(1);
+        }
+        System.out.println("No lost updates.");
+    }
+
+    /**
+     * A helper method to run one worker's operations.
+     * @param store
+     * The store to work on.
+     * @param id
+     * The number of the worker, which picks its tags and shelves.
+     * @param operations
+     * The number of operations to run.
+     * @param cartedCents
+     * The running total of the prices of the items put into carts.
+     * @return
+     * Returns the location code each of the worker's items should end up in.
+     */
+    private static int[] work(ConcurrentItemList store, int id, int operations, AtomicLong cartedCents) {
+        Random random = new Random(id * 31L + 7);
+        int[] location = new int[ITEMS_PER_THREAD];
+        long[] cents = new long[ITEMS_PER_THREAD];
+        int inserted = 0;
+        for (int op = 0; op < operations; op++) {
+            int choice = random.nextInt(10);
+            if (inserted == 0 || (choice == 0 && inserted < ITEMS_PER_THREAD)) {
+                int shelf = id * 100 + random.nextInt(100);
+                cents[inserted] = 1 + random.nextInt(10000);
+                store.insertInfo("item" + id, tag(id, inserted), ItemCodes.toDollars(cents[inserted]), ItemCodes.decodeLocation(shelf));
+                location[inserted++] = shelf;
+                continue;
+            }
+            int item = random.nextInt(inserted);
+            if (!ItemCodes.isShelf(location[item])) {
+                continue;
+            }
+            int dest = choice < 3 ? ItemCodes.CART_BASE + random.nextInt(SHARED_CARTS) : id * 100 + random.nextInt(100);
+            boolean found = store.moveItem(tag(id, item), ItemCodes.decodeLocation(location[item]), ItemCodes.decodeLocation(dest));
+            if (!found) {
+                throw new IllegalStateException("Item " + tag(id, item) + " was not at " + ItemCodes.decodeLocation(location[item]) + ".");
+            }
+            if (ItemCodes.isCart(dest)) {
+                cartedCents.addAndGet(cents[item]);
+                location[item] = ItemCodes.OUT;
+            }
+            else {
+                location[item] = dest;
+            }
+        }
+        int[] result = new int[inserted];
+        System.arraycopy(location, 0, result, 0, inserted);
+        return result;
+    }
+
+    /**
+     * A helper method to check that every item is where its owner expects.
+     * @param store
+     * The store to check.
+     * @param expected
+     * The expected location codes of each worker's items.
+     * @return
+     * Returns a description of the first problem found, or null if there is none.
+     */
+    private static String verify(ConcurrentItemList store, int[][] expected) {
+        int total = 0;
+        for (int id = 0; id < expected.length; id++) {
+            for (int item = 0; item < expected[id].length; item++) {
+                List<String> locations = store.locationsOf(tag(id, item));
+                String want = ItemCodes.decodeLocation(expected[id][item]);
+                if (locations.size() != 1 || !locations.get(0).equals(want)) {
+                    return "Item " + tag(id, item) + " should be at " + want + " but is at " + locations + ".";
+                }
+            }
+            total += expected[id].length;
+        }
+        if (store.size() != total) {
+            return "The store holds " + store.size() + " items but " + total + " were inserted.";
+        }
+        return null;
+    }
+
+    private static String tag(int id, int item) {
+        return String.format("%09X", (long) id * ITEMS_PER_THREAD + item);
+    }
+}
@@ -1,16 +1,87 @@
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The <code>DepartmentStore</code> class is used to test the methods of
  * the item list class, and it allows the user to manipulate
  * an itemList object.
+ * <p>
+ * Run with <code>--columnar &lt;file&gt;</code> to keep the items in a memory mapped
+ * <code>ColumnarItemList</code> that survives restarts, or with <code>--data &lt;directory&gt;</code>
+ * to journal every change through a <code>DurableItemList</code>, or with
+ * <code>--shards &lt;count&gt;</code> to split the items over a <code>ShardedItemList</code>,
+ * instead of an in-memory <code>ItemList</code>. Run with <code>--serve &lt;port&gt;</code> to serve the store to
+ * register terminals over TCP with a <code>StoreServer</code> instead of the menu. Run with
+ * <code>--batch &lt;file&gt;</code>, or <code>--batch -</code> to read standard input, to apply
+ * the <code>ItemCommand</code> lines of the file to an in-memory list without the menu,
+ * printing one <code>ItemCommandResult</code> line per command. Run with
+ * <code>--image &lt;file&gt;</code> to start from the <code>CatalogImage</code> in the file,
+ * if there is one, without waiting for the items to be read, and to write the image back
+ * when the program exits.
+ * <p>
+ * Each menu command reads and checks its input first and then holds the monitor of the list
+ * only for the call to the list, so that a <code>CartEvictionScheduler</code> started from
+ * the menu never runs in the middle of one and never waits on the operator.
  */
 public class DepartmentStore {
-    public static void main(String[] args) {
-        ItemList itemList = new ItemList();
+    private static final int BATCH_SIZE = 4096;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2 && args[0].equals("--serve")) {
+            StoreServer.main(new String[] {args[1]});
+            return;
+        }
+        if (args.length == 2 && args[0].equals("--batch")) {
+            if (args[1].equals("-")) {
+                runBatch(new ItemList(), new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            }
+            else {
+                try (Reader reader = new FileReader(args[1], StandardCharsets.UTF_8)) {
+                    runBatch(new ItemList(), reader);
+                }
+            }
+            return;
+        }
+        ItemStore itemList;
+        Path imageFile = null;
+        if (args.length == 2 && args[0].equals("--columnar")) {
+            itemList = new ColumnarItemList(args[1]);
+        }
+        else if (args.length == 2 && args[0].equals("--data")) {
+            itemList = new DurableItemList(args[1]);
+        }
+        else if (args.length == 2 && args[0].equals("--shards")) {
+            itemList = new ShardedItemList(Integer.parseInt(args[1]));
+        }
+        else if (args.length == 2 && args[0].equals("--image")) {
+            imageFile = Path.of(args[1]);
+            itemList = Files.exists(imageFile) ? new ItemList(CatalogImage.open(imageFile)) : new ItemList();
+        }
+        else {
+            itemList = new ItemList();
+        }
         Scanner input = new Scanner(System.in);
+        CartEvictionScheduler autoEvict = null;
         String option;
         String name, rfid, originalLocation;
         while (true) {
@@ -20,8 +91,48 @@ public class DepartmentStore {
                 option = input.next().toUpperCase();
                 input.nextLine();
                 switch (option) {
+                    case "B":
+                        if (!(itemList instanceof ItemList)) {
+                            System.out.println("Bulk loading is only supported by the standard item list.");
+                            break;
+                        }
+                        System.out.println("Enter the feed file name: ");
+                        String fileName = input.nextLine();
+                        BulkLoadReport report;
+                        if (fileName.toLowerCase().endsWith(".csv")) {
+                            try (Reader reader = new FileReader(fileName)) {
+                                synchronized (itemList) {
+                                    report = ((ItemList) itemList).bulkLoadCsv(reader);
+                                }
+                            }
+                        }
+                        else {
+                            try (InputStream stream = new FileInputStream(fileName)) {
+                                synchronized (itemList) {
+                                    report = ((ItemList) itemList).bulkLoadBinary(stream);
+                                }
+                            }
+                        }
+                        System.out.println(report);
+                        for (BulkLoadReport.RowError error : report.getErrors()) {
+                            System.out.println(error);
+                        }
+                        break;
                     case "C":
-                        itemList.cleanStore();
+                        synchronized (itemList) {
+                            itemList.cleanStore();
+                        }
+                        break;
+                    case "W":
+                        if (!(itemList instanceof ItemList)) {
+                            System.out.println("Cleaning in parallel is only supported by the standard item list.");
+                            break;
+                        }
+                        RestockPlan plan;
+                        synchronized (itemList) {
+                            plan = ((ItemList) itemList).cleanStoreParallel(Runtime.getRuntime().availableProcessors());
+                        }
+                        System.out.println(plan);
                         break;
                     case "I":
                         System.out.println("Enter the name: ");
@@ -32,12 +143,18 @@ public class DepartmentStore {
                         originalLocation = input.nextLine().toLowerCase();
                         System.out.println("Enter the price: ");
                         double price = input.nextDouble();
-                        itemList.insertInfo(name, rfid, price, originalLocation);
+                        ItemList.validateInsert(name, rfid, price, originalLocation);
+                        synchronized (itemList) {
+                            itemList.insertInfo(name, rfid, price, originalLocation);
+                        }
                         break;
                     case "L":
                         System.out.println("Enter the location: ");
                         String location = input.nextLine().toLowerCase();
-                        itemList.printByLocation(location);
+                        ItemList.validateLocation(location);
+                        synchronized (itemList) {
+                            itemList.printByLocation(location);
+                        }
                         break;
                     case "M":
                         System.out.println("Enter the RFID: ");
@@ -46,51 +163,244 @@ public class DepartmentStore {
                         originalLocation = input.nextLine().toLowerCase();
                         System.out.println("Enter the new location: ");
                         String newLocation = input.nextLine().toLowerCase();
-                        itemList.moveItem(rfid, originalLocation, newLocation);
+                        ItemList.validateMove(rfid, originalLocation, newLocation);
+                        synchronized (itemList) {
+                            itemList.moveItem(rfid, originalLocation, newLocation);
+                        }
+                        break;
+                    case "N":
+                        if (!(itemList instanceof ItemList)) {
+                            System.out.println("Searching by name is only supported by the standard item list.");
+                            break;
+                        }
+                        System.out.println("Enter part of the name: ");
+                        String text = input.nextLine().trim();
+                        synchronized (itemList) {
+                            ((ItemList) itemList).printByName(text);
+                        }
                         break;
                     case "R":
                         System.out.println("Enter the RFID: ");
                         rfid = input.nextLine().toUpperCase();
-                        itemList.printByRFID(rfid);
+                        ItemList.validateRfid(rfid);
+                        synchronized (itemList) {
+                            itemList.printByRFID(rfid);
+                        }
                         break;
                     case "O":
                         System.out.println("Enter the cart number: ");
                         String cartNumber = input.nextLine().toLowerCase();
-                        double total = itemList.checkOut(cartNumber);
+                        ItemList.validateCart(cartNumber);
+                        double total;
+                        synchronized (itemList) {
+                            total = itemList.checkOut(cartNumber);
+                        }
                         System.out.printf("%-25s%.02f","The total cost for all merchandise in cart " + cartNumber.substring(1)
                                 + " was $", total);
                         System.out.println();
                         break;
+                    case "K":
+                        if (!(itemList instanceof ItemList)) {
+                            System.out.println("Checking out several carts is only supported by the standard item list.");
+                            break;
+                        }
+                        System.out.println("Enter the cart numbers, separated by spaces: ");
+                        String[] cartNumbers = input.nextLine().toLowerCase().trim().split("\\s+");
+                        for (String cart : cartNumbers) {
+                            ItemList.validateCart(cart);
+                        }
+                        CheckOutReport totals;
+                        synchronized (itemList) {
+                            totals = ((ItemList) itemList).checkOutAll(Arrays.asList(cartNumbers));
+                        }
+                        for (Map.Entry<String, Long> cart : totals.getTotals().entrySet()) {
+                            System.out.printf("%-25s%.02f","The total cost for all merchandise in cart " + cart.getKey().substring(1)
+                                    + " was $", ItemCodes.toDollars(cart.getValue()));
+                            System.out.println();
+                        }
+                        System.out.println(totals);
+                        break;
+                    case "S":
+                        if (!(itemList instanceof ItemList)) {
+                            System.out.println("Cart sessions are only supported by the standard item list.");
+                            break;
+                        }
+                        List<CartSession> sessions;
+                        synchronized (itemList) {
+                            sessions = ((ItemList) itemList).openCarts();
+                        }
+                        for (CartSession session : sessions) {
+                            System.out.println(session);
+                        }
+                        System.out.println(sessions.size() + " cart(s) open.");
+                        break;
+                    case "E":
+                        if (!(itemList instanceof ItemList)) {
+                            System.out.println("Cart sessions are only supported by the standard item list.");
+                            break;
+                        }
+                        System.out.println("Enter how many minutes a cart may be idle: ");
+                        long minutes = input.nextLong();
+                        List<CartSession> evicted;
+                        synchronized (itemList) {
+                            evicted = ((ItemList) itemList).evictCarts(CartEvictionPolicy.idleFor(minutes, TimeUnit.MINUTES));
+                        }
+                        for (CartSession session : evicted) {
+                            System.out.println("Returned " + session.getItemCount() + " item(s) from cart " + session.getCartNumber() + " to their shelves.");
+                        }
+                        break;
+                    case "A":
+                        if (!(itemList instanceof ItemList)) {
+                            System.out.println("Cart sessions are only supported by the standard item list.");
+                            break;
+                        }
+                        System.out.println("Enter how many minutes a cart may be idle, or 0 to stop: ");
+                        long idleMinutes = input.nextLong();
+                        if (autoEvict != null) {
+                            autoEvict.close();
+                            autoEvict = null;
+                        }
+                        if (idleMinutes > 0) {
+                            autoEvict = new CartEvictionScheduler((ItemList) itemList, CartEvictionPolicy.idleFor(idleMinutes, TimeUnit.MINUTES),
+                                    1, TimeUnit.MINUTES, session -> System.out.println("Returned " + session.getItemCount()
+                                            + " item(s) from cart " + session.getCartNumber() + " to their shelves."));
+                            System.out.println("Carts idle for " + idleMinutes + " minute(s) are now checked every minute.");
+                        }
+                        break;
+                    case "V":
+                        if (!(itemList instanceof ItemList)) {
+                            System.out.println("Valuing the inventory is only supported by the standard item list.");
+                            break;
+                        }
+                        ItemList valued = (ItemList) itemList;
+                        System.out.println("Enter the location, or leave it empty for the whole store: ");
+                        String valueLocation = input.nextLine().toLowerCase().trim();
+                        if (!valueLocation.isEmpty()) {
+                            ItemList.validateLocation(valueLocation);
+                        }
+                        synchronized (itemList) {
+                            if (valueLocation.isEmpty()) {
+                                for (Map.Entry<String, Long> value : valued.valueByLocation().entrySet()) {
+                                    System.out.printf("%-16s%6d item(s)  $%.02f%n", value.getKey(), valued.countAt(value.getKey()),
+                                            ItemCodes.toDollars(value.getValue()));
+                                }
+                                System.out.printf("%-25s%.02f%n", "The store inventory is worth $", ItemCodes.toDollars(valued.storeValueCents()));
+                            }
+                            else {
+                                System.out.printf("%-16s%6d item(s)  $%.02f%n", valueLocation, valued.countAt(valueLocation),
+                                        ItemCodes.toDollars(valued.valueCentsAt(valueLocation)));
+                            }
+                        }
+                        break;
                     case "P":
-                        itemList.printAll();
+                        synchronized (itemList) {
+                            itemList.printAll();
+                        }
                         break;
                     case "U":
-                        itemList.removeAllPurchased();
+                        synchronized (itemList) {
+                            itemList.removeAllPurchased();
+                        }
                         break;
                     case "Q":
+                        if (autoEvict != null) {
+                            autoEvict.close();
+                        }
+                        synchronized (itemList) {
+                            if (imageFile != null) {
+                                CatalogImage.write(imageFile, (ItemList) itemList);
+                            }
+                            if (itemList instanceof Closeable) {
+                                ((Closeable) itemList).close();
+                            }
+                        }
                         System.out.println("Program terminating normally...");
                         System.exit(0);
                     default:
                         System.out.println("Invalid Choice.");
                 }
             }
-            catch (IllegalArgumentException | InputMismatchException e) {
+            catch (IllegalArgumentException | InputMismatchException | IOException e) {
                 System.out.println(e.getMessage());
             }
         }
     }
 
+    /**
+     * A method to apply commands read from a stream, one per line, to a list without the
+     * menu. The lines are applied in batches of up to <code>BATCH_SIZE</code>, so a long
+     * stream of scans shares the work of <code>applyBatch</code> without being held in
+     * memory. Blank lines and lines starting with <code>#</code> are skipped.
+     * @param list
+     * The list to apply the commands to.
+     * @param reader
+     * The stream of command lines.
+     * @throws IOException
+     * Indicates that the stream could not be read.
+     */
+    private static void runBatch(ItemList list, Reader reader) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        PrintWriter results = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        List<ItemCommand> commands = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        String line;
+        while ((line = lines.readLine()) != null) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            try {
+                commands.add(ItemCommand.parse(trimmed));
+                errors.add(null);
+            }
+            catch (IllegalArgumentException e) {
+                errors.add(e.getMessage());
+            }
+            if (errors.size() == BATCH_SIZE) {
+                printResults(list.applyBatch(commands), errors, results);
+                commands.clear();
+                errors.clear();
+            }
+        }
+        printResults(list.applyBatch(commands), errors, results);
+        results.flush();
+    }
+
+    /**
+     * A helper method to print the results of a batch, one line per command line.
+     * @param applied
+     * The results of the lines that parsed, in order.
+     * @param errors
+     * The error of each line, or null for a line that parsed.
+     * @param results
+     * Where to print the results.
+     */
+    private static void printResults(List<ItemCommandResult> applied, List<String> errors, PrintWriter results) {
+        int next = 0;
+        for (String error : errors) {
+            results.println(error == null ? applied.get(next++) : ItemCommandResult.invalid(error));
+        }
+    }
+
     /**
      * A method to print a menu for the user to choose from.
      */
     private static void printMenu() {
+        System.out.println("B - Bulk load items from a feed file");
         System.out.println("C - Clean store");
+        System.out.println("W - Clean store in parallel");
         System.out.println("I - Insert an item into the list");
         System.out.println("L - List by location");
         System.out.println("M - Move an item in the store");
         System.out.println("O - Checkout");
+        System.out.println("K - Checkout several carts");
+        System.out.println("S - Show open carts");
+        System.out.println("E - Return items from idle carts to their shelves");
+        System.out.println("A - Return items from idle carts automatically");
+        System.out.println("N - Find items by name");
         System.out.println("R - Print by RFID tag number");
         System.out.println("P - Print all items in store");
+        System.out.println("V - Value the inventory");
         System.out.println("U - Update inventory system");
         System.out.println("Q - Exit the program.");
     }
@@ -0,0 +1,539 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The <code>DurableItemList</code> class is an item store that keeps its items in an
+ * <code>ItemList</code> and survives restarts. Every change is checked, logged to an
+ * <code>ItemJournal</code> and synced before it is applied to the list, so the list never
+ * shows a change that a restart would lose. Callers wait for the sync without holding the
+ * lock, so concurrent changes share one sync, and the changes are applied in the order they
+ * were logged. If the journal cannot be written, the store refuses any further change.
+ * Every so often the whole list is saved as a <code>CatalogImage</code> so the journal
+ * stays short.
+ * <p>
+ * Taking a snapshot only copies the items while the store is locked. The image is written
+ * from the copy on a background thread, so the change that happens to cross the threshold
+ * is not held up by the disk. The journals it covers are deleted once it is in place.
+ * <p>
+ * On startup the latest image is mapped, without reading its items, and only the journals
+ * written after it are replayed. Snapshots written as an <code>ItemSnapshot</code> by
+ * earlier versions are still read.
+ */
+public class DurableItemList implements ItemStore, Closeable {
+    public static final int DEFAULT_SNAPSHOT_EVERY = 100000;
+
+    private static final String LEGACY_SNAPSHOT_FILE = "snapshot.bin";
+
+    private Path directory;
+    private ItemList list;
+    private ItemJournal journal;
+    private int snapshotEvery;
+    private int changesSinceSnapshot;
+    private long logged;
+    private long applied;
+    private long failedAt;
+    private IOException failure;
+    private ExecutorService writer;
+    private Future<?> pending;
+    private volatile IOException lastSnapshotError;
+
+    /**
+     * Parameterized constructor which opens a durable store in a directory, recovering any
+     * items saved there, and snapshots after every <code>DEFAULT_SNAPSHOT_EVERY</code> changes.
+     * @param directory
+     * The directory to keep the snapshot and journal files in. It is created if needed.
+     * @throws IOException
+     * Indicates that the saved items could not be recovered.
+     */
+    public DurableItemList(String directory) throws IOException {
+        this(directory, DEFAULT_SNAPSHOT_EVERY);
+    }
+
+    /**
+     * Parameterized constructor which opens a durable store in a directory, recovering any
+     * items saved there.
+     * @param directory
+     * The directory to keep the snapshot and journal files in. It is created if needed.
+     * @param snapshotEvery
+     * The number of changes after which a new snapshot is taken.
+     * @throws IOException
+     * Indicates that the saved items could not be recovered.
+     */
+    public DurableItemList(String directory, int snapshotEvery) throws IOException {
+        this.directory = Paths.get(directory);
+        this.snapshotEvery = snapshotEvery;
+        Files.createDirectories(this.directory);
+        long generation = recover();
+        this.journal = new ItemJournal(this.directory, generation + 1);
+        this.writer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "item-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gets the error of the last snapshot written in the background, if it failed. The
+     * journals it would have replaced are kept, so no change is lost.
+     * @return
+     * Returns the error, or null if no background snapshot has failed.
+     */
+    public IOException getLastSnapshotError() {
+        return lastSnapshotError;
+    }
+
+    /**
+     * A method to insert items into the store.
+     * @param name
+     * The name of the item to insert.
+     * @param rfidTag
+     * The rfidTag number of the item to insert.
+     * @param price
+     * The price of the item to insert.
+     * @param initPosition
+     * The initial position of the item to insert.
+     * @throws IllegalStateException
+     * Indicates that the store has failed to write its journal.
+     */
+    public void insertInfo(String name, String rfidTag, double price, String initPosition) throws IllegalArgumentException {
+        ItemList.validateInsert(name, rfidTag, price, initPosition);
+        logThenApply(() -> journal.logInsert(name, ItemCodes.packTag(rfidTag), ItemCodes.toCents(price), ItemCodes.encodeLocation(initPosition)),
+                () -> {
+                    list.insertInfo(name, rfidTag, price, initPosition);
+                    return null;
+                });
+    }
+
+    /**
+     * A method to move the item from a source location to a dest location.
+     * @param rfidTag
+     * The rfidTag number of the item to be moved.
+     * @param source
+     * The source location of the item to be moved.
+     * @param dest
+     * The destination location of the item to be moved.
+     * @return
+     * Return whether the item was found.
+     * @throws IllegalStateException
+     * Indicates that the store has failed to write its journal.
+     */
+    public boolean moveItem(String rfidTag, String source, String dest) throws IllegalArgumentException {
+        // A move of an item that is not there is logged too, since whether it is there is
+        // only known once the changes logged before it are applied. Replaying it changes
+        // nothing, just as applying it does.
+        ItemList.validateMove(rfidTag, source, dest);
+        return logThenApply(() -> journal.logMove(ItemCodes.packTag(rfidTag), ItemCodes.encodeLocation(source), ItemCodes.encodeLocation(dest)),
+                () -> list.moveItem(rfidTag, source, dest));
+    }
+
+    /**
+     * A method to print a neatly formatted list of all items in the store.
+     */
+    public synchronized void printAll() {
+        list.printAll();
+    }
+
+    /**
+     * Prints a neatly formatted list of all items in a specified location.
+     * @param location
+     * The location of the items to be printed in the table.
+     */
+    public synchronized void printByLocation(String location) {
+        list.printByLocation(location);
+    }
+
+    /**
+     * A method to print all items that have the same rfid number.
+     * @param rfid
+     * The rfid of the items.
+     */
+    public synchronized void printByRFID(String rfid) {
+        list.printByRFID(rfid);
+    }
+
+    /**
+     * A method to take every item that is in the store and on the wrong shelf and place it where
+     * it belongs.
+     * @throws IllegalStateException
+     * Indicates that the store has failed to write its journal.
+     */
+    public void cleanStore() {
+        logThenApply(() -> journal.log(ItemJournal.CLEAN_STORE), () -> {
+            list.cleanStore();
+            return null;
+        });
+    }
+
+    /**
+     * A method that checks out each item in a cart.
+     * @param cartNumber
+     * The cart number to check out.
+     * @return
+     * Returns the total price of all items in that cart.
+     * @throws IllegalStateException
+     * Indicates that the store has failed to write its journal.
+     */
+    public double checkOut(String cartNumber) {
+        ItemList.validateCart(cartNumber);
+        return logThenApply(() -> journal.logCheckOut(ItemCodes.encodeLocation(cartNumber)), () -> list.checkOut(cartNumber));
+    }
+
+    /**
+     * A method to remove all purchased items from the store and display them.
+     * @throws IllegalStateException
+     * Indicates that the store has failed to write its journal.
+     */
+    public void removeAllPurchased() {
+        logThenApply(() -> journal.log(ItemJournal.REMOVE_ALL_PURCHASED), () -> {
+            list.removeAllPurchased();
+            return null;
+        });
+    }
+
+    /**
+     * Saves every item to a new snapshot and deletes the journals it replaces, waiting
+     * until the snapshot has been written.
+     * @throws IOException
+     * Indicates that the snapshot could not be written, or that the store has failed to
+     * write its journal.
+     */
+    public void snapshot() throws IOException {
+        Future<?> written;
+        synchronized (this) {
+            while (applied < logged && failure == null) {
+                awaitTurn();
+            }
+            if (failure != null) {
+                throw new IOException("The store failed to write its journal.", failure);
+            }
+            written = writer.submit(copy()::write);
+        }
+        try {
+            written.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the snapshot.", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException("The snapshot could not be written.", e.getCause());
+        }
+    }
+
+    /**
+     * Waits for a snapshot being written in the background, then syncs the journal and
+     * closes it.
+     * @throws IOException
+     * Indicates that the journal could not be closed.
+     */
+    public synchronized void close() throws IOException {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+    }
+
+    /**
+     * A helper method to load the latest snapshot and replay the journals after it.
+     * @return
+     * Returns the newest journal generation found, so that new changes go to a later one.
+     * @throws IOException
+     * Indicates that the saved items could not be read.
+     */
+    private long recover() throws IOException {
+        // The Big-O notation of this method is O(d + l + r) for the d names and l locations
+        // of the image and the r journal records after it, since the items of the image are
+        // only read once they are used. A legacy snapshot costs O(n) to load instead.
+        long covered = 0;
+        List<Long> images = generations("snapshot-*.image", 9, 6);
+        Path legacy = directory.resolve(LEGACY_SNAPSHOT_FILE);
+        if (!images.isEmpty()) {
+            covered = images.get(images.size() - 1);
+            list = new ItemList(CatalogImage.open(imageFor(covered)));
+        }
+        else if (Files.exists(legacy)) {
+            ItemSnapshot snapshot = ItemSnapshot.read(legacy);
+            list = new ItemList();
+            list.restore(snapshot.getItems());
+            covered = snapshot.getGeneration();
+        }
+        else {
+            list = new ItemList();
+        }
+        long newest = covered;
+        list.setOutput(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (long generation : journalGenerations()) {
+                if (generation > covered) {
+                    ItemJournal.replay(ItemJournal.fileFor(directory, generation), list);
+                }
+                newest = Math.max(newest, generation);
+            }
+        }
+        finally {
+            list.setOutput(System.out);
+        }
+        return newest;
+    }
+
+    /**
+     * A helper method to find the generations of the journal files in the directory.
+     * @return
+     * Returns the generations, oldest first.
+     * @throws IOException
+     * Indicates that the directory could not be listed.
+     */
+    private List<Long> journalGenerations() throws IOException {
+        return generations("journal-*.log", 8, 4);
+    }
+
+    /**
+     * A helper method to find the generations of the files in the directory whose names
+     * match a pattern.
+     * @param pattern
+     * The glob the file names must match.
+     * @param prefix
+     * The length of the name before the generation.
+     * @param suffix
+     * The length of the name after the generation.
+     * @return
+     * Returns the generations, oldest first.
+     * @throws IOException
+     * Indicates that the directory could not be listed.
+     */
+    private List<Long> generations(String pattern, int prefix, int suffix) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, pattern)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    generations.add(Long.parseLong(name.substring(prefix, name.length() - suffix)));
+                }
+                catch (NumberFormatException e) {
+                    // Not one of our files.
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    /**
+     * A helper method to name the image that covers the journals up to a generation.
+     * @param generation
+     * The last journal generation in the image.
+     * @return
+     * Returns the path of the image.
+     */
+    private Path imageFor(long generation) {
+        return directory.resolve("snapshot-" + generation + ".image");
+    }
+
+    /**
+     * A helper method to log a change, wait for it to be synced without holding the lock,
+     * and then apply it once every change logged before it has been applied.
+     * @param log
+     * Logs the change while the lock is held and returns its sequence number.
+     * @param change
+     * Applies the change to the list and returns its result.
+     * @return
+     * Returns the result of the change.
+     * @throws IllegalStateException
+     * Indicates that the store has failed to write its journal, now or before.
+     */
+    private <T> T logThenApply(LongSupplier log, Supplier<T> change) {
+        long sequence;
+        synchronized (this) {
+            if (failure != null) {
+                throw new IllegalStateException("The store failed to write its journal and accepts no more changes.", failure);
+            }
+            sequence = log.getAsLong();
+            logged = sequence;
+        }
+        try {
+            journal.awaitDurable(sequence);
+        }
+        catch (IOException e) {
+            synchronized (this) {
+                if (failure == null || sequence < failedAt) {
+                    failure = e;
+                    failedAt = sequence;
+                }
+                notifyAll();
+            }
+            throw new IllegalStateException("The store failed to write its journal and accepts no more changes.", e);
+        }
+        synchronized (this) {
+            while (applied < sequence - 1) {
+                if (failure != null && failedAt < sequence) {
+                    // A change before this one was never synced, so neither was this one.
+                    throw new IllegalStateException("The store failed to write its journal and accepts no more changes.", failure);
+                }
+                awaitTurn();
+            }
+            T result = change.get();
+            applied = sequence;
+            notifyAll();
+            changed();
+            return result;
+        }
+    }
+
+    /**
+     * A helper method to wait, while holding the lock, for another change to be applied or
+     * to fail. An interrupt does not stop the wait, since every synced change has to be
+     * applied in order, but it is kept for the caller.
+     */
+    private void awaitTurn() {
+        try {
+            wait();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A helper method to count a change and, when enough have built up and no logged change
+     * is waiting to be applied, hand a copy of the list to the background writer. If the
+     * previous snapshot is still being written, the next change tries again.
+     */
+    private void changed() {
+        if (++changesSinceSnapshot >= snapshotEvery && applied == logged && (pending == null || pending.isDone())) {
+            Snapshot snapshot;
+            try {
+                snapshot = copy();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            pending = writer.submit(() -> {
+                try {
+                    snapshot.write();
+                    lastSnapshotError = null;
+                }
+                catch (UncheckedIOException e) {
+                    lastSnapshotError = e.getCause();
+                }
+            });
+        }
+    }
+
+    /**
+     * A helper method to roll the journal and copy every item, so that a snapshot can be
+     * written while the list changes. It must be called while holding the lock.
+     * @return
+     * Returns the copy, which covers every journal up to the one just rolled.
+     * @throws IOException
+     * Indicates that the journal could not be rolled.
+     */
+    private Snapshot copy() throws IOException {
+        // The Big-O notation of this method is O(n), but it only copies the fields of each
+        // item into arrays, so the items themselves are built on the writer thread.
+        long covered = journal.roll();
+        Snapshot snapshot = new Snapshot(covered, list.size());
+        Map<ItemInfo, Integer> purchased = new IdentityHashMap<>();
+        int[] filled = new int[1];
+        list.forEach(item -> {
+            int r = filled[0]++;
+            snapshot.nameIds[r] = item.getNameId();
+            snapshot.tags[r] = item.getRfidTag();
+            snapshot.originals[r] = item.getOriginalLocationCode();
+            snapshot.currents[r] = item.getCurrentLocationCode();
+            snapshot.cents[r] = item.getPriceCents();
+            if (item.getCurrentLocationCode() == ItemCodes.OUT) {
+                purchased.put(item, r);
+            }
+        });
+        List<ItemInfo> outOrder = list.purchasedInOrder();
+        snapshot.purchased = new int[outOrder.size()];
+        for (int i = 0; i < snapshot.purchased.length; i++) {
+            snapshot.purchased[i] = purchased.get(outOrder.get(i));
+        }
+        changesSinceSnapshot = 0;
+        return snapshot;
+    }
+
+    /**
+     * The <code>Snapshot</code> class is a copy of the fields of every item of the list, in
+     * list order, waiting to be written as an image.
+     */
+    private class Snapshot {
+        private final long generation;
+        private final int[] nameIds;
+        private final long[] tags;
+        private final int[] originals;
+        private final int[] currents;
+        private final long[] cents;
+        private int[] purchased;
+
+        Snapshot(long generation, int size) {
+            this.generation = generation;
+            this.nameIds = new int[size];
+            this.tags = new long[size];
+            this.originals = new int[size];
+            this.currents = new int[size];
+            this.cents = new long[size];
+        }
+
+        /**
+         * Writes the image, then deletes the older images and the journals it covers.
+         * @throws UncheckedIOException
+         * Indicates that the image could not be written or the old files deleted.
+         */
+        void write() {
+            ItemInfo[] items = new ItemInfo[tags.length];
+            for (int r = 0; r < items.length; r++) {
+                items[r] = new ItemInfo(nameIds[r], tags[r], originals[r], currents[r], cents[r]);
+            }
+            List<ItemInfo> out = new ArrayList<>(purchased.length);
+            for (int r : purchased) {
+                out.add(items[r]);
+            }
+            try {
+                CatalogImage.write(imageFor(generation), items, out);
+                for (long older : generations("snapshot-*.image", 9, 6)) {
+                    if (older < generation) {
+                        Files.deleteIfExists(imageFor(older));
+                    }
+                }
+                Files.deleteIfExists(directory.resolve(LEGACY_SNAPSHOT_FILE));
+                for (long journalGeneration : journalGenerations()) {
+                    if (journalGeneration <= generation) {
+                        Files.deleteIfExists(ItemJournal.fileFor(directory, journalGeneration));
+                    }
+                }
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+}
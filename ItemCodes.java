@@ -0,0 +1,270 @@
+/**
+ * The <code>ItemCodes</code> class converts the text fields of an item to and from the
+ * primitive codes <code>ItemInfo</code> stores them as. Rfid tag numbers become a long,
+ * locations become an int, and prices become a whole number of cents.
+ * <p>
+ * Location codes are dense: shelves s00000 to s99999 are 0 to 99999, carts c000 to c999
+ * are 100000 to 100999, and out is 101000.
+ * <p>
+ * The <code>parse</code> methods check and convert a field in a single pass without
+ * allocating, returning -1 when the text is not valid, so that the insert and move paths
+ * can validate a field and get its code from the same call.
+ */
+public class ItemCodes {
+    public static final int CART_BASE = 100000;
+    public static final int OUT = 101000;
+    public static final int CART_COUNT = OUT - CART_BASE;
+    public static final int LOCATION_COUNT = OUT + 1;
+
+    private static final String[] LOCATION_NAMES = new String[LOCATION_COUNT];
+
+    /**
+     * Packs an rfid tag number into a long.
+     * @param rfidTag
+     * The 9 character hexadecimal rfid tag number, in either case.
+     * @return
+     * Returns the packed tag.
+     */
+    public static long packTag(String rfidTag) {
+        long tag = parseTag(rfidTag);
+        if (tag < 0) {
+            throw new IllegalArgumentException("RFID must be a 9-character hexadecimal string including 0 - 9 or A - F.");
+        }
+        return tag;
+    }
+
+    /**
+     * Checks an rfid tag number and packs it into a long.
+     * @param rfidTag
+     * The text to parse.
+     * @return
+     * Returns the packed tag, or -1 if the text is not 9 hexadecimal characters.
+     */
+    public static long parseTag(CharSequence rfidTag) {
+        // The Big-O notation of this method is O(1) because the tag has a fixed length.
+        if (rfidTag.length() != 9) {
+            return -1;
+        }
+        long tag = 0;
+        for (int i = 0; i < 9; i++) {
+            int digit = hexDigit(rfidTag.charAt(i));
+            if (digit < 0) {
+                return -1;
+            }
+            tag = (tag << 4) | digit;
+        }
+        return tag;
+    }
+
+    /**
+     * Checks a shelf position and encodes it.
+     * @param shelf
+     * The text to parse.
+     * @return
+     * Returns the location code, or -1 if the text is not a s followed by 5 digits.
+     */
+    public static int parseShelf(CharSequence shelf) {
+        if (shelf.length() != 6 || shelf.charAt(0) != 's') {
+            return -1;
+        }
+        return parseDigits(shelf);
+    }
+
+    /**
+     * Checks a cart number and encodes it.
+     * @param cartNumber
+     * The text to parse.
+     * @return
+     * Returns the location code, or -1 if the text is not a c followed by 3 digits.
+     */
+    public static int parseCart(CharSequence cartNumber) {
+        if (cartNumber.length() != 4 || cartNumber.charAt(0) != 'c') {
+            return -1;
+        }
+        int number = parseDigits(cartNumber);
+        return number < 0 ? -1 : CART_BASE + number;
+    }
+
+    /**
+     * Checks a location and encodes it.
+     * @param location
+     * The text to parse.
+     * @return
+     * Returns the location code, or -1 if the text is not a shelf position, a cart
+     * number, or out.
+     */
+    public static int parseLocation(CharSequence location) {
+        switch (location.length()) {
+            case 6:
+                return parseShelf(location);
+            case 4:
+                return parseCart(location);
+            case 3:
+                return isOut(location) ? OUT : -1;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Checks that an item name is between 1 and 20 characters long.
+     * @param name
+     * The name to check.
+     * @return
+     * Returns whether the name is valid.
+     */
+    public static boolean isValidName(CharSequence name) {
+        return name.length() > 0 && name.length() <= 20;
+    }
+
+    /**
+     * Turns a packed tag back into a 9 character upper case rfid tag number.
+     * @param tag
+     * The packed tag.
+     * @return
+     * Returns the rfid tag number.
+     */
+    public static String formatTag(long tag) {
+        char[] digits = new char[9];
+        for (int i = 8; i >= 0; i--) {
+            digits[i] = Character.toUpperCase(Character.forDigit((int) (tag & 0xF), 16));
+            tag >>>= 4;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Encodes a location into its code.
+     * @param location
+     * A shelf position, a cart number, or out.
+     * @return
+     * Returns the location code.
+     * @throws IllegalArgumentException
+     * Indicates that <code>location</code> is not a shelf position, a cart number, or out.
+     */
+    public static int encodeLocation(String location) {
+        int code = parseLocation(location);
+        if (code >= 0) {
+            return code;
+        }
+        throw new IllegalArgumentException("Current location must be a shelf position, a cart number, or out.");
+    }
+
+    /**
+     * Decodes a location code. The strings are made once per code and then shared.
+     * @param code
+     * The location code.
+     * @return
+     * Returns the shelf position, cart number, or out.
+     */
+    public static String decodeLocation(int code) {
+        String name = LOCATION_NAMES[code];
+        if (name == null) {
+            if (code == OUT) {
+                name = "out";
+            }
+            else if (code >= CART_BASE) {
+                name = String.format("c%03d", code - CART_BASE);
+            }
+            else {
+                name = String.format("s%05d", code);
+            }
+            LOCATION_NAMES[code] = name;
+        }
+        return name;
+    }
+
+    /**
+     * Checks whether a location code is a shelf.
+     * @param code
+     * The location code.
+     * @return
+     * Returns whether the code is a shelf position.
+     */
+    public static boolean isShelf(int code) {
+        return code < CART_BASE;
+    }
+
+    /**
+     * Checks whether a location code is a cart.
+     * @param code
+     * The location code.
+     * @return
+     * Returns whether the code is a cart number.
+     */
+    public static boolean isCart(int code) {
+        return code >= CART_BASE && code < OUT;
+    }
+
+    /**
+     * Converts a price to a whole number of cents, rounding to the nearest cent.
+     * @param price
+     * The price in dollars.
+     * @return
+     * Returns the price in cents.
+     */
+    public static long toCents(double price) {
+        return Math.round(price * 100);
+    }
+
+    /**
+     * Converts a whole number of cents back to dollars.
+     * @param cents
+     * The price in cents.
+     * @return
+     * Returns the price in dollars.
+     */
+    public static double toDollars(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * A helper method to read the digits after the first character of a location.
+     * @param location
+     * The location, whose first character has already been checked.
+     * @return
+     * Returns the number the digits spell, or -1 if any of them is not a digit.
+     */
+    private static int parseDigits(CharSequence location) {
+        int number = 0;
+        for (int i = 1; i < location.length(); i++) {
+            char c = location.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    /**
+     * A helper method to check for out in any case.
+     * @param location
+     * The 3 character location to check.
+     * @return
+     * Returns whether the location is out.
+     */
+    private static boolean isOut(CharSequence location) {
+        return (location.charAt(0) | 0x20) == 'o'
+                && (location.charAt(1) | 0x20) == 'u'
+                && (location.charAt(2) | 0x20) == 't';
+    }
+
+    /**
+     * A helper method to read one hexadecimal digit in either case.
+     * @param c
+     * The character to read.
+     * @return
+     * Returns the value of the digit, or -1 if it is not one.
+     */
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        int lower = c | 0x20;
+        if (lower >= 'a' && lower <= 'f') {
+            return lower - 'a' + 10;
+        }
+        return -1;
+    }
+}
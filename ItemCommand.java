@@ -0,0 +1,195 @@
+/**
+ * The <code>ItemCommand</code> class is one command of a batch passed to
+ * <code>ItemList.applyBatch</code>: an insert, a move or a checkout.
+ * <p>
+ * Commands can also be read from text, one per line, in the same form the
+ * <code>StoreServer</code> protocol uses:
+ * <pre>
+ * INSERT rfid price location name
+ * MOVE rfid source dest
+ * CHECKOUT cart
+ * </pre>
+ */
+public class ItemCommand {
+    /**
+     * The kinds of command.
+     */
+    public enum Type {
+        INSERT,
+        MOVE,
+        CHECKOUT
+    }
+
+    private Type type;
+    private String name;
+    private String rfidTag;
+    private double price;
+    private String source;
+    private String dest;
+
+    /**
+     * A helper constructor shared by the factory methods.
+     */
+    private ItemCommand(Type type, String name, String rfidTag, double price, String source, String dest) {
+        this.type = type;
+        this.name = name;
+        this.rfidTag = rfidTag;
+        this.price = price;
+        this.source = source;
+        this.dest = dest;
+    }
+
+    /**
+     * Creates a command that inserts an item, like <code>insertInfo</code>.
+     * @param name
+     * The name of the item.
+     * @param rfidTag
+     * The rfid tag number of the item.
+     * @param price
+     * The price of the item.
+     * @param initPosition
+     * The initial position of the item.
+     * @return
+     * Returns the command.
+     */
+    public static ItemCommand insert(String name, String rfidTag, double price, String initPosition) {
+        return new ItemCommand(Type.INSERT, name, rfidTag, price, null, initPosition);
+    }
+
+    /**
+     * Creates a command that moves an item, like <code>moveItem</code>.
+     * @param rfidTag
+     * The rfid tag number of the item.
+     * @param source
+     * The location the item is in.
+     * @param dest
+     * The location to move the item to.
+     * @return
+     * Returns the command.
+     */
+    public static ItemCommand move(String rfidTag, String source, String dest) {
+        return new ItemCommand(Type.MOVE, null, rfidTag, 0, source, dest);
+    }
+
+    /**
+     * Creates a command that checks out a cart, like <code>checkOut</code>.
+     * @param cartNumber
+     * The cart number.
+     * @return
+     * Returns the command.
+     */
+    public static ItemCommand checkOut(String cartNumber) {
+        return new ItemCommand(Type.CHECKOUT, null, null, 0, cartNumber, null);
+    }
+
+    /**
+     * Reads a command from a line of text. Rfid tags are upper cased and locations lower
+     * cased, as the menu does.
+     * @param line
+     * The line to read.
+     * @return
+     * Returns the command.
+     * @throws IllegalArgumentException
+     * Indicates that the line is not a command or is missing arguments.
+     */
+    public static ItemCommand parse(String line) throws IllegalArgumentException {
+        String[] words = line.trim().split("\\s+", 5);
+        String command = words[0].toUpperCase();
+        switch (command) {
+            case "INSERT":
+                requireWords(words, 5);
+                double price;
+                try {
+                    price = Double.parseDouble(words[2]);
+                }
+                catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Price must be a number.");
+                }
+                return insert(words[4], words[1].toUpperCase(), price, words[3].toLowerCase());
+            case "MOVE":
+                requireWords(words, 4);
+                return move(words[1].toUpperCase(), words[2].toLowerCase(), words[3].toLowerCase());
+            case "CHECKOUT":
+                requireWords(words, 2);
+                return checkOut(words[1].toLowerCase());
+            default:
+                throw new IllegalArgumentException("Unknown command " + words[0] + ".");
+        }
+    }
+
+    /**
+     * Gets the kind of command.
+     * @return
+     * Returns the type.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the name of the item to insert.
+     * @return
+     * Returns the name, or null if this is not an insert.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the rfid tag number of the item to insert or move.
+     * @return
+     * Returns the rfid tag number, or null for a checkout.
+     */
+    public String getRfidTag() {
+        return rfidTag;
+    }
+
+    /**
+     * Gets the price of the item to insert.
+     * @return
+     * Returns the price, or 0 if this is not an insert.
+     */
+    public double getPrice() {
+        return price;
+    }
+
+    /**
+     * Gets the location a move starts from, or the cart to check out.
+     * @return
+     * Returns the location, or null for an insert.
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Gets the location a move ends at, or where an insert puts the item.
+     * @return
+     * Returns the location, or null for a checkout.
+     */
+    public String getDest() {
+        return dest;
+    }
+
+    /**
+     * Returns the command as a line of text that <code>parse</code> reads back.
+     * @return
+     * Returns the command line.
+     */
+    public String toString() {
+        switch (type) {
+            case INSERT:
+                return "INSERT " + rfidTag + " " + price + " " + dest + " " + name;
+            case MOVE:
+                return "MOVE " + rfidTag + " " + source + " " + dest;
+            default:
+                return "CHECKOUT " + source;
+        }
+    }
+
+    private static void requireWords(String[] words, int count) {
+        if (words.length < count) {
+            throw new IllegalArgumentException(words[0].toUpperCase() + " needs " + (count - 1) + " argument(s).");
+        }
+    }
+}
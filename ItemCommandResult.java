@@ -0,0 +1,116 @@
+/**
+ * The <code>ItemCommandResult</code> class is the outcome of one command of a batch passed to
+ * <code>ItemList.applyBatch</code>.
+ */
+public class ItemCommandResult {
+    /**
+     * The outcome of a command.
+     */
+    public enum Status {
+        /**
+         * The command was applied: the item was inserted, found and moved, or the cart was
+         * checked out.
+         */
+        OK,
+
+        /**
+         * A move found no item with the tag at the source location.
+         */
+        NOT_FOUND,
+
+        /**
+         * The command failed validation and changed nothing.
+         */
+        INVALID
+    }
+
+    /**
+     * The result of an insert or move that was applied.
+     */
+    public static final ItemCommandResult OK = new ItemCommandResult(Status.OK, null, -1);
+
+    /**
+     * The result of a move whose item was not found.
+     */
+    public static final ItemCommandResult NOT_FOUND = new ItemCommandResult(Status.NOT_FOUND, null, -1);
+
+    private Status status;
+    private String message;
+    private long totalCents;
+
+    /**
+     * A helper constructor shared by the constants and factory methods.
+     */
+    private ItemCommandResult(Status status, String message, long totalCents) {
+        this.status = status;
+        this.message = message;
+        this.totalCents = totalCents;
+    }
+
+    /**
+     * Creates the result of a command that failed validation.
+     * @param message
+     * Why the command was invalid.
+     * @return
+     * Returns the result.
+     */
+    public static ItemCommandResult invalid(String message) {
+        return new ItemCommandResult(Status.INVALID, message, -1);
+    }
+
+    /**
+     * Creates the result of a checkout.
+     * @param totalCents
+     * The total of the cart in cents.
+     * @return
+     * Returns the result.
+     */
+    public static ItemCommandResult checkedOut(long totalCents) {
+        return new ItemCommandResult(Status.OK, null, totalCents);
+    }
+
+    /**
+     * Gets the outcome of the command.
+     * @return
+     * Returns the status.
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets why the command was invalid.
+     * @return
+     * Returns the validation message, or null if the command was valid.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Gets the total of a checked out cart in cents.
+     * @return
+     * Returns the total, or -1 if the command was not a checkout.
+     */
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    /**
+     * Returns the result as one line, in the form the <code>StoreServer</code> protocol
+     * answers with: <code>OK</code>, <code>OK total</code> for a checkout,
+     * <code>NOT_FOUND</code>, or <code>ERROR message</code>.
+     * @return
+     * Returns the result line.
+     */
+    public String toString() {
+        switch (status) {
+            case OK:
+                return totalCents < 0 ? "OK" : String.format("OK %.2f", ItemCodes.toDollars(totalCents));
+            case NOT_FOUND:
+                return "NOT_FOUND";
+            default:
+                return "ERROR " + message;
+        }
+    }
+}
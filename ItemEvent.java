@@ -0,0 +1,234 @@
+/**
+ * The <code>ItemEvent</code> class describes one change to an item: an insert, a change of
+ * location, a removal, or a change to its name, price or original location. Locations are
+ * <code>ItemCodes</code> location codes, and the name is a <code>NameDictionary</code> id,
+ * so an event holds no objects besides its type.
+ * <p>
+ * The fields describe the item after the change. A change to the name, price or original
+ * location also carries the value that field had before, so that the item can still be
+ * found by what it looked like.
+ * <p>
+ * Events live in the slots of an <code>ItemEventRing</code> and are overwritten as the ring
+ * wraps around, so subscribers must copy whatever they keep.
+ */
+public class ItemEvent {
+    /**
+     * The location code used when an event has no source or destination.
+     */
+    public static final int NO_LOCATION = -1;
+
+    private ItemEventType type;
+    private long sequence;
+    private long timeMillis;
+    private long rfidTag;
+    private int nameId;
+    private int originalLocation;
+    private int fromLocation;
+    private int toLocation;
+    private long priceCents;
+    private long previous;
+
+    /**
+     * Sets every field of the event, reusing it for a new change.
+     * @param type
+     * The kind of change.
+     * @param sequence
+     * The position of the event in the ring.
+     * @param timeMillis
+     * When the change happened.
+     * @param rfidTag
+     * The packed rfid number of the item.
+     * @param nameId
+     * The name id of the item.
+     * @param originalLocation
+     * The original location code of the item.
+     * @param fromLocation
+     * The location code the item left, or <code>NO_LOCATION</code>.
+     * @param toLocation
+     * The location code the item arrived at, or <code>NO_LOCATION</code>.
+     * @param priceCents
+     * The price of the item in cents.
+     * @param previous
+     * The value the changed field had before, for a rename, reprice or relocation.
+     */
+    void set(ItemEventType type, long sequence, long timeMillis, long rfidTag, int nameId,
+             int originalLocation, int fromLocation, int toLocation, long priceCents, long previous) {
+        this.type = type;
+        this.sequence = sequence;
+        this.timeMillis = timeMillis;
+        this.rfidTag = rfidTag;
+        this.nameId = nameId;
+        this.originalLocation = originalLocation;
+        this.fromLocation = fromLocation;
+        this.toLocation = toLocation;
+        this.priceCents = priceCents;
+        this.previous = previous;
+    }
+
+    /**
+     * Gets the kind of change.
+     * @return
+     * Returns the type of the event.
+     */
+    public ItemEventType getType() {
+        return type;
+    }
+
+    /**
+     * Gets the position of the event in the ring, counting from 0.
+     * @return
+     * Returns the sequence number of the event.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets when the change happened.
+     * @return
+     * Returns the time of the change in milliseconds since the epoch.
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Gets the rfid number of the item packed into a long.
+     * @return
+     * Returns the packed rfid number of the item.
+     */
+    public long getRfidTag() {
+        return rfidTag;
+    }
+
+    /**
+     * Gets the <code>NameDictionary</code> id of the name of the item.
+     * @return
+     * Returns the name id of the item.
+     */
+    public int getNameId() {
+        return nameId;
+    }
+
+    /**
+     * Gets the name of the item.
+     * @return
+     * Returns the name of the item.
+     */
+    public String getName() {
+        return NameDictionary.nameOf(nameId);
+    }
+
+    /**
+     * Gets the original location code of the item.
+     * @return
+     * Returns the original location code of the item.
+     */
+    public int getOriginalLocation() {
+        return originalLocation;
+    }
+
+    /**
+     * Gets the location code the item left.
+     * @return
+     * Returns the old location code, or <code>NO_LOCATION</code> for an insert.
+     */
+    public int getFromLocation() {
+        return fromLocation;
+    }
+
+    /**
+     * Gets the location code the item arrived at.
+     * @return
+     * Returns the new location code, or <code>NO_LOCATION</code> for a removal.
+     */
+    public int getToLocation() {
+        return toLocation;
+    }
+
+    /**
+     * Gets the price of the item in cents.
+     * @return
+     * Returns the price of the item in cents.
+     */
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    /**
+     * Gets the value the changed field had before a rename, reprice, relocation or retag.
+     * @return
+     * Returns the old name id for <code>RENAMED</code>, the old price in cents for
+     * <code>REPRICED</code>, the old original location code for <code>RELOCATED</code>, the
+     * old packed rfid tag for <code>RETAGGED</code>, and 0 for any other event.
+     */
+    public long getPrevious() {
+        return previous;
+    }
+
+    /**
+     * Gets the rfid tag the item had before the event.
+     * @return
+     * Returns the old packed rfid tag for a retag, or the rfid tag of the item otherwise.
+     */
+    public long getPreviousRfidTag() {
+        return type == ItemEventType.RETAGGED ? previous : rfidTag;
+    }
+
+    /**
+     * Gets the name id the item had before the event.
+     * @return
+     * Returns the old name id for a rename, or the name id of the item otherwise.
+     */
+    public int getPreviousNameId() {
+        return type == ItemEventType.RENAMED ? (int) previous : nameId;
+    }
+
+    /**
+     * Gets the price the item had before the event.
+     * @return
+     * Returns the old price in cents for a reprice, or the price of the item otherwise.
+     */
+    public long getPreviousPriceCents() {
+        return type == ItemEventType.REPRICED ? previous : priceCents;
+    }
+
+    /**
+     * Gets the original location code the item had before the event.
+     * @return
+     * Returns the old original location code for a relocation, or the original location
+     * code of the item otherwise.
+     */
+    public int getPreviousOriginalLocation() {
+        return type == ItemEventType.RELOCATED ? (int) previous : originalLocation;
+    }
+
+    /**
+     * Returns the event as one line of text.
+     * @return
+     * Returns the sequence, type, tag, name, locations and price of the event, and the old
+     * value of a renamed, repriced, relocated or retagged item.
+     */
+    public String toString() {
+        String line = sequence + " " + type + " " + ItemCodes.formatTag(rfidTag) + " " + getName()
+                + " " + location(fromLocation) + " -> " + location(toLocation)
+                + " (" + ItemCodes.decodeLocation(originalLocation) + ") "
+                + String.format("%.2f", ItemCodes.toDollars(priceCents));
+        switch (type) {
+            case RENAMED:
+                return line + " was " + NameDictionary.nameOf((int) previous);
+            case REPRICED:
+                return line + " was " + String.format("%.2f", ItemCodes.toDollars(previous));
+            case RELOCATED:
+                return line + " was " + ItemCodes.decodeLocation((int) previous);
+            case RETAGGED:
+                return line + " was " + ItemCodes.formatTag(previous);
+            default:
+                return line;
+        }
+    }
+
+    private static String location(int code) {
+        return code == NO_LOCATION ? "-" : ItemCodes.decodeLocation(code);
+    }
+}
@@ -0,0 +1,259 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * The <code>ItemEventFile</code> class is a subscriber that appends the events of an
+ * <code>ItemEventRing</code> to a file, along with the tools to read such a file back and
+ * to replay it into an <code>ItemList</code>.
+ * <p>
+ * The file starts with a magic number and a version, followed by one record per event: the
+ * type, sequence, time, packed tag, original, from and to location codes, price in cents,
+ * and the name as length-prefixed UTF-8, followed by the previous value of the event: the
+ * old name as length-prefixed UTF-8 for a rename, or a long otherwise. Files of version 1,
+ * which had no previous value, can still be read. The file is flushed at the end of every
+ * batch, so a crash loses at most the batch being written, and reading stops at a
+ * cut-short record.
+ * <p>
+ * Usage: <code>java ItemEventFile &lt;file&gt; [--apply]</code> prints every event in the
+ * file, or with <code>--apply</code> replays them into an empty list and prints the result.
+ */
+public class ItemEventFile implements ItemEventSubscriber, Closeable {
+    private static final int MAGIC = 0x49455654;
+    private static final int VERSION = 2;
+
+    private DataOutputStream out;
+
+    /**
+     * Parameterized constructor which opens an event file for appending, creating it if
+     * it does not exist.
+     * @param path
+     * The path of the event file.
+     * @throws IOException
+     * Indicates that the file could not be opened, or is not an event file of the current
+     * version.
+     */
+    public ItemEventFile(Path path) throws IOException {
+        boolean empty = !Files.exists(path) || Files.size(path) == 0;
+        if (!empty) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException(path + " is not an item event file of version " + VERSION + ".");
+                }
+            }
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND), 64 * 1024));
+        if (empty) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.flush();
+        }
+    }
+
+    /**
+     * Appends an event to the file, flushing at the end of each batch.
+     * @param event
+     * The event to append.
+     * @param endOfBatch
+     * Whether this is the last event available for now.
+     * @throws IOException
+     * Indicates that the event could not be written.
+     */
+    public void onEvent(ItemEvent event, boolean endOfBatch) throws IOException {
+        out.writeByte(event.getType().ordinal());
+        out.writeLong(event.getSequence());
+        out.writeLong(event.getTimeMillis());
+        out.writeLong(event.getRfidTag());
+        out.writeInt(event.getOriginalLocation());
+        out.writeInt(event.getFromLocation());
+        out.writeInt(event.getToLocation());
+        out.writeLong(event.getPriceCents());
+        writeName(event.getNameId());
+        if (event.getType() == ItemEventType.RENAMED) {
+            writeName((int) event.getPrevious());
+        }
+        else {
+            out.writeLong(event.getPrevious());
+        }
+        if (endOfBatch) {
+            out.flush();
+        }
+    }
+
+    /**
+     * A helper method to write a name as length-prefixed UTF-8.
+     * @param nameId
+     * The name id of the name.
+     * @throws IOException
+     * Indicates that the name could not be written.
+     */
+    private void writeName(int nameId) throws IOException {
+        byte[] name = NameDictionary.nameOf(nameId).getBytes(StandardCharsets.UTF_8);
+        out.writeShort(name.length);
+        out.write(name);
+    }
+
+    /**
+     * Flushes and closes the file. The ring should be closed first so that no more events
+     * arrive.
+     * @throws IOException
+     * Indicates that the file could not be closed.
+     */
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Reads every event in a file, in the order they were written.
+     * @param path
+     * The path of the event file.
+     * @param visitor
+     * Receives each event. The same event object is reused for every record.
+     * @return
+     * Returns the number of events read.
+     * @throws IOException
+     * Indicates that the file could not be read or is not an event file.
+     */
+    public static long read(Path path, Consumer<ItemEvent> visitor) throws IOException {
+        // The Big-O notation of this method is O(e) for the e events in the file.
+        ItemEventType[] types = ItemEventType.values();
+        ItemEvent event = new ItemEvent();
+        long count = 0;
+        try (InputStream stream = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 64 * 1024))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(path + " is not an item event file.");
+            }
+            int version = in.readInt();
+            if (version != 1 && version != VERSION) {
+                throw new IOException(path + " is an item event file of version " + version + ", not " + VERSION + ".");
+            }
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    break;
+                }
+                try {
+                    long sequence = in.readLong();
+                    long time = in.readLong();
+                    long tag = in.readLong();
+                    int original = in.readInt();
+                    int from = in.readInt();
+                    int to = in.readInt();
+                    long cents = in.readLong();
+                    int nameId = readName(in);
+                    long previous = 0;
+                    if (version > 1) {
+                        previous = types[type] == ItemEventType.RENAMED ? readName(in) : in.readLong();
+                    }
+                    event.set(types[type], sequence, time, tag, nameId, original, from, to, cents, previous);
+                }
+                catch (EOFException e) {
+                    // The last record was cut short by a crash.
+                    break;
+                }
+                visitor.accept(event);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * A helper method to read a length-prefixed UTF-8 name.
+     * @param in
+     * The stream to read from.
+     * @return
+     * Returns the name id of the name.
+     * @throws IOException
+     * Indicates that the name could not be read.
+     */
+    private static int readName(DataInputStream in) throws IOException {
+        byte[] name = new byte[in.readUnsignedShort()];
+        in.readFully(name);
+        return NameDictionary.idOf(new String(name, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Applies every event in a file to a list, so that a list that started out the same way
+     * as the one that published them ends up the same way too. An event about one of several
+     * items that are equal in every field is applied to the first of them in list order,
+     * which is the one the list's own operations pick.
+     * @param path
+     * The path of the event file.
+     * @param list
+     * The list to apply the events to.
+     * @return
+     * Returns the number of events applied.
+     * @throws IOException
+     * Indicates that the file could not be read or is not an event file.
+     * @throws IllegalStateException
+     * Indicates that an event is about an item the list does not hold, so the list did not
+     * start out the same way. The events before it have been applied.
+     */
+    public static long replay(Path path, ItemList list) throws IOException {
+        return read(path, event -> {
+            ItemInfoNode node = null;
+            if (event.getType() != ItemEventType.INSERTED) {
+                node = list.nodeFor(event.getPreviousRfidTag(), event.getFromLocation(), event.getPreviousOriginalLocation(),
+                        event.getPreviousNameId(), event.getPreviousPriceCents());
+                if (node == null) {
+                    throw new IllegalStateException("No item matches event " + event + ".");
+                }
+            }
+            switch (event.getType()) {
+                case INSERTED:
+                    list.insertInfo(event.getName(), ItemCodes.formatTag(event.getRfidTag()),
+                            ItemCodes.toDollars(event.getPriceCents()), ItemCodes.decodeLocation(event.getToLocation()));
+                    break;
+                case MOVED:
+                    node.getData().setCurrentLocationCode(event.getToLocation());
+                    break;
+                case REMOVED:
+                    list.removeNode(node);
+                    break;
+                case RENAMED:
+                    node.getData().setName(event.getName());
+                    break;
+                case REPRICED:
+                    node.getData().setPrice(ItemCodes.toDollars(event.getPriceCents()));
+                    break;
+                case RETAGGED:
+                    node.getData().setRfidTagNumber(ItemCodes.formatTag(event.getRfidTag()));
+                    break;
+                default:
+                    node.getData().setOriginalLocation(ItemCodes.decodeLocation(event.getOriginalLocation()));
+                    break;
+            }
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: java ItemEventFile <file> [--apply]");
+            return;
+        }
+        Path path = Path.of(args[0]);
+        if (args.length > 1 && args[1].equals("--apply")) {
+            ItemList list = new ItemList();
+            long applied = replay(path, list);
+            list.printAll();
+            System.out.println(applied + " event(s) applied, " + list.size() + " item(s) in the list.");
+        }
+        else {
+            long count = read(path, event -> System.out.println(event));
+            System.out.println(count + " event(s) read.");
+        }
+    }
+}
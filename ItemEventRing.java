@@ -0,0 +1,257 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The <code>ItemEventRing</code> class is a bounded ring of <code>ItemEvent</code>s that item
+ * lists publish their changes to and subscribers read from, each on a thread of its own.
+ * <p>
+ * The slots are allocated once and reused, so publishing allocates nothing. Publishers claim
+ * a sequence number with a single atomic increment and then mark the slot as published, so
+ * several threads can publish without a lock. Every subscriber sees every event, in sequence
+ * order, and receives all the events available at once as a batch.
+ * <p>
+ * When the slowest subscriber is a whole ring behind, the ring is full. What happens then is
+ * chosen up front: <code>BLOCK</code> makes the publisher wait for room, and
+ * <code>DROP</code> discards the new event and counts it. Publishing never does I/O, since
+ * that is left to the subscribers.
+ */
+public class ItemEventRing implements Closeable {
+    private static final long IDLE_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * What a publisher does when the ring is full.
+     */
+    public enum Backpressure {
+        /**
+         * Wait until the slowest subscriber frees a slot.
+         */
+        BLOCK,
+
+        /**
+         * Discard the event and count it as dropped.
+         */
+        DROP
+    }
+
+    private final ItemEvent[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final Backpressure backpressure;
+    private final AtomicLong next;
+    private final AtomicLong dropped;
+    private volatile Subscription[] subscriptions;
+    private volatile boolean closed;
+
+    /**
+     * Parameterized constructor for creating an empty ring.
+     * @param capacity
+     * The number of slots, which must be a power of two.
+     * @param backpressure
+     * What a publisher does when the ring is full.
+     * @throws IllegalArgumentException
+     * Indicates that the capacity is not a power of two.
+     */
+    public ItemEventRing(int capacity, Backpressure backpressure) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two.");
+        }
+        this.slots = new ItemEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new ItemEvent();
+        }
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        this.mask = capacity - 1;
+        this.backpressure = backpressure;
+        this.next = new AtomicLong();
+        this.dropped = new AtomicLong();
+        this.subscriptions = new Subscription[0];
+    }
+
+    /**
+     * Adds a subscriber, which receives every event published from now on on a thread of
+     * its own.
+     * @param name
+     * The name of the subscriber's thread.
+     * @param subscriber
+     * The subscriber to add.
+     */
+    public synchronized void subscribe(String name, ItemEventSubscriber subscriber) {
+        Subscription subscription = new Subscription(subscriber, next.get() - 1);
+        Subscription[] more = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+        more[subscriptions.length] = subscription;
+        subscriptions = more;
+        Thread thread = new Thread(subscription::run, name);
+        thread.setDaemon(true);
+        subscription.thread = thread;
+        thread.start();
+    }
+
+    /**
+     * Publishes a change to an item.
+     * @param type
+     * The kind of change.
+     * @param rfidTag
+     * The packed rfid number of the item.
+     * @param nameId
+     * The name id of the item.
+     * @param originalLocation
+     * The original location code of the item.
+     * @param fromLocation
+     * The location code the item left, or <code>ItemEvent.NO_LOCATION</code>.
+     * @param toLocation
+     * The location code the item arrived at, or <code>ItemEvent.NO_LOCATION</code>.
+     * @param priceCents
+     * The price of the item in cents.
+     * @param previous
+     * The value the changed field had before, for a rename, reprice, relocation or retag, or 0.
+     * @return
+     * Returns whether the event was published, which is false if it was dropped or the ring
+     * is closed.
+     */
+    public boolean publish(ItemEventType type, long rfidTag, int nameId, int originalLocation,
+                           int fromLocation, int toLocation, long priceCents, long previous) {
+        // The Big-O notation of this method is O(s) for s subscribers, to find the slowest.
+        if (closed) {
+            return false;
+        }
+        long sequence;
+        if (backpressure == Backpressure.DROP) {
+            do {
+                sequence = next.get();
+                if (sequence - slots.length > slowest(sequence)) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+            } while (!next.compareAndSet(sequence, sequence + 1));
+        }
+        else {
+            sequence = next.getAndIncrement();
+            while (sequence - slots.length > slowest(sequence)) {
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+        int slot = (int) sequence & mask;
+        slots[slot].set(type, sequence, System.currentTimeMillis(), rfidTag, nameId, originalLocation, fromLocation, toLocation, priceCents, previous);
+        published.lazySet(slot, sequence);
+        return true;
+    }
+
+    /**
+     * Gets the number of events discarded because the ring was full.
+     * @return
+     * Returns the number of dropped events.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Gets the number of events published so far, including any that are still being
+     * written.
+     * @return
+     * Returns the number of published events.
+     */
+    public long getPublishedCount() {
+        return next.get();
+    }
+
+    /**
+     * Gets the last error thrown by any subscriber.
+     * @return
+     * Returns the last error, or null if there has been none.
+     */
+    public IOException getLastError() {
+        IOException error = null;
+        for (Subscription subscription : subscriptions) {
+            if (subscription.lastError != null) {
+                error = subscription.lastError;
+            }
+        }
+        return error;
+    }
+
+    /**
+     * Stops accepting events and waits for every subscriber to receive the events already
+     * published.
+     */
+    public void close() {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            try {
+                subscription.thread.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * A helper method to find how far the slowest subscriber has read.
+     * @param sequence
+     * The sequence about to be published, returned less one when there are no subscribers.
+     * @return
+     * Returns the last sequence every subscriber has received.
+     */
+    private long slowest(long sequence) {
+        long slowest = sequence - 1;
+        for (Subscription subscription : subscriptions) {
+            slowest = Math.min(slowest, subscription.cursor);
+        }
+        return slowest;
+    }
+
+    /**
+     * The <code>Subscription</code> class is the read position of one subscriber and the loop
+     * that feeds it.
+     */
+    private class Subscription {
+        private final ItemEventSubscriber subscriber;
+        private volatile long cursor;
+        private volatile IOException lastError;
+        private Thread thread;
+
+        Subscription(ItemEventSubscriber subscriber, long cursor) {
+            this.subscriber = subscriber;
+            this.cursor = cursor;
+        }
+
+        /**
+         * Delivers batches until the ring is closed and every published event is delivered.
+         */
+        void run() {
+            while (true) {
+                long first = cursor + 1;
+                long last = first;
+                while (last - first < slots.length && published.get((int) last & mask) == last) {
+                    last++;
+                }
+                if (last == first) {
+                    if (closed && first >= next.get()) {
+                        return;
+                    }
+                    LockSupport.parkNanos(IDLE_NANOS);
+                    continue;
+                }
+                for (long sequence = first; sequence < last; sequence++) {
+                    try {
+                        subscriber.onEvent(slots[(int) sequence & mask], sequence == last - 1);
+                    }
+                    catch (IOException | RuntimeException e) {
+                        lastError = e instanceof IOException ? (IOException) e : new IOException(e);
+                    }
+                }
+                cursor = last - 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+import java.io.IOException;
+
+/**
+ * The <code>ItemEventSubscriber</code> interface receives the events of an
+ * <code>ItemEventRing</code> on a thread of its own.
+ */
+public interface ItemEventSubscriber {
+    /**
+     * Receives one event. Events arrive in batches of whatever has been published since the
+     * last batch, so work such as flushing can wait for the end of a batch.
+     * @param event
+     * The event. It is reused for later events once this method returns, so any fields that
+     * are needed afterwards must be copied.
+     * @param endOfBatch
+     * Whether this is the last event available for now.
+     * @throws IOException
+     * Indicates that the event could not be handled. The ring records the error and moves on.
+     */
+    void onEvent(ItemEvent event, boolean endOfBatch) throws IOException;
+}
@@ -0,0 +1,45 @@
+/**
+ * The <code>ItemEventType</code> enum lists the changes an <code>ItemList</code> publishes
+ * as <code>ItemEvent</code>s.
+ */
+public enum ItemEventType {
+    /**
+     * An item was added to the list.
+     */
+    INSERTED,
+
+    /**
+     * An item changed location, through <code>moveItem</code>, <code>checkOut</code>,
+     * <code>cleanStore</code> or <code>setCurrentLocation</code>.
+     */
+    MOVED,
+
+    /**
+     * An item was removed from the list.
+     */
+    REMOVED,
+
+    /**
+     * An item was given a new name with <code>setName</code>. The previous value of the
+     * event is the old name id.
+     */
+    RENAMED,
+
+    /**
+     * An item was given a new price with <code>setPrice</code>. The previous value of the
+     * event is the old price in cents.
+     */
+    REPRICED,
+
+    /**
+     * An item was given a new original location with <code>setOriginalLocation</code>. The
+     * previous value of the event is the old original location code.
+     */
+    RELOCATED,
+
+    /**
+     * An item was given a new rfid number with <code>setRfidTagNumber</code>. The previous
+     * value of the event is the old packed rfid tag.
+     */
+    RETAGGED
+}
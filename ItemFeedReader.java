@@ -0,0 +1,86 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The <code>ItemFeedReader</code> class is used to read inventory feeds into rows for the
+ * bulk loader. It only splits the feed into fields; checking the fields is left to
+ * <code>ItemList</code> so that every row is held to the same rules as <code>insertInfo</code>.
+ */
+public class ItemFeedReader {
+    private static final String CSV_HEADER = "name,rfid,price,location";
+
+    /**
+     * Reads a CSV feed with one item per line in the form <code>name,rfid,price,location</code>.
+     * The name may itself contain commas, since the last three fields are split off from the
+     * right. Blank lines and an optional header line are skipped.
+     * @param reader
+     * The reader to read the feed from.
+     * @return
+     * Returns the rows of the feed. A line with too few fields becomes a row with null fields,
+     * so that it is reported rather than silently dropped.
+     * @throws IOException
+     * Indicates that the feed could not be read.
+     */
+    public static List<ItemFeedRow> readCsv(Reader reader) throws IOException {
+        BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        List<ItemFeedRow> rows = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || (lineNumber == 1 && line.trim().equalsIgnoreCase(CSV_HEADER))) {
+                continue;
+            }
+            int third = line.lastIndexOf(',');
+            int second = third > 0 ? line.lastIndexOf(',', third - 1) : -1;
+            int first = second > 0 ? line.lastIndexOf(',', second - 1) : -1;
+            if (first < 0) {
+                rows.add(new ItemFeedRow(lineNumber, null, null, null, null));
+                continue;
+            }
+            rows.add(new ItemFeedRow(lineNumber, line.substring(0, first).trim(),
+                    line.substring(first + 1, second).trim(),
+                    line.substring(second + 1, third).trim(),
+                    line.substring(third + 1).trim()));
+        }
+        return rows;
+    }
+
+    /**
+     * Reads a binary feed. Each record is written with <code>DataOutputStream</code> as the
+     * name, rfid tag number and original location in modified UTF-8 around the price as a
+     * double, in the order name, rfid, price, location. The feed ends at end of stream.
+     * @param input
+     * The stream to read the feed from.
+     * @return
+     * Returns the rows of the feed, numbered by record.
+     * @throws IOException
+     * Indicates that the feed could not be read or ends in the middle of a record.
+     */
+    public static List<ItemFeedRow> readBinary(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        List<ItemFeedRow> rows = new ArrayList<>();
+        int record = 0;
+        while (true) {
+            String name;
+            try {
+                name = in.readUTF();
+            }
+            catch (EOFException e) {
+                return rows;
+            }
+            record++;
+            String rfid = in.readUTF();
+            double price = in.readDouble();
+            String location = in.readUTF();
+            rows.add(new ItemFeedRow(record, name, rfid, Double.toString(price), location));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * The <code>ItemFeedRow</code> class represents one row of an inventory feed before it
+ * has been validated. It remembers the line or record number it came from so that
+ * validation failures can point back at it.
+ */
+public class ItemFeedRow {
+    private int lineNumber;
+    private String name;
+    private String rfidTagNumber;
+    private String price;
+    private String location;
+
+    /**
+     * Parameterized constructor for creating a feed row with the raw field values.
+     * @param lineNumber
+     * The line or record number of the row in its feed, starting at 1.
+     * @param name
+     * The name of the item.
+     * @param rfidTagNumber
+     * The rfid tag number of the item.
+     * @param price
+     * The price of the item, not yet parsed.
+     * @param location
+     * The original location of the item.
+     */
+    public ItemFeedRow(int lineNumber, String name, String rfidTagNumber, String price, String location) {
+        this.lineNumber = lineNumber;
+        this.name = name;
+        this.rfidTagNumber = rfidTagNumber;
+        this.price = price;
+        this.location = location;
+    }
+
+    /**
+     * Gets the line or record number of the row.
+     * @return
+     * Returns the line number of the row.
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Gets the name of the item.
+     * @return
+     * Returns the name of the item.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the rfid tag number of the item.
+     * @return
+     * Returns the rfid tag number of the item.
+     */
+    public String getRfidTagNumber() {
+        return rfidTagNumber;
+    }
+
+    /**
+     * Gets the unparsed price of the item.
+     * @return
+     * Returns the price field as it appeared in the feed.
+     */
+    public String getPrice() {
+        return price;
+    }
+
+    /**
+     * Gets the original location of the item.
+     * @return
+     * Returns the original location of the item.
+     */
+    public String getLocation() {
+        return location;
+    }
+}
@@ -2,13 +2,19 @@
 /**
  * The <code>ItemInfo</code> class is used for the creation of a item object.
  * It represents the items that are being stored in the item list.
+ * <p>
+ * To keep the per item footprint small, the fields are stored as primitive codes from
+ * <code>ItemCodes</code> and the name as an id into <code>NameDictionary</code>. The getters
+ * turn them back into the strings and prices callers see.
  */
 public class ItemInfo {
-    private String name;
-    private String rfidTagNumber;
-    private String originalLocation;
-    private String currentLocation;
-    private double price;
+    private int nameId;
+    private long rfidTag;
+    private int originalLocation;
+    private int currentLocation;
+    private long priceCents;
+    private ItemInfoListener listener;
+    private int nameSlot;
 
     /**
      * Parameterized constructor for creating an item info object with
@@ -23,11 +29,33 @@ public class ItemInfo {
      * The original location of the item.
      */
     public ItemInfo(String name, double price, String rfidTagNumber, String originalLocation) {
-        this.name = name;
-        this.price = price;
-        this.rfidTagNumber = rfidTagNumber;
+        this.nameId = NameDictionary.idOf(name);
+        this.priceCents = ItemCodes.toCents(price);
+        this.rfidTag = ItemCodes.packTag(rfidTagNumber);
+        this.originalLocation = ItemCodes.encodeLocation(originalLocation);
+        this.currentLocation = this.originalLocation;
+    }
+
+    /**
+     * Constructor for rebuilding an item from its stored codes, such as when reading it back
+     * from a snapshot. The codes are assumed to be valid.
+     * @param nameId
+     * The <code>NameDictionary</code> id of the name of the item.
+     * @param rfidTag
+     * The packed rfid number of the item.
+     * @param originalLocation
+     * The original location code of the item.
+     * @param currentLocation
+     * The current location code of the item.
+     * @param priceCents
+     * The price of the item in cents.
+     */
+    ItemInfo(int nameId, long rfidTag, int originalLocation, int currentLocation, long priceCents) {
+        this.nameId = nameId;
+        this.rfidTag = rfidTag;
         this.originalLocation = originalLocation;
-        this.currentLocation = originalLocation;
+        this.currentLocation = currentLocation;
+        this.priceCents = priceCents;
     }
 
     /**
@@ -36,11 +64,20 @@ public class ItemInfo {
      * Returns the name of the item.
      */
     public String getName() {
-        return name;
+        return NameDictionary.nameOf(nameId);
     }
 
     /**
-     * Sets the name of the item.
+     * Gets the <code>NameDictionary</code> id of the name of the item.
+     * @return
+     * Returns the id of the name of the item.
+     */
+    public int getNameId() {
+        return nameId;
+    }
+
+    /**
+     * Sets the name of the item, and tells the listener about the change.
      * @param name
      * The name to set for the item.
      * @throws IllegalArgumentException
@@ -50,7 +87,29 @@ public class ItemInfo {
         if (name.isEmpty() || name.length() > 20) {
             throw new IllegalArgumentException("Name cannot be empty or greater than 20 characters.");
         }
-        this.name = name;
+        int oldNameId = this.nameId;
+        this.nameId = NameDictionary.idOf(name);
+        if (listener != null && oldNameId != nameId) {
+            listener.nameChanged(this, oldNameId, nameId);
+        }
+    }
+
+    /**
+     * Gets the slot of the item among the items with its name in a <code>NameIndex</code>.
+     * @return
+     * Returns the slot.
+     */
+    int getNameSlot() {
+        return nameSlot;
+    }
+
+    /**
+     * Sets the slot of the item among the items with its name in a <code>NameIndex</code>.
+     * @param nameSlot
+     * The slot to set.
+     */
+    void setNameSlot(int nameSlot) {
+        this.nameSlot = nameSlot;
     }
 
     /**
@@ -59,11 +118,20 @@ public class ItemInfo {
      * Returns the rfid number of the item.
      */
     public String getRfidTagNumber() {
-        return rfidTagNumber;
+        return ItemCodes.formatTag(rfidTag);
     }
 
     /**
-     * Sets the rfid number of the item.
+     * Gets the rfid number of the item packed into a long.
+     * @return
+     * Returns the packed rfid number of the item.
+     */
+    public long getRfidTag() {
+        return rfidTag;
+    }
+
+    /**
+     * Sets the rfid number of the item, and tells the listener about the change.
      * @param rfidTagNumber
      * The rfid number to set for the item.
      * @throws IllegalArgumentException
@@ -71,10 +139,15 @@ public class ItemInfo {
      * including 0-9 or A-F.
      */
     public void setRfidTagNumber(String rfidTagNumber) {
-        if (!rfidTagNumber.matches("[0-9A-Fa-f]{9}")) {
+        long tag = ItemCodes.parseTag(rfidTagNumber);
+        if (tag < 0) {
             throw new IllegalArgumentException("RFID must be a 9-character hexadecimal string including 0 - 9 or A - F.");
         }
-        this.rfidTagNumber = rfidTagNumber;
+        long oldTag = this.rfidTag;
+        this.rfidTag = tag;
+        if (listener != null && oldTag != tag) {
+            listener.rfidChanged(this, oldTag, tag);
+        }
     }
 
     /**
@@ -83,11 +156,20 @@ public class ItemInfo {
      * Returns the original location of the item.
      */
     public String getOriginalLocation() {
+        return ItemCodes.decodeLocation(originalLocation);
+    }
+
+    /**
+     * Gets the original location of the item as a location code.
+     * @return
+     * Returns the original location code of the item.
+     */
+    public int getOriginalLocationCode() {
         return originalLocation;
     }
 
     /**
-     * Sets the original location of the item.
+     * Sets the original location of the item, and tells the listener about the change.
      * @param originalLocation
      * The original location to set for the item.
      * @throws IllegalArgumentException
@@ -95,10 +177,15 @@ public class ItemInfo {
      * and include 5 digits after it.
      */
     public void setOriginalLocation(String originalLocation) {
-        if (!originalLocation.matches("s\\d{5}")) {
+        int shelf = ItemCodes.parseShelf(originalLocation);
+        if (shelf < 0) {
             throw new IllegalArgumentException("Original location must start with a s and include 5 digits after it.");
         }
-        this.originalLocation = originalLocation;
+        int oldShelf = this.originalLocation;
+        this.originalLocation = shelf;
+        if (listener != null && oldShelf != shelf) {
+            listener.originalLocationChanged(this, oldShelf, shelf);
+        }
     }
 
     /**
@@ -107,6 +194,15 @@ public class ItemInfo {
      * Returns the current location of the item.
      */
     public String getCurrentLocation() {
+        return ItemCodes.decodeLocation(currentLocation);
+    }
+
+    /**
+     * Gets the current location of the item as a location code.
+     * @return
+     * Returns the current location code of the item.
+     */
+    public int getCurrentLocationCode() {
         return currentLocation;
     }
 
@@ -119,12 +215,35 @@ public class ItemInfo {
      * or out.
      */
     public void setCurrentLocation(String currentLocation) {
-        if (!currentLocation.matches("s\\d{5}")
-                && !currentLocation.matches("c\\d{3}")
-                && !currentLocation.equalsIgnoreCase("out")) {
+        int code = ItemCodes.parseLocation(currentLocation);
+        if (code < 0) {
             throw new IllegalArgumentException("Current location must be a shelf position, a cart number, or out.");
         }
-        this.currentLocation = currentLocation;
+        setCurrentLocationCode(code);
+    }
+
+    /**
+     * Sets the current location of the item from a location code that has already been
+     * checked, and tells the listener about the move.
+     * @param code
+     * The location code to set for the item.
+     */
+    void setCurrentLocationCode(int code) {
+        int oldLocation = this.currentLocation;
+        this.currentLocation = code;
+        if (listener != null) {
+            listener.locationChanged(this, oldLocation, code);
+        }
+    }
+
+    /**
+     * Sets the listener to tell about changes to this item. An item list uses this to
+     * keep its indexes up to date.
+     * @param listener
+     * The listener to set, or null to stop listening.
+     */
+    void setListener(ItemInfoListener listener) {
+        this.listener = listener;
     }
 
     /**
@@ -133,11 +252,20 @@ public class ItemInfo {
      * Returns the price of the item.
      */
     public double getPrice() {
-        return price;
+        return ItemCodes.toDollars(priceCents);
     }
 
     /**
-     * Sets the price of the item.
+     * Gets the price of the item in cents.
+     * @return
+     * Returns the price of the item in cents.
+     */
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    /**
+     * Sets the price of the item, and tells the listener about the change.
      * @param price
      * The price to set for the item.
      * @throws IllegalArgumentException
@@ -147,7 +275,11 @@ public class ItemInfo {
         if (price < 0) {
             throw new IllegalArgumentException("Price must be positive.");
         }
-        this.price = price;
+        long oldCents = this.priceCents;
+        this.priceCents = ItemCodes.toCents(price);
+        if (listener != null && oldCents != priceCents) {
+            listener.priceChanged(this, oldCents, priceCents);
+        }
     }
 
     /**
@@ -159,7 +291,7 @@ public class ItemInfo {
      * -1 of the rfid is less than the other rfid.
      */
     public int compareTo(ItemInfo data) {
-        return this.getRfidTagNumber().compareTo(data.getRfidTagNumber());
+        return Long.compare(this.rfidTag, data.rfidTag);
     }
 
     /**
@@ -0,0 +1,61 @@
+/**
+ * The <code>ItemInfoListener</code> interface is used by an item list to hear about
+ * changes made to the items it holds, so that it can keep its indexes and running totals
+ * up to date.
+ */
+public interface ItemInfoListener {
+    /**
+     * Called after the current location of an item has changed.
+     * @param item
+     * The item that moved.
+     * @param oldLocation
+     * The location code the item was in before the move.
+     * @param newLocation
+     * The location code the item is in now.
+     */
+    void locationChanged(ItemInfo item, int oldLocation, int newLocation);
+
+    /**
+     * Called after the original location of an item has changed.
+     * @param item
+     * The item whose original location changed.
+     * @param oldShelf
+     * The original location code of the item before the change.
+     * @param newShelf
+     * The original location code of the item now.
+     */
+    void originalLocationChanged(ItemInfo item, int oldShelf, int newShelf);
+
+    /**
+     * Called after the price of an item has changed.
+     * @param item
+     * The item whose price changed.
+     * @param oldCents
+     * The price of the item in cents before the change.
+     * @param newCents
+     * The price of the item in cents now.
+     */
+    void priceChanged(ItemInfo item, long oldCents, long newCents);
+
+    /**
+     * Called after the name of an item has changed.
+     * @param item
+     * The item that was renamed.
+     * @param oldNameId
+     * The <code>NameDictionary</code> id of the name before the change.
+     * @param newNameId
+     * The <code>NameDictionary</code> id of the name now.
+     */
+    void nameChanged(ItemInfo item, int oldNameId, int newNameId);
+
+    /**
+     * Called after the rfid number of an item has changed.
+     * @param item
+     * The item that was given a new rfid number.
+     * @param oldTag
+     * The packed rfid tag of the item before the change.
+     * @param newTag
+     * The packed rfid tag of the item now.
+     */
+    void rfidChanged(ItemInfo item, long oldTag, long newTag);
+}
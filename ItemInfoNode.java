@@ -7,6 +7,7 @@ public class ItemInfoNode {
     private ItemInfo data;
     private ItemInfoNode prev;
     private ItemInfoNode next;
+    private ItemInfoNode[] skips;
 
     /**
      * Default constructor for creating a ItemInfoNode with default values.
@@ -71,4 +72,51 @@ public class ItemInfoNode {
     public void setNext(ItemInfoNode next) {
         this.next = next;
     }
+
+    /**
+     * Gets the number of skip list levels this node is linked into. Every node is
+     * linked into level 0, which is the ordinary next link.
+     * @return
+     * Returns the number of levels of the node.
+     */
+    public int getLevel() {
+        return skips == null ? 1 : skips.length + 1;
+    }
+
+    /**
+     * Sets the number of skip list levels this node is linked into, clearing any
+     * links above level 0.
+     * @param level
+     * The number of levels, at least 1.
+     */
+    public void setLevel(int level) {
+        this.skips = level > 1 ? new ItemInfoNode[level - 1] : null;
+    }
+
+    /**
+     * Gets the next node at a skip list level.
+     * @param level
+     * The level to follow, where level 0 is the ordinary next link.
+     * @return
+     * Returns the next node at that level.
+     */
+    public ItemInfoNode getNext(int level) {
+        return level == 0 ? next : skips[level - 1];
+    }
+
+    /**
+     * Sets the next node at a skip list level.
+     * @param level
+     * The level to set, where level 0 is the ordinary next link.
+     * @param next
+     * The next node to set.
+     */
+    public void setNext(int level, ItemInfoNode next) {
+        if (level == 0) {
+            this.next = next;
+        }
+        else {
+            skips[level - 1] = next;
+        }
+    }
 }
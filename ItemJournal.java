@@ -0,0 +1,389 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * The <code>ItemJournal</code> class is a write-ahead log of the changes made to an item list.
+ * Each change is appended as a small binary record, and a background thread writes the
+ * records out and syncs them to disk. Records that arrive while a sync is in progress are
+ * written together by the next one, so many callers share each sync.
+ * <p>
+ * A record is framed as its length, the body, and a CRC32 of the body. The body is an
+ * operation byte followed by that operation's fields, with tags packed into longs and
+ * locations stored as <code>ItemCodes</code> location codes. Replay stops at the first
+ * record that is cut short or fails its checksum, which is where a crash left off.
+ */
+public class ItemJournal implements Closeable {
+    public static final byte INSERT = 1;
+    public static final byte MOVE = 2;
+    public static final byte CHECK_OUT = 3;
+    public static final byte CLEAN_STORE = 4;
+    public static final byte REMOVE_ALL_PURCHASED = 5;
+
+    private final Path directory;
+    private FileChannel channel;
+    private long generation;
+    private ByteArrayOutputStream pending;
+    private DataOutputStream pendingData;
+    private long appended;
+    private long durable;
+    private IOException failure;
+    private boolean closed;
+    private Thread flusher;
+
+    /**
+     * Parameterized constructor which opens the journal file of a generation for appending.
+     * @param directory
+     * The directory that holds the journal files.
+     * @param generation
+     * The generation of the journal file to append to.
+     * @throws IOException
+     * Indicates that the journal file could not be opened.
+     */
+    public ItemJournal(Path directory, long generation) throws IOException {
+        this.directory = directory;
+        this.generation = generation;
+        this.channel = open(generation);
+        this.pending = new ByteArrayOutputStream(64 * 1024);
+        this.pendingData = new DataOutputStream(pending);
+        this.flusher = new Thread(this::flushLoop, "item-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Gets the path of the journal file of a generation.
+     * @param directory
+     * The directory that holds the journal files.
+     * @param generation
+     * The generation of the journal file.
+     * @return
+     * Returns the path of the journal file.
+     */
+    public static Path fileFor(Path directory, long generation) {
+        return directory.resolve("journal-" + generation + ".log");
+    }
+
+    /**
+     * Gets the generation currently being appended to.
+     * @return
+     * Returns the generation of the open journal file.
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Logs an insert.
+     * @param name
+     * The name of the item that was inserted.
+     * @param tag
+     * The packed rfid tag of the item.
+     * @param cents
+     * The price of the item in cents.
+     * @param location
+     * The original location code of the item.
+     * @return
+     * Returns the sequence number of the record, to pass to <code>awaitDurable</code>.
+     */
+    public long logInsert(String name, long tag, long cents, int location) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return append(INSERT, body -> {
+            body.writeLong(tag);
+            body.writeLong(cents);
+            body.writeInt(location);
+            body.writeByte(bytes.length);
+            body.write(bytes);
+        });
+    }
+
+    /**
+     * Logs a move.
+     * @param tag
+     * The packed rfid tag of the item that was moved.
+     * @param source
+     * The location code the item was moved from.
+     * @param dest
+     * The location code the item was moved to.
+     * @return
+     * Returns the sequence number of the record.
+     */
+    public long logMove(long tag, int source, int dest) {
+        return append(MOVE, body -> {
+            body.writeLong(tag);
+            body.writeInt(source);
+            body.writeInt(dest);
+        });
+    }
+
+    /**
+     * Logs a checkout.
+     * @param cart
+     * The location code of the cart that was checked out.
+     * @return
+     * Returns the sequence number of the record.
+     */
+    public long logCheckOut(int cart) {
+        return append(CHECK_OUT, body -> body.writeInt(cart));
+    }
+
+    /**
+     * Logs an operation that has no fields, such as <code>CLEAN_STORE</code>.
+     * @param op
+     * The operation.
+     * @return
+     * Returns the sequence number of the record.
+     */
+    public long log(byte op) {
+        return append(op, body -> { });
+    }
+
+    /**
+     * Waits until a record and every record before it are synced to disk.
+     * @param sequence
+     * The sequence number returned when the record was logged.
+     * @throws IOException
+     * Indicates that the journal could not be written, or that the wait was interrupted.
+     */
+    public synchronized void awaitDurable(long sequence) throws IOException {
+        while (durable < sequence) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (closed) {
+                throw new IOException("The journal is closed.");
+            }
+            try {
+                wait();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the journal.");
+            }
+        }
+    }
+
+    /**
+     * Syncs everything logged so far and starts appending to the journal file of the next
+     * generation. This is done when a snapshot is taken, so that the snapshot only needs
+     * the journals that come after it.
+     * @return
+     * Returns the generation of the journal file that was closed.
+     * @throws IOException
+     * Indicates that the journal could not be synced or the new file could not be opened.
+     */
+    public synchronized long roll() throws IOException {
+        awaitDurable(appended);
+        channel.close();
+        long previous = generation;
+        generation++;
+        channel = open(generation);
+        return previous;
+    }
+
+    /**
+     * Syncs everything logged so far and closes the journal.
+     * @throws IOException
+     * Indicates that the journal could not be synced or closed.
+     */
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            awaitDurable(appended);
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    /**
+     * Replays a journal file into an item list. The list's output should be turned off
+     * first, since the replayed operations print their usual tables.
+     * @param file
+     * The journal file to replay.
+     * @param list
+     * The list to apply the records to.
+     * @return
+     * Returns the number of records replayed.
+     * @throws IOException
+     * Indicates that the file could not be read.
+     */
+    public static int replay(Path file, ItemList list) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        CRC32 crc = new CRC32();
+        int records = 0;
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt(buffer.position());
+            if (length <= 0 || buffer.remaining() < 4 + length + 4) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.array(), buffer.position() + 4, length);
+            if ((int) crc.getValue() != buffer.getInt(buffer.position() + 4 + length)) {
+                break;
+            }
+            buffer.getInt();
+            apply(buffer, list);
+            buffer.getInt();
+            records++;
+        }
+        return records;
+    }
+
+    /**
+     * A helper method to apply one record body to a list.
+     * @param body
+     * The buffer, positioned at the operation byte of the record.
+     * @param list
+     * The list to apply the record to.
+     */
+    private static void apply(ByteBuffer body, ItemList list) {
+        byte op = body.get();
+        switch (op) {
+            case INSERT:
+                long tag = body.getLong();
+                long cents = body.getLong();
+                int location = body.getInt();
+                byte[] name = new byte[body.get() & 0xFF];
+                body.get(name);
+                list.insertInfo(new String(name, StandardCharsets.UTF_8), ItemCodes.formatTag(tag),
+                        ItemCodes.toDollars(cents), ItemCodes.decodeLocation(location));
+                break;
+            case MOVE:
+                long moved = body.getLong();
+                String source = ItemCodes.decodeLocation(body.getInt());
+                String dest = ItemCodes.decodeLocation(body.getInt());
+                list.moveItem(ItemCodes.formatTag(moved), source, dest);
+                break;
+            case CHECK_OUT:
+                list.checkOut(ItemCodes.decodeLocation(body.getInt()));
+                break;
+            case CLEAN_STORE:
+                list.cleanStore();
+                break;
+            case REMOVE_ALL_PURCHASED:
+                list.removeAllPurchased();
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal operation " + op + ".");
+        }
+    }
+
+    /**
+     * The <code>RecordWriter</code> interface writes the fields of a record body.
+     */
+    private interface RecordWriter {
+        void write(DataOutputStream body) throws IOException;
+    }
+
+    /**
+     * A helper method to frame a record and add it to the pending batch.
+     * @param op
+     * The operation of the record.
+     * @param fields
+     * Writes the fields of the record after the operation byte.
+     * @return
+     * Returns the sequence number of the record.
+     */
+    private synchronized long append(byte op, RecordWriter fields) {
+        if (closed) {
+            throw new IllegalStateException("The journal is closed.");
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(48);
+            DataOutputStream body = new DataOutputStream(bytes);
+            body.writeByte(op);
+            fields.write(body);
+            byte[] record = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            pendingData.writeInt(record.length);
+            pendingData.write(record);
+            pendingData.writeInt((int) crc.getValue());
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Could not encode a journal record.", e);
+        }
+        appended++;
+        notifyAll();
+        return appended;
+    }
+
+    /**
+     * The body of the flusher thread. It takes whatever has been logged since the last
+     * sync, writes it, syncs, and wakes the callers waiting on it.
+     */
+    private void flushLoop() {
+        while (true) {
+            byte[] batch;
+            long batchEnd;
+            FileChannel target;
+            synchronized (this) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        wait();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.size() == 0) {
+                    return;
+                }
+                batch = pending.toByteArray();
+                pending.reset();
+                batchEnd = appended;
+                target = channel;
+            }
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                target.force(false);
+                synchronized (this) {
+                    durable = batchEnd;
+                    notifyAll();
+                }
+            }
+            catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * A helper method to open the journal file of a generation for appending.
+     * @param gen
+     * The generation of the file.
+     * @return
+     * Returns the open channel.
+     * @throws IOException
+     * Indicates that the file could not be opened.
+     */
+    private FileChannel open(long gen) throws IOException {
+        return FileChannel.open(fileFor(directory, gen), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
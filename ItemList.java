@@ -1,18 +1,124 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 
 /**
  * The <code>ItemList</code> class represents a doubly linked list of items.
+ * <p>
+ * A list can also be opened from a <code>CatalogImage</code>, in which case it answers
+ * straight away and only turns the records of the image into items as they are needed. An
+ * item is hydrated together with every other item sharing its rfid tag, so the order of
+ * equal tags is kept, and the items that are out are hydrated all at once, so the order they
+ * went out in is kept. Counts and valuations are answered from the totals of the image
+ * without hydrating anything, lookups by name and misplacement hydrate only the records that
+ * match, and walks over every item read the records still in the image as they go. The
+ * records not yet hydrated are kept track of by a <code>ColdCatalog</code>.
+ * <p>
+ * The list also keeps a session for each cart that holds items, recording when it was opened
+ * and when an item last went into or out of it, so that carts left behind can be found and
+ * emptied back onto the shelves with <code>evictCarts</code>.
  */
-public class ItemList {
-    private ItemInfoNode head;
-    private ItemInfoNode tail;
+public class ItemList implements ItemStore, ItemInfoListener {
+    private ItemSkipList items;
+    private RfidIndex rfidIndex;
+    private LocationIndex locationIndex;
+    private NameIndex nameIndex;
+    private CartSessions carts;
+    private PrintStream out;
+    private ItemEventRing events;
+    private ItemListMetrics metrics;
+    private ColdCatalog cold;
+    private ForkJoinPool restockPool;
 
     /**
-     * Default constructor which initializes this object to an empty list of items
-     * and sets head and tail to null.
+     * Default constructor which initializes this object to an empty list of items.
      */
     public ItemList() {
-        this.head = null;
-        this.tail = null;
+        this.items = new ItemSkipList();
+        this.rfidIndex = new RfidIndex();
+        this.locationIndex = new LocationIndex();
+        this.nameIndex = new NameIndex();
+        this.carts = new CartSessions();
+        this.out = System.out;
+    }
+
+    /**
+     * Parameterized constructor for a list holding the items of a catalog image. Nothing is
+     * read from the image until an item is needed, so the list can be used at once.
+     * @param image
+     * The image to serve the items of. It must not be shared with another list.
+     */
+    public ItemList(CatalogImage image) {
+        this();
+        this.cold = new ColdCatalog(image);
+        long now = System.currentTimeMillis();
+        for (int cart = ItemCodes.CART_BASE; cart < ItemCodes.OUT; cart++) {
+            if (cold.countAt(cart) > 0) {
+                carts.touch(cart, now);
+            }
+        }
+        if (cold.size() == 0) {
+            cold = null;
+        }
+    }
+
+    /**
+     * Sets where the tables printed by this list are written. By default they go to
+     * <code>System.out</code>.
+     * @param out
+     * The stream to print to.
+     */
+    public void setOutput(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Sets the ring to publish an <code>ItemEvent</code> to for every insert, change of
+     * location and removal. By default no events are published.
+     * @param events
+     * The ring to publish to, or null to stop publishing.
+     */
+    public void setEvents(ItemEventRing events) {
+        this.events = events;
+    }
+
+    /**
+     * Sets the metrics to record the duration and work of every operation in, and to keep
+     * the gauges of. By default nothing is measured and the clock is never read.
+     * @param metrics
+     * The metrics to record in, or null to stop measuring.
+     */
+    public void setMetrics(ItemListMetrics metrics) {
+        this.metrics = metrics;
+        updateGauges();
+    }
+
+    /**
+     * A helper method to copy the counts of the list to the gauges of its metrics, if it
+     * is measured, after an item was added, removed or moved.
+     */
+    private void updateGauges() {
+        if (metrics != null) {
+            metrics.updateGauges(size(), misplacedCount(), purchasedCount());
+        }
     }
 
     /**
@@ -27,250 +133,1871 @@ public class ItemList {
      * The initial position of th item to insert.
      */
     public void insertInfo(String name, String rfidTag, double price, String initPosition) throws IllegalArgumentException {
-        // The Big-O notation of this method is O(n) because you may have to traverse
-        // through the entire list to insert a new item.
-        if (name.isEmpty() || name.length() > 20) {
+        // The Big-O notation of this method is O(log n) expected, because the skip list
+        // finds the sorted slot without traversing the whole list.
+        long start = metrics == null ? 0 : System.nanoTime();
+        long tag = ItemCodes.parseTag(rfidTag);
+        int shelf = ItemCodes.parseShelf(initPosition);
+        checkInsert(name, tag, price, shelf);
+        hydrateTag(tag);
+        ItemInfo newItem = new ItemInfo(NameDictionary.idOf(name), tag, shelf, shelf, ItemCodes.toCents(price));
+        ItemInfoNode newNode = new ItemInfoNode();
+        newNode.setData(newItem);
+        rfidIndex.add(newItem.getRfidTag(), newNode);
+        locationIndex.add(newItem);
+        nameIndex.add(newItem);
+        newItem.setListener(this);
+        int visited = items.insert(newNode);
+        publish(ItemEventType.INSERTED, newItem, ItemEvent.NO_LOCATION, shelf);
+        updateGauges();
+        if (metrics != null) {
+            metrics.record(ItemListMetrics.Operation.INSERT_INFO, start, visited);
+        }
+    }
+
+    /**
+     * A method to check the fields of a new item, using the same rules as <code>insertInfo</code>.
+     * @param name
+     * The name of the item.
+     * @param rfidTag
+     * The rfidTag number of the item.
+     * @param price
+     * The price of the item.
+     * @param initPosition
+     * The initial position of the item.
+     * @throws IllegalArgumentException
+     * Indicates which field of the item is invalid.
+     */
+    public static void validateInsert(String name, String rfidTag, double price, String initPosition) throws IllegalArgumentException {
+        checkInsert(name, ItemCodes.parseTag(rfidTag), price, ItemCodes.parseShelf(initPosition));
+    }
+
+    /**
+     * A helper method to check the fields of a new item once its tag and location have
+     * been parsed.
+     * @param name
+     * The name of the item.
+     * @param tag
+     * The packed rfid tag, or -1 if it did not parse.
+     * @param price
+     * The price of the item.
+     * @param shelf
+     * The location code of the initial position, or -1 if it did not parse as a shelf.
+     * @throws IllegalArgumentException
+     * Indicates which field of the item is invalid.
+     */
+    static void checkInsert(String name, long tag, double price, int shelf) throws IllegalArgumentException {
+        if (!ItemCodes.isValidName(name)) {
             throw new IllegalArgumentException("Name cannot be empty or greater than 20 characters.");
         }
-        if (!rfidTag.matches("[0-9A-Fa-f]{9}")) {
+        if (tag < 0) {
             throw new IllegalArgumentException("RFID must be a 9-character hexadecimal string including 0 - 9 or A - F.");
         }
-        if (!initPosition.matches("s\\d{5}")) {
+        if (shelf < 0) {
             throw new IllegalArgumentException("Original location must start with a s and include 5 digits after it.");
         }
         if (price < 0) {
             throw new IllegalArgumentException("Price must be positive.");
         }
-        ItemInfo newItem = new ItemInfo(name, price, rfidTag, initPosition);
-        ItemInfoNode newNode = new ItemInfoNode();
-        newNode.setData(newItem);
-        if (head == null) {
-            head = newNode;
-            tail = newNode;
-            return;
-        }
-        ItemInfoNode current = head;
-        ItemInfoNode previous = null;
-        while (current != null && newItem.compareTo(current.getData()) > 0) {
-            previous = current;
-            current = current.getNext();
+    }
+
+    /**
+     * A method to check the arguments of <code>moveItem</code>.
+     * @param rfidTag
+     * The rfidTag number of the item to be moved.
+     * @param source
+     * The source location of the item to be moved.
+     * @param dest
+     * The destination location of the item to be moved.
+     * @throws IllegalArgumentException
+     * Indicates which argument is invalid.
+     */
+    public static void validateMove(String rfidTag, String source, String dest) throws IllegalArgumentException {
+        checkMove(ItemCodes.parseTag(rfidTag), ItemCodes.parseLocation(source), ItemCodes.parseLocation(dest));
+    }
+
+    /**
+     * A helper method to check the arguments of <code>moveItem</code> once they have been parsed.
+     * @param tag
+     * The packed rfid tag, or -1 if it did not parse.
+     * @param source
+     * The source location code, or -1 if it did not parse.
+     * @param dest
+     * The destination location code, or -1 if it did not parse.
+     * @throws IllegalArgumentException
+     * Indicates which argument is invalid.
+     */
+    static void checkMove(long tag, int source, int dest) throws IllegalArgumentException {
+        if (tag < 0) {
+            throw new IllegalArgumentException("RFID must be a 9-character hexadecimal string including 0 - 9 or A - F.");
         }
-        if (previous == null) {
-            newNode.setNext(head);
-            head = newNode;
+        if (source < 0 || source == ItemCodes.OUT) {
+            throw new IllegalArgumentException("Current location must be a shelf position, or a cart number.");
         }
-        else {
-            newNode.setNext(current);
-            previous.setNext(newNode);
+        if (dest < 0) {
+            throw new IllegalArgumentException("New location must be a shelf position, a cart number, or out.");
         }
-        if (newNode.getNext() == null) {
-            tail = newNode;
+    }
+
+    /**
+     * A method to check that a location is a shelf position, a cart number, or out.
+     * @param location
+     * The location to check.
+     * @throws IllegalArgumentException
+     * Indicates that <code>location</code> is not a valid location.
+     */
+    public static void validateLocation(String location) throws IllegalArgumentException {
+        if (ItemCodes.parseLocation(location) < 0) {
+            throw new IllegalArgumentException("Current location must be a shelf position, a cart number, or out.");
         }
     }
 
     /**
-     * A method to remove all purchased items from the list that is listed as "out" and
-     * displays a list of all the items removed.
+     * A method to check that a location is a cart number.
+     * @param cartNumber
+     * The cart number to check.
+     * @throws IllegalArgumentException
+     * Indicates that <code>cartNumber</code> is not a cart number.
      */
-    public void removeAllPurchased() {
-        // The big O notation of this method is O(n) because you have to traverse
-        // through the entire list to check each node to see what node to remove.
+    public static void validateCart(String cartNumber) throws IllegalArgumentException {
+        checkCart(cartNumber);
+    }
 
-        System.out.println("The following items(s) have been removed from the system: ");
-        System.out.println(toString());
-        ItemInfoNode current = head;
-        while (current != null) {
-            ItemInfoNode next = current.getNext();
-            if (current.getData().getCurrentLocation().equalsIgnoreCase("out")) {
-                removeNode(current);
-                System.out.println(current.getData());
-            }
-            current = next;
+    /**
+     * A method to check that an rfid tag number is 9 hexadecimal characters.
+     * @param rfid
+     * The rfid tag number to check.
+     * @throws IllegalArgumentException
+     * Indicates that <code>rfid</code> is not a valid rfid tag number.
+     */
+    public static void validateRfid(String rfid) throws IllegalArgumentException {
+        if (ItemCodes.parseTag(rfid) < 0) {
+            throw new IllegalArgumentException("RFID must be a 9-character hexadecimal string including 0 - 9 or A - F.");
         }
     }
 
     /**
-     * A helper method to remove an item from the list.
-     * @param node
-     * The node in the list to remove.
+     * A method to load many items at once from a CSV feed. See <code>ItemFeedReader.readCsv</code>
+     * for the format.
+     * @param reader
+     * The reader to read the feed from.
+     * @return
+     * Returns how many items were loaded and why any rows were rejected.
+     * @throws IOException
+     * Indicates that the feed could not be read.
      */
-    public void removeNode(ItemInfoNode node) {
-        if (node.getPrev() != null) {
-            node.getPrev().setNext(node.getNext());
+    public BulkLoadReport bulkLoadCsv(Reader reader) throws IOException {
+        return bulkLoad(ItemFeedReader.readCsv(reader));
+    }
+
+    /**
+     * A method to load many items at once from a binary feed. See
+     * <code>ItemFeedReader.readBinary</code> for the format.
+     * @param input
+     * The stream to read the feed from.
+     * @return
+     * Returns how many items were loaded and why any rows were rejected.
+     * @throws IOException
+     * Indicates that the feed could not be read.
+     */
+    public BulkLoadReport bulkLoadBinary(InputStream input) throws IOException {
+        return bulkLoad(ItemFeedReader.readBinary(input));
+    }
+
+    /**
+     * A method to load many items at once. Rows are validated in parallel with the rules of
+     * <code>insertInfo</code>, and a row that fails is reported instead of stopping the load.
+     * The valid rows end up in the same order as if each had been passed to
+     * <code>insertInfo</code> in turn.
+     * @param rows
+     * The rows to load.
+     * @return
+     * Returns how many items were loaded and why any rows were rejected.
+     */
+    public BulkLoadReport bulkLoad(List<ItemFeedRow> rows) {
+        // The Big-O notation of this method is O(m log m + n), where m is the number of rows and
+        // n the size of the list, because the rows are sorted once and then merged with the
+        // list in a single pass. A small load into a large list is inserted node by node
+        // instead, which is O(m log n).
+        long start = metrics == null ? 0 : System.nanoTime();
+        String[] messages = new String[rows.size()];
+        ItemInfoNode[] nodes = new ItemInfoNode[rows.size()];
+        IntStream.range(0, rows.size()).parallel().forEach(i -> {
+            ItemFeedRow row = rows.get(i);
+            try {
+                if (row.getName() == null) {
+                    throw new IllegalArgumentException("Row must have a name, RFID, price and location.");
+                }
+                double price;
+                try {
+                    price = Double.parseDouble(row.getPrice());
+                }
+                catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Price must be a number.");
+                }
+                long tag = ItemCodes.parseTag(row.getRfidTagNumber());
+                int shelf = ItemCodes.parseShelf(row.getLocation());
+                checkInsert(row.getName(), tag, price, shelf);
+                ItemInfoNode node = new ItemInfoNode();
+                node.setData(new ItemInfo(NameDictionary.idOf(row.getName()), tag, shelf, shelf, ItemCodes.toCents(price)));
+                nodes[i] = node;
+            }
+            catch (IllegalArgumentException e) {
+                messages[i] = e.getMessage();
+            }
+        });
+        List<BulkLoadReport.RowError> errors = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (messages[i] != null) {
+                errors.add(new BulkLoadReport.RowError(rows.get(i).getLineNumber(), messages[i]));
+            }
         }
-        else {
-            head = node.getNext();
+        int loaded = linkInOrder(nodes);
+        if (metrics != null) {
+            metrics.record(ItemListMetrics.Operation.BULK_LOAD, start, rows.size());
         }
-        if (node.getNext() != null) {
-            node.getNext().setPrev(node.getPrev());
+        return new BulkLoadReport(loaded, errors);
+    }
+
+    /**
+     * A helper method to add new nodes to the list so that they end up in the same order as
+     * if each had been passed to <code>insertInfo</code> in turn.
+     * @param nodes
+     * The new nodes in the order they were given, with null for any that were rejected.
+     * @return
+     * Returns the number of nodes added.
+     */
+    private int linkInOrder(ItemInfoNode[] nodes) {
+        List<ItemInfoNode> loaded = new ArrayList<>(nodes.length);
+        for (int i = nodes.length - 1; i >= 0; i--) {
+            if (nodes[i] != null) {
+                loaded.add(nodes[i]);
+            }
         }
-        else {
-            tail = node.getPrev();
+        // Later rows come first so that, after a stable sort, equal tags sit in the order
+        // repeated calls to insertInfo would have left them.
+        ItemInfoNode[] sorted = loaded.toArray(new ItemInfoNode[0]);
+        Arrays.parallelSort(sorted, (a, b) -> a.getData().compareTo(b.getData()));
+        link(Arrays.asList(sorted));
+        if (events != null) {
+            for (ItemInfoNode node : nodes) {
+                if (node != null) {
+                    publish(ItemEventType.INSERTED, node.getData(), ItemEvent.NO_LOCATION, node.getData().getCurrentLocationCode());
+                }
+            }
         }
+        return sorted.length;
     }
 
     /**
-     * A method to move the item from a source location to a dest location.
-     * @param rfidTag
-     * The rfidTag number of the item to be moved.
-     * @param source
-     * The source location of the item to be moved.
-     * @param dest
-     * The destination location of the item to be moved.
+     * A method to apply a batch of inserts, moves and checkouts, such as the scans of one
+     * sweep of an aisle. The outcome is the same as calling <code>insertInfo</code>,
+     * <code>moveItem</code> and <code>checkOut</code> for each command in turn, but the
+     * work is shared: each command is parsed once, a run of inserts is merged into the
+     * list in one pass, and a run of moves is grouped by rfid tag so that each tag is looked
+     * up once. An invalid command is reported and skipped without stopping the batch.
+     * @param commands
+     * The commands to apply, in order.
      * @return
-     * Return whether the item was found.
-     * @throws IllegalArgumentException
-     * Indicates <code>source</code> cannot be out.
+     * Returns the result of each command, in the same order.
      */
-    public boolean moveItem(String rfidTag, String source, String dest) throws IllegalArgumentException {
-        // The Big-O notation of this method is O(n) because you may have to traverse
-        // through the entire ist to find the item.
-        if (!rfidTag.matches("[0-9A-Fa-f]{9}")) {
-            throw new IllegalArgumentException("RFID must be a 9-character hexadecimal string including 0 - 9 or A - F.");
+    public List<ItemCommandResult> applyBatch(List<ItemCommand> commands) {
+        // The Big-O notation of this method is O(m log m + k) for the m commands, plus the
+        // cost of the inserts and checkouts, where k is the number of items sharing the tags
+        // that are moved. A run of r moves costs O(r log r + k) instead of r separate lookups.
+        long start = metrics == null ? 0 : System.nanoTime();
+        ItemCommandResult[] results = new ItemCommandResult[commands.size()];
+        int i = 0;
+        while (i < commands.size()) {
+            ItemCommand.Type type = commands.get(i).getType();
+            int end = i + 1;
+            // A run of moves is capped so that a position in it fits in the sort keys of moveRun.
+            while (end < commands.size() && commands.get(end).getType() == type && type != ItemCommand.Type.CHECKOUT
+                    && end - i < (1 << 27)) {
+                end++;
+            }
+            switch (type) {
+                case INSERT:
+                    insertRun(commands, i, end, results);
+                    break;
+                case MOVE:
+                    moveRun(commands, i, end, results);
+                    break;
+                default:
+                    try {
+                        results[i] = ItemCommandResult.checkedOut(checkOutCents(commands.get(i).getSource(), null));
+                    }
+                    catch (IllegalArgumentException e) {
+                        results[i] = ItemCommandResult.invalid(e.getMessage());
+                    }
+                    break;
+            }
+            i = end;
         }
-        if (!source.matches("s\\d{5}")
-                && !source.matches("c\\d{3}")) {
-            throw new IllegalArgumentException("Current location must be a shelf position, or a cart number.");
+        if (metrics != null) {
+            metrics.record(ItemListMetrics.Operation.APPLY_BATCH, start, commands.size());
         }
-        if (!dest.matches("s\\d{5}")
-                && !dest.matches("c\\d{3}")
-                && !dest.equalsIgnoreCase("out")) {
-            throw new IllegalArgumentException("New location must be a shelf position, a cart number, or out.");
+        return Arrays.asList(results);
+    }
+
+    /**
+     * A helper method to apply a run of inserts from a batch.
+     * @param commands
+     * The commands of the batch.
+     * @param from
+     * The index of the first insert of the run.
+     * @param to
+     * The index after the last insert of the run.
+     * @param results
+     * The results of the batch, filled in for the run.
+     */
+    private void insertRun(List<ItemCommand> commands, int from, int to, ItemCommandResult[] results) {
+        ItemInfoNode[] nodes = new ItemInfoNode[to - from];
+        for (int i = from; i < to; i++) {
+            ItemCommand command = commands.get(i);
+            long tag = ItemCodes.parseTag(command.getRfidTag());
+            int shelf = ItemCodes.parseShelf(command.getDest());
+            try {
+                checkInsert(command.getName(), tag, command.getPrice(), shelf);
+            }
+            catch (IllegalArgumentException e) {
+                results[i] = ItemCommandResult.invalid(e.getMessage());
+                continue;
+            }
+            ItemInfoNode node = new ItemInfoNode();
+            node.setData(new ItemInfo(NameDictionary.idOf(command.getName()), tag, shelf, shelf, ItemCodes.toCents(command.getPrice())));
+            nodes[i - from] = node;
+            results[i] = ItemCommandResult.OK;
+        }
+        linkInOrder(nodes);
+    }
+
+    /**
+     * A helper method to apply a run of moves from a batch. Moves of different tags touch
+     * different items, so only the order of moves sharing a tag matters, and sorting the
+     * run by tag keeps that order while letting each tag be looked up once. The items are
+     * found in tag order, tracking where earlier moves of the same tag will have put them,
+     * and then moved in the order of the run, so that items go out and events are published
+     * in the same order as with <code>moveItem</code>.
+     * @param commands
+     * The commands of the batch.
+     * @param from
+     * The index of the first move of the run.
+     * @param to
+     * The index after the last move of the run.
+     * @param results
+     * The results of the batch, filled in for the run.
+     */
+    private void moveRun(List<ItemCommand> commands, int from, int to, ItemCommandResult[] results) {
+        int[] sources = new int[to - from];
+        int[] dests = new int[to - from];
+        long[] keys = new long[to - from];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            ItemCommand command = commands.get(i);
+            long tag = ItemCodes.parseTag(command.getRfidTag());
+            int source = ItemCodes.parseLocation(command.getSource());
+            int dest = ItemCodes.parseLocation(command.getDest());
+            try {
+                checkMove(tag, source, dest);
+            }
+            catch (IllegalArgumentException e) {
+                results[i] = ItemCommandResult.invalid(e.getMessage());
+                continue;
+            }
+            sources[i - from] = source;
+            dests[i - from] = dest;
+            // The tag takes at most 36 bits, which leaves the low 27 for the position in the
+            // run, so sorting the keys orders the moves by tag and then by position.
+            keys[count++] = (tag << 27) | (i - from);
         }
-        ItemInfoNode current = head;
-        while (current != null) {
-            if (current.getData().getRfidTagNumber().equalsIgnoreCase(rfidTag)
-            && current.getData().getCurrentLocation().equalsIgnoreCase(source)) {
-                if (current.getData().getCurrentLocation().equalsIgnoreCase("out")) {
-                    throw new IllegalArgumentException("Source destination cannot be out");
+        Arrays.sort(keys, 0, count);
+        ItemInfoNode[] targets = new ItemInfoNode[to - from];
+        int k = 0;
+        while (k < count) {
+            long tag = keys[k] >>> 27;
+            int groupEnd = k + 1;
+            while (groupEnd < count && keys[groupEnd] >>> 27 == tag) {
+                groupEnd++;
+            }
+            hydrateTag(tag);
+            ItemInfoNode first = rfidIndex.get(tag);
+            Map<ItemInfoNode, Integer> pending = groupEnd - k > 1 ? new IdentityHashMap<>() : null;
+            for (; k < groupEnd; k++) {
+                int j = (int) (keys[k] & ((1 << 27) - 1));
+                results[from + j] = ItemCommandResult.NOT_FOUND;
+                for (ItemInfoNode current = first; current != null && current.getData().getRfidTag() == tag; current = current.getNext()) {
+                    Integer location = pending == null ? null : pending.get(current);
+                    if ((location == null ? current.getData().getCurrentLocationCode() : location) == sources[j]) {
+                        targets[j] = current;
+                        if (pending != null) {
+                            pending.put(current, dests[j]);
+                        }
+                        results[from + j] = ItemCommandResult.OK;
+                        break;
+                    }
                 }
-                current.getData().setCurrentLocation(dest);
-                return true;
             }
-            current = current.getNext();
         }
-        return false;
+        for (int j = 0; j < targets.length; j++) {
+            if (targets[j] != null) {
+                targets[j].getData().setCurrentLocationCode(dests[j]);
+            }
+        }
     }
 
     /**
-     * A method to print a neatly formatted list of all items in the list.
+     * A method to put back items saved from another list, such as the items of a snapshot.
+     * Unlike <code>insertInfo</code>, each item keeps its current location.
+     * @param saved
+     * The items to add, in the order they had in the list they were saved from.
      */
-    public void printAll() {
-        // The Big-O notation of this method is O(n) because you have to
-        // traverse through the entire list to print each node's data.
-        System.out.println(toString());
-        ItemInfoNode current = head;
-        while (current != null) {
-            System.out.println(current.getData());
-            current = current.getNext();
+    public void restore(List<ItemInfo> saved) {
+        // The Big-O notation of this method is O(n) because the items are already in order
+        // and are linked in a single pass.
+        long start = metrics == null ? 0 : System.nanoTime();
+        List<ItemInfoNode> nodes = new ArrayList<>(saved.size());
+        for (ItemInfo item : saved) {
+            ItemInfoNode node = new ItemInfoNode();
+            node.setData(item);
+            nodes.add(node);
+        }
+        link(nodes);
+        if (metrics != null) {
+            metrics.record(ItemListMetrics.Operation.RESTORE, start, nodes.size());
         }
     }
 
     /**
-     * Prints a neatly formatted list of all items in a specified location.
-     * @param location
-     * The location of the items to be printed in the table.
+     * A method to visit every item in list order, for example to save them. Items still in
+     * the catalog image the list was opened from are visited as copies read from it, without
+     * hydrating them, so the visitor must not change the items it is given.
+     * @param visitor
+     * The action to run on each item.
      */
-    public void printByLocation(String location) {
-        // The Big-O notation of this method is O(n) because you have
-        // to traverse through the entire list to check each node's location
-        // and then print the nodes with the same location.
-        if (!location.matches("s\\d{5}")
-                && !location.matches("c\\d{3}")
-                && !location.equalsIgnoreCase("out")) {
-            throw new IllegalArgumentException("Current location must be a shelf position, a cart number, or out.");
+    public void forEach(Consumer<ItemInfo> visitor) {
+        long start = metrics == null ? 0 : System.nanoTime();
+        int visited = visitInOrder(item -> {
+            visitor.accept(item);
+            return true;
+        });
+        if (metrics != null) {
+            metrics.record(ItemListMetrics.Operation.FOR_EACH, start, visited);
         }
-        System.out.println(toString());
-        ItemInfoNode current = head;
-        while (current != null) {
-            if (current.getData().getCurrentLocation().equalsIgnoreCase(location)) {
-                System.out.println(current.getData());
+    }
+
+    /**
+     * Gets the number of items in the list.
+     * @return
+     * Returns the number of items.
+     */
+    public int size() {
+        ColdCatalog pending = cold;
+        return items.size() + (pending == null ? 0 : pending.size());
+    }
+
+    /**
+     * A helper method to visit the items in list order, merging the items of the list with
+     * the records still in the image by rfid tag. The items of a tag are always hydrated
+     * together, so no tag is in both. The items that are out are hydrated first, so that
+     * they are the items <code>purchasedInOrder</code> returns.
+     * @param visitor
+     * Receives each item, and returns false to stop the walk.
+     * @return
+     * Returns the number of items visited.
+     */
+    private int visitInOrder(Predicate<ItemInfo> visitor) {
+        // The Big-O notation of this method is O(n), and no record of the image is hydrated
+        // apart from those of the items that are out.
+        hydrateLocation(ItemCodes.OUT);
+        ColdCatalog pending = cold;
+        ItemInfoNode node = items.getHead();
+        int record = pending == null ? -1 : pending.next(0);
+        int visited = 0;
+        while (node != null || record >= 0) {
+            ItemInfo item;
+            if (record < 0 || node != null && node.getData().getRfidTag() < pending.tagOf(record)) {
+                item = node.getData();
+                node = node.getNext();
             }
-            current = current.getNext();
+            else {
+                item = pending.peek(record);
+                record = pending.next(record + 1);
+            }
+            if (!visitor.test(item)) {
+                break;
+            }
+            visited++;
         }
+        return visited;
     }
 
     /**
-     * A method to take every item that is in the store and on the wrong shelf and place it where
-     * it belongs.
+     * A helper method to add sorted, unlinked nodes to the list and its indexes.
+     * @param sorted
+     * The new nodes, sorted by rfid tag number. Among equal tags, the node that should
+     * come first in the list comes first.
      */
-    public void cleanStore() {
-        // The Big-O notation of this method is O(n) because you need to traverse through the entire list
-        // to generate the items in a tabular list.
-        System.out.println("The following items(s) have been moved back to their original locations: ");
-        System.out.println(toString());
-        ItemInfoNode current = head;
-        while (current != null) {
-            ItemInfo info = current.getData();
-            if (!info.getCurrentLocation().equalsIgnoreCase("out") &&
-                    !info.getCurrentLocation().equalsIgnoreCase(info.getOriginalLocation()) &&
-                    !info.getCurrentLocation().startsWith("c")) {
-                System.out.printf("%-16s%-17s%-16s%-15s%.2f", info.getName(), info.getRfidTagNumber(), info.getCurrentLocation(), info.getOriginalLocation(), info.getPrice());
-                System.out.println();
-                info.setCurrentLocation(info.getOriginalLocation());
+    void link(List<ItemInfoNode> sorted) {
+        if (cold != null) {
+            for (ItemInfoNode node : sorted) {
+                if (node.getData().getCurrentLocationCode() == ItemCodes.OUT) {
+                    hydrateLocation(ItemCodes.OUT);
+                }
+                hydrateTag(node.getData().getRfidTag());
+            }
+        }
+        long now = System.currentTimeMillis();
+        for (int i = sorted.size() - 1; i >= 0; i--) {
+            ItemInfo item = sorted.get(i).getData();
+            locationIndex.add(item);
+            if (ItemCodes.isCart(item.getCurrentLocationCode())) {
+                carts.touch(item.getCurrentLocationCode(), now);
             }
-            current = current.getNext();
         }
+        linkNodes(sorted);
+        updateGauges();
     }
 
     /**
-     * A method that goes through a t and checks out each item.
-     * @param cartNumber
-     * The cart number to check out.
-     * @return
-     * Returns the total price of all items in that cart.
+     * A helper method to add sorted, unlinked nodes to the list and every index but the
+     * location index.
+     * @param sorted
+     * The new nodes, sorted by rfid tag number. Among equal tags, the node that should
+     * come first in the list comes first.
      */
-    public double checkOut(String cartNumber) {
-        // The Big-O notation of this method is O(n) because you have to traverse through the
-        // entire list to check and update the total.
-        if (!cartNumber.matches("c\\d{3}")) {
-            throw new IllegalArgumentException("Location must be a cart number.");
+    private void linkNodes(List<ItemInfoNode> sorted) {
+        int n = items.size();
+        int m = sorted.size();
+        rfidIndex.ensureCapacity(rfidIndex.size() + m);
+        for (int i = m - 1; i >= 0; i--) {
+            ItemInfo item = sorted.get(i).getData();
+            rfidIndex.add(item.getRfidTag(), sorted.get(i));
+            nameIndex.add(item);
+            item.setListener(this);
+        }
+        if ((long) m * (64 - Long.numberOfLeadingZeros(n)) < n) {
+            for (int i = m - 1; i >= 0; i--) {
+                items.insert(sorted.get(i));
+            }
+            return;
         }
-        System.out.println(toString());
-        double total = 0;
-        ItemInfoNode current = head;
-        while (current != null) {
-            if (current.getData().getCurrentLocation().equalsIgnoreCase(cartNumber)) {
-                total += current.getData().getPrice();
-                System.out.println(current.getData());
-                current.getData().setCurrentLocation("out");
+        List<ItemInfoNode> merged = new ArrayList<>(n + m);
+        ItemInfoNode current = items.getHead();
+        int i = 0;
+        while (current != null || i < m) {
+            if (current == null || (i < m && sorted.get(i).getData().compareTo(current.getData()) <= 0)) {
+                merged.add(sorted.get(i++));
+            }
+            else {
+                merged.add(current);
+                current = current.getNext();
             }
-            current = current.getNext();
         }
-        return total;
+        items.rebuild(merged);
     }
 
     /**
-     * A method to print all items that have the same rfid number.
-     * @param rfid
-     * The rfid of the items.
+     * A method to remove all purchased items from the list that is listed as "out" and
+     * displays a list of all the items removed.
      */
-    public void printByRFID(String rfid) {
-        if (!rfid.matches("[0-9A-Fa-f]{9}")) {
-            throw new IllegalArgumentException("RFID must be a 9-character hexadecimal string including 0 - 9 or A - F.");
+    public void removeAllPurchased() {
+        ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+        removeAllPurchased(report);
+        report.finish();
+    }
+
+    /**
+     * A method to remove all purchased items from the list, writing them to a report.
+     * Every purchased item is removed, even those outside the page of the report.
+     * @param report
+     * The report to write the removed items to. The caller finishes it.
+     */
+    public void removeAllPurchased(ItemReportWriter report) {
+        report.title("The following items(s) have been removed from the system: ");
+        report.header();
+        removeAllPurchasedRows(report);
+    }
+
+    /**
+     * A helper method to remove all purchased items from the list, passing them to a sink
+     * without a title or header.
+     * @param rows
+     * The sink to pass the removed items to.
+     */
+    void removeAllPurchasedRows(ItemRowSink rows) {
+        // The big O notation of this method is O(k log k), where k is the number of purchased
+        // items, because the location index holds them and they only need sorting for the table.
+        long start = metrics == null ? 0 : System.nanoTime();
+        hydrateLocation(ItemCodes.OUT);
+        List<ItemInfo> purchased = inListOrder(locationIndex.sortedItemsAt(ItemCodes.OUT));
+        for (ItemInfo item : purchased) {
+            removeNode(nodeOf(item));
+            rows.item(item);
         }
-        System.out.println(toString());
-        ItemInfoNode current = head;
-        while (current != null) {
-            if (current.getData().getRfidTagNumber().equalsIgnoreCase(rfid)) {
-                System.out.printf("%-16s%-17s%-16s%-15s%.2f", current.getData().getName(), current.getData().getRfidTagNumber(), current.getData().getCurrentLocation(),
-                        current.getData().getOriginalLocation(), current.getData().getPrice());
-                System.out.println();
-            }
-            current = current.getNext();
+        if (metrics != null) {
+            metrics.record(ItemListMetrics.Operation.REMOVE_ALL_PURCHASED, start, purchased.size());
         }
     }
 
     /**
-     * A method to print a neat table.
+     * A method to remove some of the purchased items from the list and hand them to an
+     * archive instead of printing them. Items that went out first are removed first, so
+     * calling this repeatedly with a small batch size purges the store a little at a time.
+     * @param maxItems
+     * The largest number of items to remove.
+     * @param archive
+     * Receives each removed item, for example to write it to an archive report.
      * @return
-     * Returns a table to show all the items.
+     * Returns the number of items removed, which is less than <code>maxItems</code> only
+     * once no purchased items are left.
      */
-    public String toString() {
-        String string = "";
-        string = String.format("%-16s%-16s%-16s%-16s%-2s", "", "", "Original", "Current", "");
-        string += "\n" + String.format("%-18s%-14s%-16s%-16s%-2s", "Item Name", "RFID", "Location", "Location", "Price\n");
-        string += String.format("%-16s%-16s%-16s%-16s%-2s", "---------", "---------", "---------", "---------", "------");
-        return string;
+    public int purgePurchased(int maxItems, Consumer<ItemInfo> archive) {
+        // The Big-O notation of this method is O(b), where b is the batch size, because the
+        // location index keeps the purchased items in the order they went out.
+        long start = metrics == null ? 0 : System.nanoTime();
+        hydrateLocation(ItemCodes.OUT);
+        List<ItemInfo> batch = locationIndex.oldestOut(maxItems);
+        for (ItemInfo item : batch) {
+            removeNode(nodeOf(item));
+            archive.accept(item);
+        }
+        if (metrics != null) {
+            metrics.record(ItemListMetrics.Operation.PURGE_PURCHASED, start, batch.size());
+        }
+        return batch.size();
+    }
+
+    /**
+     * Gets the number of purchased items still in the list.
+     * @return
+     * Returns the number of items that are out.
+     */
+    public int purchasedCount() {
+        return countAt(ItemCodes.OUT);
+    }
+
+    /**
+     * A helper method for writing a catalog image to get the purchased items.
+     * @return
+     * Returns a new list of the items that are out, in the order they went out.
+     */
+    List<ItemInfo> purchasedInOrder() {
+        hydrateLocation(ItemCodes.OUT);
+        return locationIndex.oldestOut(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets the number of items in the store but not on their original shelf.
+     * @return
+     * Returns the number of misplaced items.
+     */
+    public int misplacedCount() {
+        ColdCatalog pending = cold;
+        return locationIndex.misplacedCount() + (pending == null ? 0 : pending.misplacedCount());
+    }
+
+    /**
+     * Gets the number of items at a location.
+     * @param location
+     * The location code.
+     * @return
+     * Returns the number of items at the location.
+     */
+    public int countAt(int location) {
+        ColdCatalog pending = cold;
+        return locationIndex.countAt(location) + (pending == null ? 0 : pending.countAt(location));
+    }
+
+    /**
+     * Gets the number of items at a location.
+     * @param location
+     * The shelf position, cart number, or out.
+     * @return
+     * Returns the number of items at the location.
+     * @throws IllegalArgumentException
+     * Indicates that <code>location</code> is not a valid location.
+     */
+    public int countAt(String location) throws IllegalArgumentException {
+        return countAt(checkLocation(location));
+    }
+
+    /**
+     * Gets the total price of the items at a location.
+     * @param location
+     * The shelf position, cart number, or out.
+     * @return
+     * Returns the total price in cents.
+     * @throws IllegalArgumentException
+     * Indicates that <code>location</code> is not a valid location.
+     */
+    public long valueCentsAt(String location) throws IllegalArgumentException {
+        // The Big-O notation of this method is O(1) because the location index keeps a
+        // running total for every location.
+        return valueAt(checkLocation(location));
+    }
+
+    /**
+     * Gets the subtotal of a cart, which is what <code>checkOut</code> would charge for it now.
+     * @param cartNumber
+     * The cart number.
+     * @return
+     * Returns the subtotal in cents.
+     * @throws IllegalArgumentException
+     * Indicates that <code>cartNumber</code> is not a cart number.
+     */
+    public long cartSubtotalCents(String cartNumber) throws IllegalArgumentException {
+        // The Big-O notation of this method is O(1) because the location index keeps a
+        // running total for every cart.
+        int cart = ItemCodes.parseCart(cartNumber);
+        if (cart < 0) {
+            throw new IllegalArgumentException("Location must be a cart number.");
+        }
+        return valueAt(cart);
+    }
+
+    /**
+     * Gets the total price of every item still in the store, on a shelf or in a cart.
+     * Purchased items that have not been removed yet are not counted.
+     * @return
+     * Returns the total price in cents.
+     */
+    public long storeValueCents() {
+        // The Big-O notation of this method is O(1) because the location index keeps a
+        // running total for the whole list and for out.
+        ColdCatalog pending = cold;
+        return locationIndex.totalValue() + (pending == null ? 0 : pending.totalValue()) - valueAt(ItemCodes.OUT);
+    }
+
+    /**
+     * Gets the total price of the items at every location that holds any.
+     * @return
+     * Returns the total price in cents of each non-empty location, keyed by shelf position,
+     * cart number or out, in location code order.
+     */
+    public SortedMap<String, Long> valueByLocation() {
+        // The Big-O notation of this method is O(l) for the l possible locations, no matter
+        // how many items there are.
+        SortedMap<String, Long> values = new TreeMap<>();
+        for (int location = 0; location < ItemCodes.LOCATION_COUNT; location++) {
+            if (countAt(location) > 0) {
+                values.put(ItemCodes.decodeLocation(location), valueAt(location));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * A helper method to get the total price of the items at a location, including those
+     * not yet hydrated from the image.
+     * @param location
+     * The location code.
+     * @return
+     * Returns the total price in cents.
+     */
+    private long valueAt(int location) {
+        ColdCatalog pending = cold;
+        return locationIndex.valueAt(location) + (pending == null ? 0 : pending.valueAt(location));
+    }
+
+    /**
+     * A helper method to parse a location that must be valid.
+     * @param location
+     * The shelf position, cart number, or out.
+     * @return
+     * Returns the location code.
+     * @throws IllegalArgumentException
+     * Indicates that <code>location</code> is not a valid location.
+     */
+    static int checkLocation(String location) throws IllegalArgumentException {
+        int code = ItemCodes.parseLocation(location);
+        if (code < 0) {
+            throw new IllegalArgumentException("Current location must be a shelf position, a cart number, or out.");
+        }
+        return code;
+    }
+
+    /**
+     * A helper method to parse a cart number that must be valid.
+     * @param cartNumber
+     * The cart number.
+     * @return
+     * Returns the location code of the cart.
+     * @throws IllegalArgumentException
+     * Indicates that <code>cartNumber</code> is not a cart number.
+     */
+    static int checkCart(String cartNumber) throws IllegalArgumentException {
+        int cart = ItemCodes.parseCart(cartNumber);
+        if (cart < 0) {
+            throw new IllegalArgumentException("Location must be a cart number.");
+        }
+        return cart;
+    }
+
+    /**
+     * A helper method to remove an item from the list.
+     * @param node
+     * The node in the list to remove.
+     */
+    public void removeNode(ItemInfoNode node) {
+        // The Big-O notation of this method is O(log n) expected, because the skip list
+        // finds the links to update without traversing the whole list.
+        rfidIndex.remove(node.getData().getRfidTag(), node);
+        locationIndex.remove(node.getData());
+        nameIndex.remove(node.getData());
+        node.getData().setListener(null);
+        items.remove(node);
+        if (ItemCodes.isCart(node.getData().getCurrentLocationCode())) {
+            cartLeft(node.getData().getCurrentLocationCode());
+        }
+        publish(ItemEventType.REMOVED, node.getData(), node.getData().getCurrentLocationCode(), ItemEvent.NO_LOCATION);
+        updateGauges();
+    }
+
+    /**
+     * A method to move the item from a source location to a dest location.
+     * @param rfidTag
+     * The rfidTag number of the item to be moved.
+     * @param source
+     * The source location of the item to be moved.
+     * @param dest
+     * The destination location of the item to be moved.
+     * @return
+     * Return whether the item was found.
+     * @throws IllegalArgumentException
+     * Indicates <code>source</code> cannot be out.
+     */
+    public boolean moveItem(String rfidTag, String source, String dest) throws IllegalArgumentException {
+        // The Big-O notation of this method is O(k) on average, where k is the number of
+        // items sharing the tag, because the rfid index finds them without a traversal.
+        long start = metrics == null ? 0 : System.nanoTime();
+        long tag = ItemCodes.parseTag(rfidTag);
+        int sourceCode = ItemCodes.parseLocation(source);
+        int destCode = ItemCodes.parseLocation(dest);
+        checkMove(tag, sourceCode, destCode);
+        hydrateTag(tag);
+        boolean found = false;
+        int visited = 0;
+        for (ItemInfoNode current = rfidIndex.get(tag); current != null && current.getData().getRfidTag() == tag; current = current.getNext()) {
+            visited++;
+            if (current.getData().getCurrentLocationCode() == sourceCode) {
+                current.getData().setCurrentLocationCode(destCode);
+                found = true;
+                break;
+            }
+        }
+        if (metrics != null) {
+            metrics.record(ItemListMetrics.Operation.MOVE_ITEM, start, visited);
+        }
+        return found;
+    }
+
+    /**
+     * A method to print a neatly formatted list of all items in the list.
+     */
+    public void printAll() {
+        ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+        printAll(report);
+        report.finish();
+    }
+
+    /**
+     * A method to write all items in the list to a report. The walk stops once the page of
+     * the report is full.
+     * @param report
+     * The report to write to. The caller finishes it.
+     */
+    public void printAll(ItemReportWriter report) {
+        report.header();
+        printAllRows(report);
+    }
+
+    /**
+     * A helper method to pass all items in the list to a sink without a header. The walk
+     * stops once the sink wants no more rows.
+     * @param rows
+     * The sink to pass the items to.
+     */
+    void printAllRows(ItemRowSink rows) {
+        // The Big-O notation of this method is O(n) because you have to
+        // traverse through the entire list to print each node's data.
+        long start = metrics == null ? 0 : System.nanoTime();
+        int visited = visitInOrder(rows::item);
+        if (metrics != null) {
+            metrics.record(ItemListMetrics.Operation.PRINT_ALL, start, visited);
+        }
+    }
+
+    /**
+     * Prints a neatly formatted list of all items in a specified location.
+     * @param location
+     * The location of the items to be printed in the table.
+     */
+    public void printByLocation(String location) {
+        ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+        printByLocation(location, report);
+        report.finish();
+    }
+
+    /**
+     * Writes all items in a specified location to a report.
+     * @param location
+     * The location of the items to write.
+     * @param report
+     * The report to write to. The caller finishes it.
+     */
+    public void printByLocation(String location, ItemReportWriter report) {
+        int code = checkLocation(location);
+        report.header();
+        printByLocationRows(code, report);
+    }
+
+    /**
+     * A helper method to pass all items in a location to a sink without a header.
+     * @param code
+     * The location code of the items, which must be valid.
+     * @param rows
+     * The sink to pass the items to.
+     */
+    void printByLocationRows(int code, ItemRowSink rows) {
+        // The Big-O notation of this method is O(k log k), where k is the number of items
+        // at the location, because the location index holds them and they only need sorting.
+        long start = metrics == null ? 0 : System.nanoTime();
+        hydrateLocation(code);
+        List<ItemInfo> found = inListOrder(locationIndex.sortedItemsAt(code));
+        for (ItemInfo item : found) {
+            if (!rows.item(item)) {
+                break;
+            }
+        }
+        if (metrics != null) {
+            metrics.record(ItemListMetrics.Operation.PRINT_BY_LOCATION, start, found.size());
+        }
+    }
+
+    /**
+     * A method to take every item that is in the store and on the wrong shelf and place it where
+     * it belongs.
+     */
+    public void cleanStore() {
+        ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+        cleanStore(report);
+        report.finish();
+    }
+
+    /**
+     * A method to put every misplaced item back on its shelf, writing them to a report as
+     * they were before the move. Every misplaced item is moved, even those outside the page
+     * of the report.
+     * @param report
+     * The report to write the moved items to. The caller finishes it.
+     */
+    public void cleanStore(ItemReportWriter report) {
+        report.title("The following items(s) have been moved back to their original locations: ");
+        report.header();
+        report.setCurrentFirst(true);
+        cleanStoreRows(report);
+    }
+
+    /**
+     * A helper method to put every misplaced item back on its shelf, passing them to a sink
+     * as they were before the move, without a title or header.
+     * @param rows
+     * The sink to pass the moved items to.
+     */
+    void cleanStoreRows(ItemRowSink rows) {
+        // The Big-O notation of this method is O(k log k), where k is the number of misplaced
+        // items, because the location index keeps them in a set of their own.
+        long start = metrics == null ? 0 : System.nanoTime();
+        hydrateMisplaced();
+        List<ItemInfo> misplaced = inListOrder(locationIndex.sortedMisplaced());
+        for (ItemInfo info : misplaced) {
+            rows.item(info);
+            info.setCurrentLocationCode(info.getOriginalLocationCode());
+        }
+        if (metrics != null) {
+            metrics.record(ItemListMetrics.Operation.CLEAN_STORE, start, misplaced.size());
+        }
+    }
+
+    /**
+     * A method to put every misplaced item back on its shelf, finding them in parallel and
+     * printing them grouped by shelf.
+     * @param parallelism
+     * The number of threads to find the misplaced items with.
+     * @return
+     * Returns the plan that was applied.
+     */
+    public RestockPlan cleanStoreParallel(int parallelism) {
+        ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+        RestockPlan plan = cleanStoreParallel(report, parallelism);
+        report.finish();
+        return plan;
+    }
+
+    /**
+     * A method to put every misplaced item back on its shelf, like <code>cleanStore</code>,
+     * but finding the items in parallel with <code>planRestock</code>. The same items are
+     * moved, the list ends up the same and the report lists them in list order, as they were
+     * before the move, just as <code>cleanStore</code> prints them. The plan returned groups
+     * them by the shelf they go back to.
+     * @param report
+     * The report to write the moved items to. The caller finishes it.
+     * @param parallelism
+     * The number of threads to find the misplaced items with.
+     * @return
+     * Returns the plan that was applied.
+     */
+    public RestockPlan cleanStoreParallel(ItemReportWriter report, int parallelism) {
+        long start = metrics == null ? 0 : System.nanoTime();
+        report.title("The following items(s) have been moved back to their original locations: ");
+        report.header();
+        RestockPlan plan = planRestock(parallelism);
+        report.setCurrentFirst(true);
+        List<ItemInfo> moved = new ArrayList<>(plan.getMoveCount());
+        for (List<RestockPlan.Move> moves : plan.getShelves().values()) {
+            for (RestockPlan.Move move : moves) {
+                moved.add(move.getItem());
+            }
+        }
+        moved.sort(ItemInfo::compareTo);
+        for (ItemInfo item : inListOrder(moved)) {
+            report.item(item);
+        }
+        applyRestock(plan);
+        if (metrics != null) {
+            metrics.record(ItemListMetrics.Operation.CLEAN_STORE_PARALLEL, start, plan.getMoveCount());
+        }
+        return plan;
+    }
+
+    /**
+     * A method to find every misplaced item and group them by the shelf they belong on,
+     * without moving anything. The misplaced items are split into chunks that are grouped
+     * on a fork/join pool, and each shelf's items are then put in list order in parallel.
+     * The list keeps its pool between plans, and only starts a new one when the parallelism
+     * changes. The list is only read while the plan is made, so it must not be changed by
+     * another thread meanwhile.
+     * @param parallelism
+     * The number of threads to use.
+     * @return
+     * Returns the plan.
+     * @throws IllegalArgumentException
+     * Indicates that <code>parallelism</code> is not positive.
+     */
+    public RestockPlan planRestock(int parallelism) throws IllegalArgumentException {
+        // The Big-O notation of this method is O(k log k / p) for the k misplaced items and
+        // p threads, since the location index keeps the misplaced items in a set of their own.
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive.");
+        }
+        long start = metrics == null ? 0 : System.nanoTime();
+        hydrateMisplaced();
+        Collection<ItemInfo> misplaced = locationIndex.misplacedItems();
+        TreeMap<Integer, List<ItemInfo>> byShelf = restockPool(parallelism).invoke(ForkJoinTask.adapt(() -> {
+            TreeMap<Integer, List<ItemInfo>> grouped = misplaced.parallelStream()
+                    .collect(Collectors.groupingBy(ItemInfo::getOriginalLocationCode, TreeMap::new, Collectors.toList()));
+            grouped.values().parallelStream().forEach(items -> {
+                items.sort(ItemInfo::compareTo);
+                inListOrder(items);
+            });
+            return grouped;
+        }));
+        SortedMap<String, List<RestockPlan.Move>> shelves = new TreeMap<>();
+        for (Map.Entry<Integer, List<ItemInfo>> shelf : byShelf.entrySet()) {
+            List<RestockPlan.Move> moves = new ArrayList<>(shelf.getValue().size());
+            for (ItemInfo item : shelf.getValue()) {
+                moves.add(new RestockPlan.Move(item, item.getCurrentLocationCode()));
+            }
+            shelves.put(ItemCodes.decodeLocation(shelf.getKey()), moves);
+        }
+        if (metrics != null) {
+            metrics.record(ItemListMetrics.Operation.PLAN_RESTOCK, start, misplaced.size());
+        }
+        return new RestockPlan(shelves);
+    }
+
+    /**
+     * A helper method to get the pool restock plans are made on, starting one the first time
+     * and whenever the parallelism changes. Its threads are daemon threads that stop once
+     * they have been idle for a while, so an unused pool holds no threads.
+     * @param parallelism
+     * The number of threads to use.
+     * @return
+     * Returns the pool.
+     */
+    private ForkJoinPool restockPool(int parallelism) {
+        ForkJoinPool pool = restockPool;
+        if (pool == null || pool.getParallelism() != parallelism) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            pool = new ForkJoinPool(parallelism);
+            restockPool = pool;
+        }
+        return pool;
+    }
+
+    /**
+     * A method to carry out a restock plan, shelf by shelf. Each move checks that the item is
+     * still in the list and still where the plan found it before moving it, in one step, so
+     * a plan made a while ago never moves an item that has been moved or sold since.
+     * @param plan
+     * The plan to carry out.
+     * @return
+     * Returns the number of items moved.
+     */
+    public int applyRestock(RestockPlan plan) {
+        // The Big-O notation of this method is O(k) on average for the k moves of the plan.
+        long start = metrics == null ? 0 : System.nanoTime();
+        int moved = 0;
+        for (List<RestockPlan.Move> moves : plan.getShelves().values()) {
+            for (RestockPlan.Move move : moves) {
+                ItemInfo item = move.getItem();
+                if (item.getCurrentLocationCode() == move.getFromCode() && nodeOf(item) != null) {
+                    item.setCurrentLocationCode(item.getOriginalLocationCode());
+                    moved++;
+                }
+            }
+        }
+        if (metrics != null) {
+            metrics.record(ItemListMetrics.Operation.APPLY_RESTOCK, start, plan.getMoveCount());
+        }
+        return moved;
+    }
+
+    /**
+     * A method that goes through a t and checks out each item.
+     * @param cartNumber
+     * The cart number to check out.
+     * @return
+     * Returns the total price of all items in that cart.
+     */
+    public double checkOut(String cartNumber) {
+        ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+        double total = checkOut(cartNumber, report);
+        report.finish();
+        return total;
+    }
+
+    /**
+     * A method that checks out each item in a cart, writing them to a report. Every item in
+     * the cart is checked out, even those outside the page of the report.
+     * @param cartNumber
+     * The cart number to check out.
+     * @param report
+     * The report to write the checked out items to. The caller finishes it.
+     * @return
+     * Returns the total price of all items in that cart.
+     */
+    public double checkOut(String cartNumber, ItemReportWriter report) {
+        // The Big-O notation of this method is O(k log k), where k is the number of items in
+        // the cart, because the location index holds them and they only need sorting.
+        return ItemCodes.toDollars(checkOutCents(cartNumber, report));
+    }
+
+    /**
+     * A helper method that checks out each item in a cart.
+     * @param cartNumber
+     * The cart number to check out.
+     * @param report
+     * The report to write the checked out items to, or null for none.
+     * @return
+     * Returns the total price of all items in that cart, in cents.
+     */
+    private long checkOutCents(String cartNumber, ItemReportWriter report) {
+        int cart = checkCart(cartNumber);
+        if (report != null) {
+            report.header();
+        }
+        return checkOutCents(cart, report);
+    }
+
+    /**
+     * A helper method that checks out each item in a cart, passing them to a sink without a
+     * header.
+     * @param cart
+     * The location code of the cart, which must be a cart.
+     * @param rows
+     * The sink to pass the checked out items to, or null for none.
+     * @return
+     * Returns the total price of all items in that cart, in cents.
+     */
+    long checkOutCents(int cart, ItemRowSink rows) {
+        long start = metrics == null ? 0 : System.nanoTime();
+        hydrateLocation(cart);
+        long cents = 0;
+        List<ItemInfo> contents = inListOrder(locationIndex.sortedItemsAt(cart));
+        for (ItemInfo item : contents) {
+            cents += item.getPriceCents();
+            if (rows != null) {
+                rows.item(item);
+            }
+            item.setCurrentLocationCode(ItemCodes.OUT);
+        }
+        if (metrics != null) {
+            metrics.record(ItemListMetrics.Operation.CHECK_OUT, start, contents.size());
+        }
+        return cents;
+    }
+
+    /**
+     * A method that checks out several carts at once, such as every cart still in the store
+     * at closing time.
+     * @param cartNumbers
+     * The cart numbers to check out. Repeated cart numbers are checked out once.
+     * @return
+     * Returns the total of each cart, which matches what <code>checkOut</code> would return.
+     * @throws IllegalArgumentException
+     * Indicates that one of the locations is not a cart number. No cart is checked out then.
+     */
+    public CheckOutReport checkOutAll(Collection<String> cartNumbers) throws IllegalArgumentException {
+        ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+        CheckOutReport totals = checkOutAll(cartNumbers, report);
+        report.finish();
+        return totals;
+    }
+
+    /**
+     * A method that checks out several carts at once, writing the checked out items to a
+     * report in one table, cart by cart in cart number order.
+     * @param cartNumbers
+     * The cart numbers to check out. Repeated cart numbers are checked out once.
+     * @param report
+     * The report to write the checked out items to. The caller finishes it.
+     * @return
+     * Returns the total of each cart, which matches what <code>checkOut</code> would return.
+     * @throws IllegalArgumentException
+     * Indicates that one of the locations is not a cart number. No cart is checked out then.
+     */
+    public CheckOutReport checkOutAll(Collection<String> cartNumbers, ItemReportWriter report) throws IllegalArgumentException {
+        // The Big-O notation of this method is O(k log k), where k is the number of items in
+        // the carts. Each cart is gathered, sorted and totalled in parallel, since that only
+        // reads the indexes, and the items are then moved to out one cart after another.
+        long start = metrics == null ? 0 : System.nanoTime();
+        int[] carts = new int[cartNumbers.size()];
+        int count = 0;
+        for (String cartNumber : cartNumbers) {
+            int cart = ItemCodes.parseCart(cartNumber);
+            if (cart < 0) {
+                throw new IllegalArgumentException("Location must be a cart number.");
+            }
+            carts[count++] = cart;
+        }
+        int[] distinct = Arrays.stream(carts, 0, count).sorted().distinct().toArray();
+        for (int cart : distinct) {
+            hydrateLocation(cart);
+        }
+        List<List<ItemInfo>> contents = Arrays.stream(distinct).parallel()
+                .mapToObj(cart -> inListOrder(locationIndex.sortedItemsAt(cart)))
+                .collect(Collectors.toList());
+        Map<String, Long> totals = new HashMap<>();
+        int items = 0;
+        report.header();
+        for (int i = 0; i < distinct.length; i++) {
+            long cents = 0;
+            for (ItemInfo item : contents.get(i)) {
+                cents += item.getPriceCents();
+                report.item(item);
+                item.setCurrentLocationCode(ItemCodes.OUT);
+            }
+            totals.put(ItemCodes.decodeLocation(distinct[i]), cents);
+            items += contents.get(i).size();
+        }
+        if (metrics != null) {
+            metrics.record(ItemListMetrics.Operation.CHECK_OUT_ALL, start, items);
+        }
+        return new CheckOutReport(totals, items);
+    }
+
+    /**
+     * Gets the session of a cart.
+     * @param cartNumber
+     * The cart number.
+     * @return
+     * Returns the session, or null if the cart holds no items.
+     * @throws IllegalArgumentException
+     * Indicates that <code>cartNumber</code> is not a cart number.
+     */
+    public CartSession cartSession(String cartNumber) throws IllegalArgumentException {
+        // The Big-O notation of this method is O(1) because the location index keeps the
+        // count and subtotal of every cart.
+        int cart = ItemCodes.parseCart(cartNumber);
+        if (cart < 0) {
+            throw new IllegalArgumentException("Location must be a cart number.");
+        }
+        return carts.isOpen(cart) ? sessionOf(cart) : null;
+    }
+
+    /**
+     * Gets the sessions of every cart that holds items.
+     * @return
+     * Returns the sessions in cart number order.
+     */
+    public List<CartSession> openCarts() {
+        List<CartSession> sessions = new ArrayList<>(carts.openCount());
+        for (int cart = ItemCodes.CART_BASE; cart < ItemCodes.OUT; cart++) {
+            if (carts.isOpen(cart)) {
+                sessions.add(sessionOf(cart));
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * A method to empty the carts that have been left behind, putting each of their items
+     * back on its original shelf.
+     * @param policy
+     * Decides which of the open carts to evict.
+     * @return
+     * Returns the sessions of the evicted carts as they were before the eviction, in cart
+     * number order.
+     */
+    public List<CartSession> evictCarts(CartEvictionPolicy policy) {
+        // The Big-O notation of this method is O(c + k log k), where c is the number of carts
+        // and k the number of items in the evicted carts, because the location index holds
+        // the items of each cart.
+        long start = metrics == null ? 0 : System.nanoTime();
+        long now = System.currentTimeMillis();
+        List<CartSession> evicted = new ArrayList<>();
+        int moved = 0;
+        for (int cart = ItemCodes.CART_BASE; cart < ItemCodes.OUT; cart++) {
+            if (!carts.isOpen(cart)) {
+                continue;
+            }
+            CartSession session = sessionOf(cart);
+            if (!policy.shouldEvict(session, now)) {
+                continue;
+            }
+            hydrateLocation(cart);
+            for (ItemInfo item : inListOrder(locationIndex.sortedItemsAt(cart))) {
+                item.setCurrentLocationCode(item.getOriginalLocationCode());
+                moved++;
+            }
+            carts.close(cart);
+            evicted.add(session);
+        }
+        if (metrics != null) {
+            metrics.record(ItemListMetrics.Operation.EVICT_CARTS, start, moved);
+        }
+        return evicted;
+    }
+
+    /**
+     * A helper method to describe the session of an open cart.
+     * @param cart
+     * The location code of the cart.
+     * @return
+     * Returns the session.
+     */
+    private CartSession sessionOf(int cart) {
+        return new CartSession(ItemCodes.decodeLocation(cart), countAt(cart), valueAt(cart), carts.openedAt(cart),
+                carts.lastActivityAt(cart));
+    }
+
+    /**
+     * A helper method to update the session of a cart an item has left, closing it once the
+     * cart is empty.
+     * @param cart
+     * The location code of the cart.
+     */
+    private void cartLeft(int cart) {
+        if (countAt(cart) == 0) {
+            carts.close(cart);
+        }
+        else {
+            carts.touch(cart, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * A method to find the items whose name starts with some text, ignoring case.
+     * @param prefix
+     * The text the names must start with.
+     * @param limit
+     * The largest number of items to return.
+     * @return
+     * Returns up to <code>limit</code> matching items, grouped by name in alphabetical order.
+     */
+    public List<ItemInfo> findByNamePrefix(String prefix, int limit) {
+        // The Big-O notation of this method is O(log d + r), where d is the number of distinct
+        // names and r the number of results, because the name index keeps the names sorted.
+        // While items remain in a catalog image, its names are checked too and the items
+        // with a matching one hydrated.
+        List<ItemInfo> found = new ArrayList<>(Math.min(Math.max(limit, 0), 1024));
+        if (limit > 0) {
+            long start = metrics == null ? 0 : System.nanoTime();
+            String lower = prefix.toLowerCase(Locale.ROOT);
+            hydrateNamed(name -> name.startsWith(lower));
+            nameIndex.findPrefix(prefix, item -> found.add(item) && found.size() < limit);
+            if (metrics != null) {
+                metrics.record(ItemListMetrics.Operation.FIND_BY_NAME, start, found.size());
+            }
+        }
+        return found;
+    }
+
+    /**
+     * A method to find the items whose name contains some text, ignoring case.
+     * @param text
+     * The text the names must contain.
+     * @param limit
+     * The largest number of items to return.
+     * @return
+     * Returns up to <code>limit</code> matching items, grouped by name in alphabetical order.
+     */
+    public List<ItemInfo> findByName(String text, int limit) {
+        // The Big-O notation of this method is O(p log p + r), where p is the number of names
+        // sharing the rarest three letters of the text and r the number of results, because
+        // the name index keeps every three-letter run of every name. While items remain in
+        // a catalog image, its names are checked too and the items with a matching one
+        // hydrated.
+        List<ItemInfo> found = new ArrayList<>(Math.min(Math.max(limit, 0), 1024));
+        if (limit > 0) {
+            long start = metrics == null ? 0 : System.nanoTime();
+            String lower = text.toLowerCase(Locale.ROOT);
+            hydrateNamed(name -> name.contains(lower));
+            nameIndex.findContaining(text, item -> found.add(item) && found.size() < limit);
+            if (metrics != null) {
+                metrics.record(ItemListMetrics.Operation.FIND_BY_NAME, start, found.size());
+            }
+        }
+        return found;
+    }
+
+    /**
+     * A method to print all items whose name contains some text, ignoring case.
+     * @param text
+     * The text the names must contain.
+     */
+    public void printByName(String text) {
+        ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+        printByName(text, report);
+        report.finish();
+    }
+
+    /**
+     * A method to write all items whose name contains some text, ignoring case, to a report.
+     * The search stops once the page of the report is full.
+     * @param text
+     * The text the names must contain.
+     * @param report
+     * The report to write to. The caller finishes it.
+     */
+    public void printByName(String text, ItemReportWriter report) {
+        // The Big-O notation of this method is the same as that of findByName, for the
+        // results that fit on the page of the report.
+        long start = metrics == null ? 0 : System.nanoTime();
+        String lower = text.toLowerCase(Locale.ROOT);
+        hydrateNamed(name -> name.contains(lower));
+        report.header();
+        int[] visited = new int[1];
+        nameIndex.findContaining(text, item -> {
+            visited[0]++;
+            return report.item(item);
+        });
+        if (metrics != null) {
+            metrics.record(ItemListMetrics.Operation.PRINT_BY_NAME, start, visited[0]);
+        }
+    }
+
+    /**
+     * A method to print all items that have the same rfid number.
+     * @param rfid
+     * The rfid of the items.
+     */
+    public void printByRFID(String rfid) {
+        ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+        printByRFID(rfid, report);
+        report.finish();
+    }
+
+    /**
+     * A method to write all items that have the same rfid number to a report.
+     * @param rfid
+     * The rfid of the items.
+     * @param report
+     * The report to write to. The caller finishes it.
+     */
+    public void printByRFID(String rfid, ItemReportWriter report) {
+        // The Big-O notation of this method is O(k) on average, where k is the number of
+        // items sharing the tag, because the rfid index finds them without a traversal.
+        long start = metrics == null ? 0 : System.nanoTime();
+        long tag = ItemCodes.parseTag(rfid);
+        if (tag < 0) {
+            throw new IllegalArgumentException("RFID must be a 9-character hexadecimal string including 0 - 9 or A - F.");
+        }
+        hydrateTag(tag);
+        report.header();
+        report.setCurrentFirst(true);
+        int visited = 0;
+        for (ItemInfoNode current = rfidIndex.get(tag); current != null && current.getData().getRfidTag() == tag; current = current.getNext()) {
+            visited++;
+            if (!report.item(current.getData())) {
+                break;
+            }
+        }
+        if (metrics != null) {
+            metrics.record(ItemListMetrics.Operation.PRINT_BY_RFID, start, visited);
+        }
+    }
+
+    /**
+     * Keeps the location index up to date whenever an item in this list changes location.
+     * @param item
+     * The item that moved.
+     * @param oldLocation
+     * The location code the item was in before the move.
+     * @param newLocation
+     * The location code the item is in now.
+     */
+    public void locationChanged(ItemInfo item, int oldLocation, int newLocation) {
+        if (newLocation == ItemCodes.OUT) {
+            // Purchased items from the image went out before this one.
+            hydrateLocation(ItemCodes.OUT);
+        }
+        locationIndex.move(item, oldLocation);
+        if (ItemCodes.isCart(oldLocation)) {
+            cartLeft(oldLocation);
+        }
+        if (ItemCodes.isCart(newLocation)) {
+            carts.touch(newLocation, System.currentTimeMillis());
+        }
+        publish(ItemEventType.MOVED, item, oldLocation, newLocation);
+        updateGauges();
+    }
+
+    /**
+     * Keeps the misplaced items of the location index up to date whenever an item in this
+     * list is given a new original location.
+     * @param item
+     * The item whose original location changed.
+     * @param oldShelf
+     * The original location code of the item before the change.
+     * @param newShelf
+     * The original location code of the item now.
+     */
+    public void originalLocationChanged(ItemInfo item, int oldShelf, int newShelf) {
+        locationIndex.originalLocationChanged(item);
+        publish(ItemEventType.RELOCATED, item, oldShelf);
+        updateGauges();
+    }
+
+    /**
+     * Keeps the running totals of the location index up to date whenever an item in this
+     * list changes price.
+     * @param item
+     * The item whose price changed.
+     * @param oldCents
+     * The price of the item in cents before the change.
+     * @param newCents
+     * The price of the item in cents now.
+     */
+    public void priceChanged(ItemInfo item, long oldCents, long newCents) {
+        locationIndex.priceChanged(item, oldCents);
+        publish(ItemEventType.REPRICED, item, oldCents);
+    }
+
+    /**
+     * Keeps the name index up to date whenever an item in this list is renamed.
+     * @param item
+     * The item that was renamed.
+     * @param oldNameId
+     * The name id of the item before the change.
+     * @param newNameId
+     * The name id of the item now.
+     */
+    public void nameChanged(ItemInfo item, int oldNameId, int newNameId) {
+        nameIndex.rename(item, oldNameId);
+        publish(ItemEventType.RENAMED, item, oldNameId);
+    }
+
+    /**
+     * Files an item of this list under its new rfid number, whenever it is given one. The
+     * item goes in front of any other item with the new number, as a newly inserted item
+     * would.
+     * @param item
+     * The item that was given a new rfid number.
+     * @param oldTag
+     * The packed rfid tag of the item before the change.
+     * @param newTag
+     * The packed rfid tag of the item now.
+     */
+    public void rfidChanged(ItemInfo item, long oldTag, long newTag) {
+        // The Big-O notation of this method is O(log n) expected, plus the number of items
+        // sharing either tag.
+        ItemInfoNode node = nodeOf(item, oldTag);
+        rfidIndex.remove(oldTag, node);
+        items.remove(node, oldTag);
+        hydrateTag(newTag);
+        rfidIndex.add(newTag, node);
+        items.insert(node);
+        publish(ItemEventType.RETAGGED, item, oldTag);
+    }
+
+    /**
+     * A helper method to publish a change to an item, if events are enabled.
+     * @param type
+     * The kind of change.
+     * @param item
+     * The item that changed.
+     * @param from
+     * The location code the item left, or <code>ItemEvent.NO_LOCATION</code>.
+     * @param to
+     * The location code the item arrived at, or <code>ItemEvent.NO_LOCATION</code>.
+     */
+    private void publish(ItemEventType type, ItemInfo item, int from, int to) {
+        if (events != null) {
+            events.publish(type, item.getRfidTag(), item.getNameId(), item.getOriginalLocationCode(), from, to, item.getPriceCents(), 0);
+        }
+    }
+
+    /**
+     * A helper method to publish a change to the name, price, original location or rfid
+     * number of an item where it is, if events are enabled.
+     * @param type
+     * The kind of change.
+     * @param item
+     * The item that changed.
+     * @param previous
+     * The value the changed field had before.
+     */
+    private void publish(ItemEventType type, ItemInfo item, long previous) {
+        if (events != null) {
+            int location = item.getCurrentLocationCode();
+            events.publish(type, item.getRfidTag(), item.getNameId(), item.getOriginalLocationCode(), location, location, item.getPriceCents(), previous);
+        }
+    }
+
+    /**
+     * A helper method for replaying events to find the node of the item an event is about.
+     * @param tag
+     * The packed rfid tag of the item.
+     * @param location
+     * The location code the item is in.
+     * @param originalLocation
+     * The original location code of the item.
+     * @param nameId
+     * The name id of the item.
+     * @param priceCents
+     * The price of the item in cents.
+     * @return
+     * Returns the first node in list order whose item has the tag, name, price and original
+     * location and is at the location, or null if there is none.
+     */
+    ItemInfoNode nodeFor(long tag, int location, int originalLocation, int nameId, long priceCents) {
+        hydrateTag(tag);
+        for (ItemInfoNode node = rfidIndex.get(tag); node != null && node.getData().getRfidTag() == tag; node = node.getNext()) {
+            ItemInfo item = node.getData();
+            if (item.getCurrentLocationCode() == location && item.getOriginalLocationCode() == originalLocation
+                    && item.getNameId() == nameId && item.getPriceCents() == priceCents) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A method to turn every item still in the catalog image into an item of the list, after
+     * which the list no longer reads the image. Nothing needs this, since every operation
+     * hydrates the items it needs, but it can be called ahead of time to take the cost at a
+     * convenient moment.
+     */
+    public void hydrateAll() {
+        // The Big-O notation of this method is O(c log c + n) for the c items still in the
+        // image, because they are read in order and merged with the list in one pass.
+        hydrateLocation(ItemCodes.OUT);
+        ColdCatalog pending = cold;
+        if (pending == null) {
+            return;
+        }
+        int[] records = new int[pending.size()];
+        int count = 0;
+        for (int r = pending.next(0); r >= 0; r = pending.next(r + 1)) {
+            records[count++] = r;
+        }
+        hydrate(records, null);
+    }
+
+    /**
+     * A helper method to hydrate the items of the image that have an rfid tag.
+     * @param tag
+     * The packed rfid tag.
+     */
+    private void hydrateTag(long tag) {
+        // The Big-O notation of this method is O(log n + k) for the k items sharing the tag.
+        if (cold != null) {
+            hydrate(cold.recordsOfTag(tag), null);
+        }
+    }
+
+    /**
+     * A helper method to hydrate the items of the image at a location, along with the items
+     * sharing their rfid tags.
+     * @param location
+     * The location code.
+     */
+    private void hydrateLocation(int location) {
+        // The Big-O notation of this method is O(k log n) for the k items at the location.
+        if (cold == null || cold.countAt(location) == 0) {
+            return;
+        }
+        int[] atLocation = cold.recordsAt(location);
+        hydrate(cold.withTags(atLocation), location == ItemCodes.OUT ? atLocation : null);
+    }
+
+    /**
+     * A helper method to hydrate the misplaced items of the image, along with the items
+     * sharing their rfid tags, so that the location index holds every misplaced item.
+     */
+    private void hydrateMisplaced() {
+        // The Big-O notation of this method is O(c + k log n) for the c items still in the
+        // image and the k of them that are misplaced, and O(1) when none of them are.
+        if (cold != null && cold.misplacedCount() > 0) {
+            hydrate(cold.withTags(cold.misplacedRecords()), null);
+        }
+    }
+
+    /**
+     * A helper method to hydrate the items of the image with a matching name, along with the
+     * items sharing their rfid tags, so that the name index holds every match.
+     * @param matches
+     * Receives the lower case form of each name, and returns whether it matches.
+     */
+    private void hydrateNamed(Predicate<String> matches) {
+        // The Big-O notation of this method is O(d + k log n) for the d distinct names in the
+        // image and the k items with a matching name.
+        if (cold != null) {
+            hydrate(cold.withTags(cold.recordsNamed(matches)), null);
+        }
+    }
+
+    /**
+     * A helper method to read records of the image into the list. No events are published,
+     * since the items were already in the list the image was written from.
+     * @param records
+     * The records to hydrate, in increasing order. Every record sharing a tag with one of
+     * them must be hydrated already or be among them.
+     * @param outOrder
+     * The records of the items that are out, in the order they went out, when they are being
+     * hydrated, or null otherwise.
+     */
+    private void hydrate(int[] records, int[] outOrder) {
+        if (outOrder == null && cold.countAt(ItemCodes.OUT) > 0) {
+            for (int r : records) {
+                if (cold.locationOf(r) == ItemCodes.OUT) {
+                    hydrateLocation(ItemCodes.OUT);
+                    records = Arrays.stream(records).filter(record -> cold != null && !cold.isHydrated(record)).toArray();
+                    break;
+                }
+            }
+        }
+        if (records.length == 0) {
+            return;
+        }
+        List<ItemInfoNode> sorted = new ArrayList<>(records.length);
+        Map<Integer, ItemInfo> purchased = outOrder == null ? null : new HashMap<>();
+        for (int r : records) {
+            ItemInfo item = cold.take(r);
+            if (purchased != null && item.getCurrentLocationCode() == ItemCodes.OUT) {
+                purchased.put(r, item);
+            }
+            else {
+                locationIndex.add(item);
+            }
+            ItemInfoNode node = new ItemInfoNode();
+            node.setData(item);
+            sorted.add(node);
+        }
+        if (purchased != null) {
+            for (int r : outOrder) {
+                locationIndex.add(purchased.get(r));
+            }
+        }
+        linkNodes(sorted);
+        if (cold.size() == 0) {
+            // Let go of the image once every item of it has been hydrated.
+            cold = null;
+        }
+    }
+
+    /**
+     * A helper method to put items that share an rfid tag number back into the order they
+     * have in the list, since the location index only sorts them by tag.
+     * @param sorted
+     * Items sorted by rfid tag number. The list is reordered in place.
+     * @return
+     * Returns the same list, now in list order.
+     */
+    private List<ItemInfo> inListOrder(List<ItemInfo> sorted) {
+        int start = 0;
+        while (start < sorted.size()) {
+            int end = start + 1;
+            while (end < sorted.size() && sorted.get(end).compareTo(sorted.get(start)) == 0) {
+                end++;
+            }
+            if (end - start > 1) {
+                List<ItemInfo> run = new ArrayList<>(sorted.subList(start, end));
+                int next = start;
+                long tag = run.get(0).getRfidTag();
+                for (ItemInfoNode node = rfidIndex.get(tag); node != null && node.getData().getRfidTag() == tag; node = node.getNext()) {
+                    for (ItemInfo item : run) {
+                        if (node.getData() == item) {
+                            sorted.set(next++, item);
+                            break;
+                        }
+                    }
+                }
+            }
+            start = end;
+        }
+        return sorted;
+    }
+
+    /**
+     * A helper method to find the node holding an item.
+     * @param item
+     * The item to find.
+     * @return
+     * Returns the node holding the item, or null if it is not in this list.
+     */
+    private ItemInfoNode nodeOf(ItemInfo item) {
+        return nodeOf(item, item.getRfidTag());
+    }
+
+    /**
+     * A helper method to find the node holding an item among the nodes filed under a tag.
+     * @param item
+     * The item to find.
+     * @param tag
+     * The packed rfid tag the node is filed under.
+     * @return
+     * Returns the node holding the item, or null if it is not in this list.
+     */
+    private ItemInfoNode nodeOf(ItemInfo item, long tag) {
+        for (ItemInfoNode node = rfidIndex.get(tag); node != null && (node.getData() == item || node.getData().getRfidTag() == tag); node = node.getNext()) {
+            if (node.getData() == item) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A method to print a neat table.
+     * @return
+     * Returns a table to show all the items.
+     */
+    public String toString() {
+        return tableHeader();
+    }
+
+    /**
+     * A helper method to build the header of the item table, shared by every store.
+     * @return
+     * Returns the header of the item table.
+     */
+    static String tableHeader() {
+        return ItemReportWriter.TABLE_HEADER;
     }
 }
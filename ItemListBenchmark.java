@@ -0,0 +1,456 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The <code>ItemListBenchmark</code> class measures every item store operation at realistic
+ * sizes and writes the results in a machine readable form, so that regressions can be caught
+ * and backing stores compared side by side.
+ * <p>
+ * For each store and size it times <code>insertInfo</code> with random and with sorted tags,
+ * then <code>moveItem</code>, <code>printByLocation</code>, <code>checkOut</code>,
+ * <code>cleanStore</code> and <code>removeAllPurchased</code> against the filled store. Each
+ * result is the average time per operation together with the bytes allocated per operation
+ * by the benchmark thread. A short warmup run at the smallest size comes first so the
+ * measured runs are compiled code.
+ * <p>
+ * Once per size it also compares checking the arguments of a move with the regular
+ * expressions the stores used to use against the <code>ItemCodes</code> parsers, under the
+ * store name codes.
+ * <p>
+ * The startup store measures restarting instead: how long it takes from nothing to the
+ * first checkout when the list is read back from an <code>ItemSnapshot</code>, against
+ * opening a <code>CatalogImage</code> of the same list. Both files have just been written,
+ * so they are read from the page cache.
+ * <p>
+ * The clean store measures putting misplaced items back: <code>planRestock</code> with one
+ * thread and then with twice as many each time up to the number of processors, so the
+ * speedup per core can be read off, followed by the serial <code>cleanStore</code> and
+ * <code>cleanStoreParallel</code> on copies of the same list.
+ * <p>
+ * Usage: <code>java ItemListBenchmark [--sizes 10000,1000000,10000000]
+ * [--stores list,concurrent,sharded,columnar,startup,clean] [--format json|csv] [--out file]</code>
+ */
+public class ItemListBenchmark {
+    private static final int SHELVES = 1000;
+    private static final int CARTS = 200;
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static PrintStream console = System.out;
+    private static List<String[]> results = new ArrayList<>();
+    private static long sink;
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = {10000, 1000000, 10000000};
+        String[] stores = {"list", "concurrent", "columnar"};
+        String format = "json";
+        String outFile = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--sizes":
+                    sizes = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--stores":
+                    stores = args[i + 1].split(",");
+                    break;
+                case "--format":
+                    format = args[i + 1];
+                    break;
+                case "--out":
+                    outFile = args[i + 1];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i] + ".");
+            }
+        }
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (String store : stores) {
+                if (store.equals("startup")) {
+                    runStartup(Math.min(sizes[0], 10000), false);
+                }
+                else if (store.equals("clean")) {
+                    runClean(Math.min(sizes[0], 10000), false);
+                }
+                else {
+                    run(store, Math.min(sizes[0], 10000), false);
+                }
+            }
+            results.clear();
+            runValidation(Math.min(sizes[0], 10000));
+            results.clear();
+            for (int size : sizes) {
+                runValidation(size);
+                for (String store : stores) {
+                    if (store.equals("startup")) {
+                        runStartup(size, true);
+                    }
+                    else if (store.equals("clean")) {
+                        runClean(size, true);
+                    }
+                    else {
+                        run(store, size, true);
+                    }
+                }
+            }
+        }
+        finally {
+            System.setOut(console);
+        }
+        String report = format.equals("csv") ? toCsv() : toJson();
+        if (outFile != null) {
+            Files.writeString(Path.of(outFile), report);
+            console.println("Wrote " + results.size() + " results to " + outFile + ".");
+        }
+        else {
+            console.print(report);
+        }
+    }
+
+    /**
+     * A helper method to run every operation against one store at one size.
+     * @param kind
+     * The store to measure: list, concurrent, sharded or columnar.
+     * @param size
+     * The number of items to fill the store with.
+     * @param report
+     * Whether to print progress to the console.
+     */
+    private static void run(String kind, int size, boolean report) throws IOException {
+        Random random = new Random(size);
+        long[] tags = new long[size];
+        for (int i = 0; i < size; i++) {
+            tags[i] = i * 16L + random.nextInt(16);
+        }
+        String[] tagText = new String[size];
+        String[] shelfText = new String[size];
+        for (int i = 0; i < size; i++) {
+            tagText[i] = ItemCodes.formatTag(tags[i]);
+            shelfText[i] = ItemCodes.decodeLocation(i % SHELVES);
+        }
+        int[] shuffled = shuffledIndexes(size, random);
+
+        ItemStore sorted = newStore(kind);
+        measure(kind, size, "insertInfo.sorted", size, () -> {
+            for (int i = 0; i < size; i++) {
+                sorted.insertInfo("item" + (i & 1023), tagText[i], 9.99, shelfText[i]);
+            }
+        });
+        close(sorted);
+        ItemStore store = newStore(kind);
+        measure(kind, size, "insertInfo.random", size, () -> {
+            for (int i : shuffled) {
+                store.insertInfo("item" + (i & 1023), tagText[i], 9.99, shelfText[i]);
+            }
+        });
+
+        int moves = Math.min(size, 100000);
+        measure(kind, size, "moveItem", moves * 2, () -> {
+            for (int m = 0; m < moves; m++) {
+                int i = shuffled[m];
+                store.moveItem(tagText[i], shelfText[i], shelfText[(i + 1) % size]);
+            }
+            for (int m = 0; m < moves; m++) {
+                int i = shuffled[m];
+                store.moveItem(tagText[i], shelfText[(i + 1) % size], shelfText[i]);
+            }
+        });
+
+        int queries = 200;
+        measure(kind, size, "printByLocation", queries, () -> {
+            for (int q = 0; q < queries; q++) {
+                store.printByLocation(ItemCodes.decodeLocation(q % SHELVES));
+            }
+        });
+
+        int carted = Math.min(size / 10, 20000);
+        for (int m = 0; m < carted; m++) {
+            int i = shuffled[m];
+            store.moveItem(tagText[i], shelfText[i], ItemCodes.decodeLocation(ItemCodes.CART_BASE + m % CARTS));
+        }
+        measure(kind, size, "checkOut", CARTS, () -> {
+            for (int c = 0; c < CARTS; c++) {
+                store.checkOut(ItemCodes.decodeLocation(ItemCodes.CART_BASE + c));
+            }
+        });
+
+        int misplaced = Math.min(size / 10, 20000);
+        for (int m = carted; m < carted + misplaced && m < size; m++) {
+            int i = shuffled[m];
+            store.moveItem(tagText[i], shelfText[i], shelfText[(i + 1) % size]);
+        }
+        measure(kind, size, "cleanStore", 1, store::cleanStore);
+        measure(kind, size, "removeAllPurchased", 1, store::removeAllPurchased);
+        close(store);
+        if (report) {
+            console.println("Finished " + kind + " at " + size + " items.");
+        }
+    }
+
+    /**
+     * A helper method to time starting a list from a snapshot and from a catalog image, up to
+     * and including the first checkout.
+     * @param size
+     * The number of items in the saved list.
+     * @param report
+     * Whether to print progress to the console.
+     */
+    private static void runStartup(int size, boolean report) throws IOException {
+        Random random = new Random(size);
+        long[] tags = new long[size];
+        List<ItemInfo> saved = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int shelf = i % SHELVES;
+            tags[i] = i * 16L + random.nextInt(16);
+            saved.add(new ItemInfo(NameDictionary.idOf("item" + (i & 1023)), tags[i], shelf, shelf, 999));
+        }
+        ItemList list = new ItemList();
+        list.restore(saved);
+        saved = null;
+        int carted = Math.min(size / 10, 20000);
+        for (int m = 0; m < carted; m++) {
+            int i = random.nextInt(size);
+            list.moveItem(ItemCodes.formatTag(tags[i]), ItemCodes.decodeLocation(i % SHELVES),
+                    ItemCodes.decodeLocation(ItemCodes.CART_BASE + m % CARTS));
+        }
+        list.checkOut(ItemCodes.decodeLocation(ItemCodes.CART_BASE + CARTS - 1));
+        Path snapshot = Files.createTempFile("bench", ".snapshot");
+        Path image = Files.createTempFile("bench", ".image");
+        snapshot.toFile().deleteOnExit();
+        image.toFile().deleteOnExit();
+        ItemSnapshot.write(snapshot, list, 0);
+        CatalogImage.write(image, list);
+        list = null;
+        String cart = ItemCodes.decodeLocation(ItemCodes.CART_BASE);
+
+        ItemList[] restarted = new ItemList[1];
+        measure("startup", size, "snapshot.open", 1, () -> {
+            restarted[0] = new ItemList();
+            restarted[0].restore(read(snapshot).getItems());
+        });
+        restarted[0] = null;
+        measure("startup", size, "snapshot.firstCheckOut", 1, () -> {
+            restarted[0] = new ItemList();
+            restarted[0].restore(read(snapshot).getItems());
+            sink += (long) restarted[0].checkOut(cart);
+        });
+        restarted[0] = null;
+        measure("startup", size, "image.open", 1, () -> restarted[0] = new ItemList(open(image)));
+        restarted[0] = null;
+        measure("startup", size, "image.firstCheckOut", 1, () -> {
+            restarted[0] = new ItemList(open(image));
+            sink += (long) restarted[0].checkOut(cart);
+        });
+        measure("startup", size, "image.hydrateAll", 1, restarted[0]::hydrateAll);
+        restarted[0] = null;
+        if (report) {
+            console.println("Finished startup at " + size + " items.");
+        }
+    }
+
+    /**
+     * A helper method to time finding and putting back misplaced items, first planning with
+     * more and more threads and then cleaning serially and in parallel.
+     * @param size
+     * The number of items in the list, a tenth of which are misplaced.
+     * @param report
+     * Whether to print progress to the console.
+     */
+    private static void runClean(int size, boolean report) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        ItemList list = misplacedList(size);
+        int misplaced = list.misplacedCount();
+        for (int threads = 1; ; threads = Math.min(threads * 2, processors)) {
+            int parallelism = threads;
+            measure("clean", size, "planRestock.threads" + parallelism, misplaced,
+                    () -> sink += list.planRestock(parallelism).getMoveCount());
+            if (threads == processors) {
+                break;
+            }
+        }
+        measure("clean", size, "cleanStore", misplaced, list::cleanStore);
+        ItemList copy = misplacedList(size);
+        measure("clean", size, "cleanStoreParallel.threads" + processors, misplaced,
+                () -> sink += copy.cleanStoreParallel(processors).getMoveCount());
+        if (report) {
+            console.println("Finished clean at " + size + " items.");
+        }
+    }
+
+    /**
+     * A helper method to build a list in which every tenth item is on the wrong shelf.
+     * @param size
+     * The number of items.
+     * @return
+     * Returns the list. The same size always gives the same list.
+     */
+    private static ItemList misplacedList(int size) {
+        Random random = new Random(size);
+        List<ItemInfo> saved = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int shelf = i % SHELVES;
+            int current = random.nextInt(10) == 0 ? random.nextInt(SHELVES) : shelf;
+            saved.add(new ItemInfo(NameDictionary.idOf("item" + (i & 1023)), i * 16L + random.nextInt(16), shelf, current, 999));
+        }
+        ItemList list = new ItemList();
+        list.restore(saved);
+        return list;
+    }
+
+    private static ItemSnapshot read(Path snapshot) {
+        try {
+            return ItemSnapshot.read(snapshot);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static CatalogImage open(Path image) {
+        try {
+            return CatalogImage.open(image);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A helper method to time checking the arguments of a move, first with regular
+     * expressions and then with the <code>ItemCodes</code> parsers.
+     * @param size
+     * The number of moves to check.
+     */
+    private static void runValidation(int size) {
+        Random random = new Random(size);
+        String[] tagText = new String[size];
+        String[] locationText = new String[size];
+        for (int i = 0; i < size; i++) {
+            tagText[i] = ItemCodes.formatTag(i * 16L + random.nextInt(16));
+            locationText[i] = ItemCodes.decodeLocation(i % 2 == 0 ? i % SHELVES : ItemCodes.CART_BASE + i % CARTS);
+        }
+        measure("codes", size, "validate.regex", size, () -> {
+            long valid = 0;
+            for (int i = 0; i < size; i++) {
+                String source = locationText[i];
+                String dest = locationText[(i + 1) % size];
+                if (tagText[i].matches("[0-9A-Fa-f]{9}")
+                        && (source.matches("s\\d{5}") || source.matches("c\\d{3}"))
+                        && (dest.matches("s\\d{5}") || dest.matches("c\\d{3}") || dest.equalsIgnoreCase("out"))) {
+                    valid++;
+                }
+            }
+            sink += valid;
+        });
+        measure("codes", size, "validate.parse", size, () -> {
+            long valid = 0;
+            for (int i = 0; i < size; i++) {
+                int source = ItemCodes.parseLocation(locationText[i]);
+                if (ItemCodes.parseTag(tagText[i]) >= 0
+                        && source >= 0 && source != ItemCodes.OUT
+                        && ItemCodes.parseLocation(locationText[(i + 1) % size]) >= 0) {
+                    valid++;
+                }
+            }
+            sink += valid;
+        });
+    }
+
+    /**
+     * A helper method to time a block of operations and record the result.
+     * @param store
+     * The store being measured.
+     * @param size
+     * The size of the store.
+     * @param operation
+     * The name of the operation.
+     * @param count
+     * The number of operations the block runs.
+     * @param block
+     * The operations to time.
+     */
+    private static void measure(String store, int size, String operation, int count, Runnable block) {
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        block.run();
+        long elapsed = System.nanoTime() - start;
+        long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        results.add(new String[] {store, Integer.toString(size), operation, Integer.toString(count),
+                String.format("%.1f", elapsed / (double) count), String.format("%.1f", allocated / (double) count)});
+    }
+
+    private static ItemStore newStore(String kind) throws IOException {
+        switch (kind) {
+            case "list":
+                return new ItemList();
+            case "concurrent":
+                return new ConcurrentItemList();
+            case "sharded":
+                return new ShardedItemList(Runtime.getRuntime().availableProcessors());
+            case "columnar":
+                File file = File.createTempFile("bench", ".items");
+                file.delete();
+                file.deleteOnExit();
+                new File(file.getPath() + ".names").deleteOnExit();
+                return new ColumnarItemList(file.getPath());
+            default:
+                throw new IllegalArgumentException("Unknown store " + kind + ".");
+        }
+    }
+
+    private static void close(ItemStore store) throws IOException {
+        if (store instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) store).close();
+            }
+            catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private static int[] shuffledIndexes(int size, Random random) {
+        int[] indexes = new int[size];
+        for (int i = 0; i < size; i++) {
+            indexes[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = indexes[i];
+            indexes[i] = indexes[j];
+            indexes[j] = swap;
+        }
+        return indexes;
+    }
+
+    private static String toCsv() {
+        StringBuilder csv = new StringBuilder("store,size,operation,operations,nsPerOp,bytesPerOp\n");
+        for (String[] result : results) {
+            csv.append(String.join(",", result)).append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static String toJson() {
+        StringBuilder json = new StringBuilder("[\n");
+        for (int i = 0; i < results.size(); i++) {
+            String[] r = results.get(i);
+            json.append(String.format("  {\"store\": \"%s\", \"size\": %s, \"operation\": \"%s\", \"operations\": %s, "
+                    + "\"nsPerOp\": %s, \"bytesPerOp\": %s}", r[0], r[1], r[2], r[3], r[4], r[5]));
+            json.append(i + 1 < results.size() ? ",\n" : "\n");
+        }
+        return json.append("]\n").toString();
+    }
+}
@@ -0,0 +1,330 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The <code>ItemListMetrics</code> class measures an <code>ItemList</code>: how many times each
+ * operation ran, how long it took, and how many nodes or items it went through, along with
+ * gauges of how many items the list holds and how many are misplaced or out.
+ * <p>
+ * A list only measures itself once it is given a metrics object with <code>setMetrics</code>,
+ * and until then its operations skip the clock entirely. Recording uses atomic counters and
+ * a <code>LatencyHistogram</code> per operation, so it takes no locks. The gauges are volatile
+ * copies that the list updates whenever an item is added, removed or moved, so reading them
+ * from another thread, such as a JMX client or the export, never touches the list itself.
+ * Each gauge is exact as of the last change, though the three may be one change apart.
+ * <p>
+ * The numbers can be read directly, written as a snapshot, appended to a file every so often
+ * with <code>exportTo</code>, or published as a JMX MBean with <code>register</code>.
+ */
+public class ItemListMetrics implements ItemListMetricsMBean {
+    /**
+     * The operations that are measured, named after the <code>ItemList</code> methods.
+     */
+    public enum Operation {
+        INSERT_INFO("insertInfo"),
+        BULK_LOAD("bulkLoad"),
+        MOVE_ITEM("moveItem"),
+        PRINT_ALL("printAll"),
+        PRINT_BY_LOCATION("printByLocation"),
+        PRINT_BY_RFID("printByRFID"),
+        FIND_BY_NAME("findByName"),
+        PRINT_BY_NAME("printByName"),
+        FOR_EACH("forEach"),
+        RESTORE("restore"),
+        APPLY_BATCH("applyBatch"),
+        CLEAN_STORE("cleanStore"),
+        CLEAN_STORE_PARALLEL("cleanStoreParallel"),
+        PLAN_RESTOCK("planRestock"),
+        APPLY_RESTOCK("applyRestock"),
+        CHECK_OUT("checkOut"),
+        CHECK_OUT_ALL("checkOutAll"),
+        EVICT_CARTS("evictCarts"),
+        REMOVE_ALL_PURCHASED("removeAllPurchased"),
+        PURGE_PURCHASED("purgePurchased");
+
+        private final String method;
+
+        Operation(String method) {
+            this.method = method;
+        }
+
+        /**
+         * Gets the name of the <code>ItemList</code> method this operation measures.
+         * @return
+         * Returns the method name.
+         */
+        public String getMethod() {
+            return method;
+        }
+    }
+
+    private final LatencyHistogram[] latencies;
+    private final AtomicLong[] nodes;
+    private volatile int itemCount;
+    private volatile int misplacedCount;
+    private volatile int outCount;
+
+    /**
+     * Default constructor for creating empty metrics. A list has to be given them with
+     * <code>setMetrics</code> before they measure anything.
+     */
+    public ItemListMetrics() {
+        int operations = Operation.values().length;
+        this.latencies = new LatencyHistogram[operations];
+        this.nodes = new AtomicLong[operations];
+        for (int i = 0; i < operations; i++) {
+            latencies[i] = new LatencyHistogram();
+            nodes[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Records one run of an operation.
+     * @param operation
+     * The operation that ran.
+     * @param startNanos
+     * The value of <code>System.nanoTime</code> when it started.
+     * @param nodesVisited
+     * The number of nodes or items it went through.
+     */
+    public void record(Operation operation, long startNanos, long nodesVisited) {
+        latencies[operation.ordinal()].record(System.nanoTime() - startNanos);
+        nodes[operation.ordinal()].getAndAdd(nodesVisited);
+    }
+
+    /**
+     * Updates the gauges after a change to the list.
+     * @param items
+     * The number of items in the list.
+     * @param misplaced
+     * The number of misplaced items.
+     * @param out
+     * The number of items that are out.
+     */
+    void updateGauges(int items, int misplaced, int out) {
+        itemCount = items;
+        misplacedCount = misplaced;
+        outCount = out;
+    }
+
+    /**
+     * Gets the latency histogram of an operation.
+     * @param operation
+     * The operation.
+     * @return
+     * Returns the histogram of its durations in nanoseconds.
+     */
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    /**
+     * Gets the number of items in the list.
+     * @return
+     * Returns the number of items.
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Gets the number of items on a shelf other than their original one.
+     * @return
+     * Returns the number of misplaced items.
+     */
+    public int getMisplacedCount() {
+        return misplacedCount;
+    }
+
+    /**
+     * Gets the number of purchased items still in the list.
+     * @return
+     * Returns the number of items that are out.
+     */
+    public int getOutCount() {
+        return outCount;
+    }
+
+    /**
+     * Gets the names of the measured operations.
+     * @return
+     * Returns the method names, in a fixed order.
+     */
+    public String[] getOperations() {
+        Operation[] operations = Operation.values();
+        String[] names = new String[operations.length];
+        for (int i = 0; i < operations.length; i++) {
+            names[i] = operations[i].getMethod();
+        }
+        return names;
+    }
+
+    /**
+     * Gets how many times an operation ran.
+     * @param operation
+     * The method name of the operation.
+     * @return
+     * Returns the number of runs.
+     */
+    public long getCount(String operation) {
+        return latencies[find(operation).ordinal()].getCount();
+    }
+
+    /**
+     * Gets how many nodes or items an operation went through in all its runs.
+     * @param operation
+     * The method name of the operation.
+     * @return
+     * Returns the number of nodes visited.
+     */
+    public long getNodesVisited(String operation) {
+        return nodes[find(operation).ordinal()].get();
+    }
+
+    /**
+     * Gets the mean duration of an operation.
+     * @param operation
+     * The method name of the operation.
+     * @return
+     * Returns the mean in nanoseconds.
+     */
+    public double getMeanNanos(String operation) {
+        return latencies[find(operation).ordinal()].getMean();
+    }
+
+    /**
+     * Gets a percentile of the duration of an operation.
+     * @param operation
+     * The method name of the operation.
+     * @param percentile
+     * The percentage, from 0 to 100.
+     * @return
+     * Returns the percentile in nanoseconds.
+     */
+    public long getPercentileNanos(String operation, double percentile) {
+        return latencies[find(operation).ordinal()].getPercentile(percentile);
+    }
+
+    /**
+     * Gets the longest duration of an operation.
+     * @param operation
+     * The method name of the operation.
+     * @return
+     * Returns the longest duration in nanoseconds.
+     */
+    public long getMaxNanos(String operation) {
+        return latencies[find(operation).ordinal()].getMax();
+    }
+
+    /**
+     * Gets every metric as one line of JSON: the time, the gauges, and the count, nodes
+     * visited, mean, percentiles and maximum of each operation that has run.
+     * @return
+     * Returns the snapshot.
+     */
+    public String getSnapshot() {
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\"timeMillis\":").append(System.currentTimeMillis());
+        json.append(",\"items\":").append(getItemCount());
+        json.append(",\"misplaced\":").append(getMisplacedCount());
+        json.append(",\"out\":").append(getOutCount());
+        json.append(",\"operations\":{");
+        boolean first = true;
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram latency = latencies[operation.ordinal()];
+            if (latency.getCount() == 0) {
+                continue;
+            }
+            json.append(first ? "" : ",").append('"').append(operation.getMethod()).append("\":{");
+            json.append("\"count\":").append(latency.getCount());
+            json.append(",\"nodes\":").append(nodes[operation.ordinal()].get());
+            json.append(",\"meanNanos\":").append(Math.round(latency.getMean()));
+            json.append(",\"p50Nanos\":").append(latency.getPercentile(50));
+            json.append(",\"p90Nanos\":").append(latency.getPercentile(90));
+            json.append(",\"p99Nanos\":").append(latency.getPercentile(99));
+            json.append(",\"p999Nanos\":").append(latency.getPercentile(99.9));
+            json.append(",\"maxNanos\":").append(latency.getMax()).append('}');
+            first = false;
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * Publishes these metrics on the platform MBean server.
+     * @param name
+     * The name to register them under, such as "main".
+     * @return
+     * Returns the object name they were registered with.
+     * @throws IllegalStateException
+     * Indicates that the MBean could not be registered, for example because the name is
+     * already taken.
+     */
+    public ObjectName register(String name) {
+        try {
+            ObjectName objectName = new ObjectName("DepartmentStore:type=ItemListMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        }
+        catch (JMException e) {
+            throw new IllegalStateException("Metrics could not be registered as " + name + ".", e);
+        }
+    }
+
+    /**
+     * Starts appending a snapshot to a file at a fixed rate, one JSON object per line.
+     * @param file
+     * The file to append to. It is created if it does not exist.
+     * @param period
+     * The time between snapshots.
+     * @param unit
+     * The unit of <code>period</code>.
+     * @return
+     * Returns a handle that stops the export when closed.
+     */
+    public Closeable exportTo(Path file, long period, TimeUnit unit) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "item-metrics-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> {
+            try {
+                Files.writeString(file, getSnapshot() + "\n", StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            catch (IOException e) {
+                // Keep exporting; the next snapshot may succeed once the disk has room.
+            }
+        }, period, period, unit);
+        return executor::shutdown;
+    }
+
+    /**
+     * A helper method to look up an operation by its method name.
+     * @param operation
+     * The method name.
+     * @return
+     * Returns the operation.
+     * @throws IllegalArgumentException
+     * Indicates that no operation has that name.
+     */
+    private static Operation find(String operation) {
+        for (Operation candidate : Operation.values()) {
+            if (candidate.getMethod().equals(operation)) {
+                return candidate;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation " + operation + ".");
+    }
+}
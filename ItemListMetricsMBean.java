@@ -0,0 +1,88 @@
+/**
+ * The <code>ItemListMetricsMBean</code> interface is the JMX view of an
+ * <code>ItemListMetrics</code>. Operations are named after the <code>ItemList</code> methods
+ * they measure, and durations are in nanoseconds.
+ */
+public interface ItemListMetricsMBean {
+    /**
+     * Gets the number of items in the list.
+     * @return
+     * Returns the number of items.
+     */
+    int getItemCount();
+
+    /**
+     * Gets the number of items on a shelf other than their original one.
+     * @return
+     * Returns the number of misplaced items.
+     */
+    int getMisplacedCount();
+
+    /**
+     * Gets the number of purchased items still in the list.
+     * @return
+     * Returns the number of items that are out.
+     */
+    int getOutCount();
+
+    /**
+     * Gets the names of the measured operations.
+     * @return
+     * Returns the method names.
+     */
+    String[] getOperations();
+
+    /**
+     * Gets every metric as one line of JSON.
+     * @return
+     * Returns the snapshot.
+     */
+    String getSnapshot();
+
+    /**
+     * Gets how many times an operation ran.
+     * @param operation
+     * The method name of the operation.
+     * @return
+     * Returns the number of runs.
+     */
+    long getCount(String operation);
+
+    /**
+     * Gets how many nodes or items an operation went through in all its runs.
+     * @param operation
+     * The method name of the operation.
+     * @return
+     * Returns the number of nodes visited.
+     */
+    long getNodesVisited(String operation);
+
+    /**
+     * Gets the mean duration of an operation.
+     * @param operation
+     * The method name of the operation.
+     * @return
+     * Returns the mean in nanoseconds.
+     */
+    double getMeanNanos(String operation);
+
+    /**
+     * Gets a percentile of the duration of an operation.
+     * @param operation
+     * The method name of the operation.
+     * @param percentile
+     * The percentage, from 0 to 100.
+     * @return
+     * Returns the percentile in nanoseconds.
+     */
+    long getPercentileNanos(String operation, double percentile);
+
+    /**
+     * Gets the longest duration of an operation.
+     * @param operation
+     * The method name of the operation.
+     * @return
+     * Returns the longest duration in nanoseconds.
+     */
+    long getMaxNanos(String operation);
+}
@@ -0,0 +1,488 @@
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The <code>ItemReportWriter</code> class streams item listings to a <code>Writer</code>, a
+ * <code>PrintStream</code> or a channel. Rows are rendered straight into a reusable buffer, without a formatter, and the
+ * buffer is only handed to the destination when it fills up or the report is flushed.
+ * <p>
+ * Reports can be written as the fixed width table the stores have always printed, as CSV with
+ * a header line, or as a JSON array of objects. A page can be set so that only part of a
+ * large listing is written.
+ * <p>
+ * Write errors are thrown as <code>UncheckedIOException</code>, since the stores that
+ * print reports do not declare <code>IOException</code>.
+ */
+public class ItemReportWriter implements ItemRowSink, Flushable {
+    /**
+     * The header of the item table, shared by every store.
+     */
+    public static final String TABLE_HEADER = String.format("%-16s%-16s%-16s%-16s%-2s", "", "", "Original", "Current", "")
+            + "\n" + String.format("%-18s%-14s%-16s%-16s%-2s", "Item Name", "RFID", "Location", "Location", "Price\n")
+            + String.format("%-16s%-16s%-16s%-16s%-2s", "---------", "---------", "---------", "---------", "------");
+
+    private static final String CSV_HEADER = "name,rfid,originalLocation,currentLocation,price";
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The formats a report can be written in.
+     */
+    public enum Format {
+        TABLE, CSV, JSON
+    }
+
+    private final Writer writer;
+    private final PrintStream stream;
+    private final WritableByteChannel channel;
+    private final Format format;
+    private final char[] buffer;
+    private int length;
+    private CharsetEncoder encoder;
+    private ByteBuffer bytes;
+    private long offset;
+    private long limit;
+    private long rows;
+    private long written;
+    private boolean currentFirst;
+
+    /**
+     * Constructor for a report written to a <code>Writer</code>.
+     * @param writer
+     * The writer to write the report to.
+     * @param format
+     * The format to write the report in.
+     */
+    public ItemReportWriter(Writer writer, Format format) {
+        this(writer, null, null, format);
+    }
+
+    /**
+     * Constructor for a report written to a print stream, such as the output of a store or
+     * <code>System.out</code>. The report is written through the stream in its own charset,
+     * so it stays in order with anything else printed to the stream. Flushing the report
+     * also flushes the stream.
+     * @param out
+     * The stream to write the report to.
+     * @param format
+     * The format to write the report in.
+     */
+    public ItemReportWriter(PrintStream out, Format format) {
+        this(null, out, null, format);
+    }
+
+    /**
+     * Constructor for a report written to a stream of bytes in UTF-8, such as a file.
+     * Flushing the report also flushes the stream.
+     * @param out
+     * The stream to write the report to.
+     * @param format
+     * The format to write the report in.
+     */
+    public ItemReportWriter(OutputStream out, Format format) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8), null, null, format);
+    }
+
+    /**
+     * Constructor for a report written to a channel in UTF-8.
+     * @param channel
+     * The channel to write the report to.
+     * @param format
+     * The format to write the report in.
+     */
+    public ItemReportWriter(WritableByteChannel channel, Format format) {
+        this(null, null, channel, format);
+        this.encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocate(BUFFER_SIZE * 3);
+    }
+
+    /**
+     * A helper constructor shared by the public ones.
+     * @param writer
+     * The writer to write the report to, or null.
+     * @param stream
+     * The print stream to write the report to, or null.
+     * @param channel
+     * The channel to write the report to, or null.
+     * @param format
+     * The format to write the report in.
+     */
+    private ItemReportWriter(Writer writer, PrintStream stream, WritableByteChannel channel, Format format) {
+        this.writer = writer;
+        this.stream = stream;
+        this.channel = channel;
+        this.format = format;
+        this.buffer = new char[BUFFER_SIZE];
+        this.limit = Long.MAX_VALUE;
+    }
+
+    /**
+     * Sets which rows of the report are written. Rows before the page are skipped and rows
+     * after it are dropped, although the store still visits them.
+     * @param offset
+     * The number of rows to skip.
+     * @param limit
+     * The largest number of rows to write.
+     * @throws IllegalArgumentException
+     * Indicates that the offset or limit is negative.
+     */
+    public void setPage(long offset, long limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit cannot be negative.");
+        }
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * Sets whether table rows list the current location before the original one, as
+     * <code>printByRFID</code> and <code>cleanStore</code> print them. The table header and
+     * the CSV and JSON fields are the same either way.
+     * @param currentFirst
+     * Whether the current location comes first.
+     */
+    public void setCurrentFirst(boolean currentFirst) {
+        this.currentFirst = currentFirst;
+    }
+
+    /**
+     * Gets the format of this report.
+     * @return
+     * Returns the format of this report.
+     */
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Gets how many more rows can be passed to <code>item</code> before the page is full.
+     * @return
+     * Returns the number of rows up to the end of the page, counting the rows still to be
+     * skipped, or <code>Long.MAX_VALUE</code> if the page has no end.
+     */
+    long getRowsToPageEnd() {
+        if (limit > Long.MAX_VALUE - offset) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, offset + limit - rows);
+    }
+
+    /**
+     * Gets the number of rows written so far, not counting the rows outside the page.
+     * @return
+     * Returns the number of rows written.
+     */
+    public long getRowsWritten() {
+        return written;
+    }
+
+    /**
+     * Writes a line of text above the table, such as "The following items(s) have been
+     * removed from the system: ". CSV and JSON reports leave it out.
+     * @param title
+     * The line to write.
+     */
+    public void title(String title) {
+        if (format == Format.TABLE) {
+            append(title);
+            append(LINE_SEPARATOR);
+        }
+    }
+
+    /**
+     * Writes the header of the report: the table header, the CSV header line, or the start
+     * of the JSON array.
+     */
+    public void header() {
+        switch (format) {
+            case TABLE:
+                append(TABLE_HEADER);
+                append(LINE_SEPARATOR);
+                break;
+            case CSV:
+                append(CSV_HEADER);
+                append('\n');
+                break;
+            default:
+                append('[');
+                break;
+        }
+    }
+
+    /**
+     * Writes a row of the report from the fields of an item.
+     * @param name
+     * The name of the item.
+     * @param tag
+     * The packed rfid tag of the item.
+     * @param originalLocation
+     * The original location code of the item.
+     * @param currentLocation
+     * The current location code of the item.
+     * @param priceCents
+     * The price of the item in cents.
+     * @return
+     * Returns whether any later row would still be written, so a listing can stop early.
+     */
+    public boolean item(String name, long tag, int originalLocation, int currentLocation, long priceCents) {
+        long row = rows++;
+        if (row < offset || row - offset >= limit) {
+            return row - offset + 1 < limit;
+        }
+        String original = ItemCodes.decodeLocation(originalLocation);
+        String current = ItemCodes.decodeLocation(currentLocation);
+        switch (format) {
+            case TABLE:
+                appendPadded(name, 16);
+                appendTag(tag);
+                append("        ");
+                appendPadded(currentFirst ? current : original, 16);
+                appendPadded(currentFirst ? original : current, 15);
+                appendCents(priceCents);
+                append(LINE_SEPARATOR);
+                break;
+            case CSV:
+                appendCsv(name);
+                append(',');
+                appendTag(tag);
+                append(',');
+                append(original);
+                append(',');
+                append(current);
+                append(',');
+                appendCents(priceCents);
+                append('\n');
+                break;
+            default:
+                append(written == 0 ? "\n{\"name\":\"" : ",\n{\"name\":\"");
+                appendJson(name);
+                append("\",\"rfid\":\"");
+                appendTag(tag);
+                append("\",\"originalLocation\":\"");
+                append(original);
+                append("\",\"currentLocation\":\"");
+                append(current);
+                append("\",\"price\":");
+                appendCents(priceCents);
+                append('}');
+                break;
+        }
+        written++;
+        return row - offset + 1 < limit;
+    }
+
+    /**
+     * Ends the report, closing the JSON array if there is one, and flushes it.
+     */
+    public void finish() {
+        if (format == Format.JSON) {
+            append("\n]\n");
+        }
+        drain(true);
+        flushDestination();
+    }
+
+    /**
+     * Writes out everything buffered so far and flushes the destination. When writing to a
+     * channel, the first half of a surrogate pair at the end of the buffer is kept back
+     * until its second half is appended.
+     * @throws UncheckedIOException
+     * Indicates that the report could not be written.
+     */
+    public void flush() {
+        drain(false);
+        flushDestination();
+    }
+
+    /**
+     * A helper method to flush the writer or print stream the report is written to.
+     */
+    private void flushDestination() {
+        if (writer != null) {
+            try {
+                writer.flush();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        else if (stream != null) {
+            stream.flush();
+        }
+    }
+
+    /**
+     * A helper method to hand the buffered characters to the destination.
+     * @param endOfInput
+     * Whether the report is finished, so that the encoder of a channel is flushed and no
+     * characters can be kept back for later.
+     */
+    private void drain(boolean endOfInput) {
+        if (length == 0) {
+            return;
+        }
+        try {
+            if (writer != null) {
+                writer.write(buffer, 0, length);
+            }
+            else if (stream != null) {
+                stream.append(CharBuffer.wrap(buffer, 0, length));
+            }
+            else {
+                // The encoder keeps its state between drains, so a surrogate pair split
+                // across two drains is left in the buffer and encoded whole by the next.
+                CharBuffer chars = CharBuffer.wrap(buffer, 0, length);
+                bytes.clear();
+                encoder.encode(chars, bytes, endOfInput);
+                if (endOfInput) {
+                    encoder.flush(bytes);
+                    encoder.reset();
+                }
+                bytes.flip();
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                int left = chars.remaining();
+                System.arraycopy(buffer, chars.position(), buffer, 0, left);
+                length = left;
+                return;
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        length = 0;
+    }
+
+    private void append(char c) {
+        if (length == buffer.length) {
+            drain(false);
+        }
+        buffer[length++] = c;
+    }
+
+    private void append(String text) {
+        for (int start = 0; start < text.length(); ) {
+            if (length == buffer.length) {
+                drain(false);
+            }
+            int end = Math.min(text.length(), start + buffer.length - length);
+            text.getChars(start, end, buffer, length);
+            length += end - start;
+            start = end;
+        }
+    }
+
+    /**
+     * A helper method to write text padded with spaces to a width, as <code>%-Ns</code> would.
+     * @param text
+     * The text to write.
+     * @param width
+     * The smallest number of characters to take up.
+     */
+    private void appendPadded(String text, int width) {
+        append(text);
+        for (int i = text.length(); i < width; i++) {
+            append(' ');
+        }
+    }
+
+    /**
+     * A helper method to write a packed tag as 9 upper case hex digits.
+     * @param tag
+     * The packed tag.
+     */
+    private void appendTag(long tag) {
+        for (int shift = 32; shift >= 0; shift -= 4) {
+            append(HEX[(int) (tag >>> shift) & 0xF]);
+        }
+    }
+
+    /**
+     * A helper method to write a number of cents as dollars with two decimals, as
+     * <code>%.2f</code> would.
+     * @param cents
+     * The number of cents.
+     */
+    private void appendCents(long cents) {
+        if (cents < 0) {
+            append('-');
+            cents = -cents;
+        }
+        long dollars = cents / 100;
+        long scale = 1;
+        while (scale <= dollars / 10) {
+            scale *= 10;
+        }
+        for (; scale > 0; scale /= 10) {
+            append((char) ('0' + dollars / scale % 10));
+        }
+        append('.');
+        append((char) ('0' + cents % 100 / 10));
+        append((char) ('0' + cents % 10));
+    }
+
+    /**
+     * A helper method to write a CSV field, quoting it if it holds a comma, a quote or a
+     * line break.
+     * @param text
+     * The field to write.
+     */
+    private void appendCsv(String text) {
+        boolean quote = false;
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            append(text);
+            return;
+        }
+        append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                append('"');
+            }
+            append(c);
+        }
+        append('"');
+    }
+
+    /**
+     * A helper method to write the inside of a JSON string.
+     * @param text
+     * The text to write.
+     */
+    private void appendJson(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                append('\\');
+                append(c);
+            }
+            else if (c < 0x20) {
+                append("\\u00");
+                append(HEX[c >> 4]);
+                append(HEX[c & 0xF]);
+            }
+            else {
+                append(c);
+            }
+        }
+    }
+}
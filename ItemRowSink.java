@@ -0,0 +1,35 @@
+/**
+ * The <code>ItemRowSink</code> interface receives the rows of an item listing, one item at
+ * a time and already in list order. <code>ItemReportWriter</code> is the standard one, which
+ * writes the rows out; a sink may also keep them, as the shards of a
+ * <code>ShardedItemList</code> do until their rows are merged.
+ */
+public interface ItemRowSink {
+    /**
+     * Takes a row from the fields of an item.
+     * @param name
+     * The name of the item.
+     * @param tag
+     * The packed rfid tag of the item.
+     * @param originalLocation
+     * The original location code of the item.
+     * @param currentLocation
+     * The current location code of the item.
+     * @param priceCents
+     * The price of the item in cents.
+     * @return
+     * Returns whether any later row would still be used, so a listing can stop early.
+     */
+    boolean item(String name, long tag, int originalLocation, int currentLocation, long priceCents);
+
+    /**
+     * Takes an item as a row.
+     * @param item
+     * The item to take.
+     * @return
+     * Returns whether any later row would still be used, so a listing can stop early.
+     */
+    default boolean item(ItemInfo item) {
+        return item(item.getName(), item.getRfidTag(), item.getOriginalLocationCode(), item.getCurrentLocationCode(), item.getPriceCents());
+    }
+}
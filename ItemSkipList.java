@@ -0,0 +1,225 @@
+import java.util.List;
+
+/**
+ * The <code>ItemSkipList</code> class keeps item nodes sorted by rfid tag number.
+ * Level 0 is an ordinary doubly linked list from head to tail, so walking it visits every
+ * item in order. The levels above it skip over runs of nodes, which lets inserts and
+ * removals find their place in O(log n) expected time instead of walking from the head.
+ */
+public class ItemSkipList {
+    private static final int MAX_LEVEL = 32;
+
+    private ItemInfoNode[] heads;
+    private ItemInfoNode tail;
+    private int level;
+    private int size;
+    private long seed;
+
+    /**
+     * Default constructor which initializes this object to an empty list.
+     */
+    public ItemSkipList() {
+        this.heads = new ItemInfoNode[MAX_LEVEL];
+        this.tail = null;
+        this.level = 1;
+        this.size = 0;
+        this.seed = System.nanoTime() | 1;
+    }
+
+    /**
+     * Gets the first node of the list.
+     * @return
+     * Returns the first node, or null if the list is empty.
+     */
+    public ItemInfoNode getHead() {
+        return heads[0];
+    }
+
+    /**
+     * Gets the last node of the list.
+     * @return
+     * Returns the last node, or null if the list is empty.
+     */
+    public ItemInfoNode getTail() {
+        return tail;
+    }
+
+    /**
+     * Gets the number of nodes in the list.
+     * @return
+     * Returns the number of nodes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Inserts a node into the list. The node goes in front of any node with an equal
+     * rfid tag number, which is where the original linear insert placed it.
+     * @param node
+     * The node to insert. Its data must be set.
+     * @return
+     * Returns the number of nodes compared on the way to the slot.
+     */
+    public int insert(ItemInfoNode node) {
+        // The Big-O notation of this method is O(log n) expected, because each level
+        // skips over about three quarters of the nodes of the level below it.
+        ItemInfoNode[] update = new ItemInfoNode[MAX_LEVEL];
+        ItemInfoNode current = null;
+        int visited = 0;
+        for (int i = level - 1; i >= 0; i--) {
+            ItemInfoNode next = current == null ? heads[i] : current.getNext(i);
+            while (next != null && next.getData().compareTo(node.getData()) < 0) {
+                current = next;
+                next = next.getNext(i);
+                visited++;
+            }
+            update[i] = current;
+        }
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            level = nodeLevel;
+        }
+        node.setLevel(nodeLevel);
+        for (int i = 0; i < nodeLevel; i++) {
+            node.setNext(i, update[i] == null ? heads[i] : update[i].getNext(i));
+            link(update[i], node, i);
+        }
+        node.setPrev(update[0]);
+        if (node.getNext() != null) {
+            node.getNext().setPrev(node);
+        }
+        else {
+            tail = node;
+        }
+        size++;
+        return visited;
+    }
+
+    /**
+     * Removes a node from the list.
+     * @param node
+     * The node to remove. It must be in this list.
+     */
+    public void remove(ItemInfoNode node) {
+        remove(node, node.getData().getRfidTag());
+    }
+
+    /**
+     * Removes a node from the list that is still filed under an rfid tag its item no longer
+     * has, because the tag of the item was changed while it was in the list.
+     * @param node
+     * The node to remove. It must be in this list.
+     * @param tag
+     * The packed rfid tag the node is filed under.
+     */
+    public void remove(ItemInfoNode node, long tag) {
+        // The Big-O notation of this method is O(log n) expected, plus the number of
+        // nodes sharing the node's rfid tag number.
+        int nodeLevel = node.getLevel();
+        ItemInfoNode current = null;
+        for (int i = level - 1; i >= 0; i--) {
+            ItemInfoNode next = current == null ? heads[i] : current.getNext(i);
+            while (next != null && next != node && next.getData().getRfidTag() < tag) {
+                current = next;
+                next = next.getNext(i);
+            }
+            if (i < nodeLevel) {
+                ItemInfoNode before = current;
+                while (next != node) {
+                    before = next;
+                    next = next.getNext(i);
+                }
+                link(before, node.getNext(i), i);
+            }
+        }
+        if (node.getNext() != null) {
+            node.getNext().setPrev(node.getPrev());
+        }
+        else {
+            tail = node.getPrev();
+        }
+        while (level > 1 && heads[level - 1] == null) {
+            level--;
+        }
+        node.setPrev(null);
+        node.setNext(null);
+        node.setLevel(1);
+        size--;
+    }
+
+    /**
+     * Replaces the contents of the list with nodes that are already in sorted order,
+     * linking them in one pass. Levels are handed out by position rather than at random,
+     * so every fourth node reaches level 2, every sixteenth level 3, and so on.
+     * @param sorted
+     * The nodes to link, sorted by rfid tag number.
+     */
+    public void rebuild(List<ItemInfoNode> sorted) {
+        // The Big-O notation of this method is O(n) because each node is linked once
+        // at each of its levels, and the levels add up to n * 4 / 3.
+        clear();
+        ItemInfoNode[] last = new ItemInfoNode[MAX_LEVEL];
+        ItemInfoNode previous = null;
+        for (int i = 0; i < sorted.size(); i++) {
+            ItemInfoNode node = sorted.get(i);
+            int nodeLevel = Math.min(1 + Integer.numberOfTrailingZeros(i + 1) / 2, MAX_LEVEL);
+            node.setLevel(nodeLevel);
+            for (int l = 0; l < nodeLevel; l++) {
+                link(last[l], node, l);
+                last[l] = node;
+            }
+            node.setPrev(previous);
+            node.setNext(null);
+            previous = node;
+            if (nodeLevel > level) {
+                level = nodeLevel;
+            }
+        }
+        tail = previous;
+        size = sorted.size();
+    }
+
+    /**
+     * Removes every node from the list.
+     */
+    public void clear() {
+        heads = new ItemInfoNode[MAX_LEVEL];
+        tail = null;
+        level = 1;
+        size = 0;
+    }
+
+    /**
+     * A helper method to point a node, or the head of a level when it is null, at the
+     * node that should come after it on that level.
+     * @param before
+     * The node to update, or null to update the head of the level.
+     * @param next
+     * The node that should come after it.
+     * @param i
+     * The level to update.
+     */
+    private void link(ItemInfoNode before, ItemInfoNode next, int i) {
+        if (before == null) {
+            heads[i] = next;
+        }
+        else {
+            before.setNext(i, next);
+        }
+    }
+
+    /**
+     * A helper method to pick the level of a new node, where each level is a quarter
+     * as likely as the one below it.
+     * @return
+     * Returns a level between 1 and the maximum level.
+     */
+    private int randomLevel() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        int nodeLevel = 1 + Long.numberOfTrailingZeros(seed | (1L << 62)) / 2;
+        return Math.min(nodeLevel, MAX_LEVEL);
+    }
+}
@@ -0,0 +1,181 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The <code>ItemSnapshot</code> class saves every item of a list to a file and loads them
+ * back. A snapshot also records the last journal generation it covers, so that recovery
+ * only has to replay the journals written after it.
+ * <p>
+ * The file is a magic number, a version and the journal generation, then a table of the
+ * distinct item names, then the item count and one fixed width record per item in list
+ * order, and finally a CRC32 of everything before it. A record is the index of the name in
+ * the table, the packed tag, both location codes and the price in cents. A snapshot is
+ * written to a temporary file and renamed into place, so a crash never leaves half of one.
+ */
+public class ItemSnapshot {
+    private static final int MAGIC = 0x49534e50;
+    private static final int VERSION = 1;
+    private static final int RECORD_SIZE = 4 + 8 + 4 + 4 + 8;
+
+    private long generation;
+    private List<ItemInfo> items;
+
+    /**
+     * Parameterized constructor for a loaded snapshot.
+     * @param generation
+     * The last journal generation the snapshot covers.
+     * @param items
+     * The items of the snapshot, in list order.
+     */
+    public ItemSnapshot(long generation, List<ItemInfo> items) {
+        this.generation = generation;
+        this.items = items;
+    }
+
+    /**
+     * Gets the last journal generation the snapshot covers.
+     * @return
+     * Returns the journal generation.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Gets the items of the snapshot.
+     * @return
+     * Returns the items, in list order.
+     */
+    public List<ItemInfo> getItems() {
+        return items;
+    }
+
+    /**
+     * Writes a snapshot of a list.
+     * @param file
+     * The file to write the snapshot to.
+     * @param list
+     * The list to save.
+     * @param generation
+     * The last journal generation whose changes are already in the list.
+     * @throws IOException
+     * Indicates that the snapshot could not be written.
+     */
+    public static void write(Path file, ItemList list, long generation) throws IOException {
+        int[] nameIndex = new int[NameDictionary.size()];
+        Arrays.fill(nameIndex, -1);
+        List<String> names = new ArrayList<>();
+        list.forEach(item -> {
+            if (nameIndex[item.getNameId()] < 0) {
+                nameIndex[item.getNameId()] = names.size();
+                names.add(item.getName());
+            }
+        });
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temp.toFile());
+        CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(stream, 1 << 16), new CRC32());
+        try (DataOutputStream out = new DataOutputStream(checked)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            out.writeInt(names.size());
+            for (String name : names) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+            out.writeInt(list.size());
+            IOException[] error = new IOException[1];
+            list.forEach(item -> {
+                if (error[0] != null) {
+                    return;
+                }
+                try {
+                    out.writeInt(nameIndex[item.getNameId()]);
+                    out.writeLong(item.getRfidTag());
+                    out.writeInt(item.getOriginalLocationCode());
+                    out.writeInt(item.getCurrentLocationCode());
+                    out.writeLong(item.getPriceCents());
+                }
+                catch (IOException e) {
+                    error[0] = e;
+                }
+            });
+            if (error[0] != null) {
+                throw error[0];
+            }
+            out.flush();
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            stream.getFD().sync();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot.
+     * @param file
+     * The file to read the snapshot from.
+     * @return
+     * Returns the snapshot.
+     * @throws IOException
+     * Indicates that the snapshot could not be read or is damaged.
+     */
+    public static ItemSnapshot read(Path file) throws IOException {
+        // The whole file is read in one go and decoded from the buffer, which is much
+        // faster than reading field by field through a stream.
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to be an item snapshot.");
+            }
+            in = ByteBuffer.allocate((int) channel.size());
+            while (in.hasRemaining() && channel.read(in) >= 0) {
+                // Keep reading until the buffer is full.
+            }
+            in.flip();
+        }
+        if (in.remaining() < 24 || in.getInt() != MAGIC || in.getInt() != VERSION) {
+            throw new IOException(file + " is not an item snapshot.");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(in.array(), 0, in.limit() - 4);
+        if ((int) crc.getValue() != in.getInt(in.limit() - 4)) {
+            throw new IOException(file + " is damaged: its checksum does not match.");
+        }
+        long generation = in.getLong();
+        int[] nameIds = new int[in.getInt()];
+        for (int i = 0; i < nameIds.length; i++) {
+            int length = in.getShort() & 0xFFFF;
+            nameIds[i] = NameDictionary.idOf(new String(in.array(), in.position(), length, StandardCharsets.UTF_8));
+            in.position(in.position() + length);
+        }
+        int count = in.getInt();
+        if (in.remaining() != (long) count * RECORD_SIZE + 4) {
+            throw new IOException(file + " is damaged: it does not hold " + count + " items.");
+        }
+        List<ItemInfo> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int name = nameIds[in.getInt()];
+            long tag = in.getLong();
+            int original = in.getInt();
+            int current = in.getInt();
+            long cents = in.getLong();
+            items.add(new ItemInfo(name, tag, original, current, cents));
+        }
+        return new ItemSnapshot(generation, items);
+    }
+}
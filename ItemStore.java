@@ -0,0 +1,74 @@
+/**
+ * The <code>ItemStore</code> interface lists the operations every inventory of items
+ * supports, whatever it keeps the items in. <code>ItemList</code> is the standard one.
+ */
+public interface ItemStore {
+    /**
+     * A method to insert items into the store.
+     * @param name
+     * The name of the item to insert.
+     * @param rfidTag
+     * The rfidTag number of the item to insert.
+     * @param price
+     * The price of the item to insert.
+     * @param initPosition
+     * The initial position of the item to insert.
+     * @throws IllegalArgumentException
+     * Indicates which argument is invalid.
+     */
+    void insertInfo(String name, String rfidTag, double price, String initPosition) throws IllegalArgumentException;
+
+    /**
+     * A method to move the item from a source location to a dest location.
+     * @param rfidTag
+     * The rfidTag number of the item to be moved.
+     * @param source
+     * The source location of the item to be moved.
+     * @param dest
+     * The destination location of the item to be moved.
+     * @return
+     * Return whether the item was found.
+     * @throws IllegalArgumentException
+     * Indicates which argument is invalid.
+     */
+    boolean moveItem(String rfidTag, String source, String dest) throws IllegalArgumentException;
+
+    /**
+     * A method to print a neatly formatted list of all items in the store.
+     */
+    void printAll();
+
+    /**
+     * Prints a neatly formatted list of all items in a specified location.
+     * @param location
+     * The location of the items to be printed in the table.
+     */
+    void printByLocation(String location);
+
+    /**
+     * A method to print all items that have the same rfid number.
+     * @param rfid
+     * The rfid of the items.
+     */
+    void printByRFID(String rfid);
+
+    /**
+     * A method to take every item that is in the store and on the wrong shelf and place it where
+     * it belongs.
+     */
+    void cleanStore();
+
+    /**
+     * A method that checks out each item in a cart.
+     * @param cartNumber
+     * The cart number to check out.
+     * @return
+     * Returns the total price of all items in that cart.
+     */
+    double checkOut(String cartNumber);
+
+    /**
+     * A method to remove all purchased items from the store and display them.
+     */
+    void removeAllPurchased();
+}
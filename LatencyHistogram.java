@@ -0,0 +1,136 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The <code>LatencyHistogram</code> class counts durations in logarithmic buckets, in the
+ * style of an HDR histogram. Values below 64 get a bucket each, and every power of two above
+ * that is split into 64 equal buckets, so any percentile is reported within about 1.6% of the
+ * true value using a fixed amount of memory.
+ * <p>
+ * Recording is a few atomic increments with no locking, so several threads can record into
+ * the same histogram, and it can be read at any time while values are being recorded.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_MAGNITUDE = 42;
+    private static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong count;
+    private final AtomicLong total;
+    private final AtomicLong max;
+
+    /**
+     * Default constructor which creates an empty histogram. Values up to about 2.4 hours in
+     * nanoseconds are told apart, and larger ones are counted as that.
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(SUB_BUCKETS + (MAX_MAGNITUDE - SUB_BITS + 1) * SUB_BUCKETS);
+        this.count = new AtomicLong();
+        this.total = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Records a value.
+     * @param value
+     * The value to record, such as a duration in nanoseconds. Negative values count as 0.
+     */
+    public void record(long value) {
+        // The Big-O notation of this method is O(1).
+        value = Math.max(0, Math.min(value, MAX_VALUE));
+        counts.getAndIncrement(indexOf(value));
+        count.getAndIncrement();
+        total.getAndAdd(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Gets the number of values recorded.
+     * @return
+     * Returns the number of values.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Gets the largest value recorded.
+     * @return
+     * Returns the largest value, or 0 if none has been recorded.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets the mean of the values recorded.
+     * @return
+     * Returns the mean, or 0 if none has been recorded.
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : total.get() / (double) n;
+    }
+
+    /**
+     * Gets the value below which a percentage of the recorded values fall.
+     * @param percentile
+     * The percentage, from 0 to 100.
+     * @return
+     * Returns the highest value in the bucket holding the percentile, or 0 if no value has
+     * been recorded.
+     */
+    public long getPercentile(double percentile) {
+        // The Big-O notation of this method is O(b) for the b buckets.
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueIn(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * A helper method to find the bucket of a value.
+     * @param value
+     * The value, which is between 0 and <code>MAX_VALUE</code>.
+     * @return
+     * Returns the index of the bucket.
+     */
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (magnitude - SUB_BITS) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * A helper method to find the highest value that falls in a bucket.
+     * @param index
+     * The index of the bucket.
+     * @return
+     * Returns the highest value of the bucket.
+     */
+    private static long highestValueIn(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int magnitude = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+        long sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        long lowest = (1L << magnitude) | (sub << (magnitude - SUB_BITS));
+        return lowest + (1L << (magnitude - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,346 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The <code>LocationIndex</code> class is used for looking up items by their current
+ * location. It also keeps the set of misplaced items, which are items sitting on a shelf
+ * other than their original one.
+ * <p>
+ * Items are filed under their <code>ItemCodes</code> location code, so the index is an
+ * array with one slot per possible location. The slots are allocated in blocks of 1024
+ * locations the first time an item is filed in a block, so an index that only ever sees a
+ * few locations, such as a shard of a <code>ShardedItemList</code>, stays small. Items that
+ * are out are kept in the order they went out, so that the oldest purchases can be purged
+ * first.
+ * <p>
+ * Alongside each location the index keeps the total price of the items there in cents,
+ * and the total over every location, so that valuations never have to visit the items.
+ */
+public class LocationIndex {
+    private static final int BLOCK_BITS = 10;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCK_COUNT = (ItemCodes.LOCATION_COUNT + BLOCK_SIZE - 1) >> BLOCK_BITS;
+
+    private Set<ItemInfo>[][] byLocation;
+    private Set<ItemInfo> misplaced;
+    private long[][] valueAt;
+    private long totalValue;
+    private int totalCount;
+
+    /**
+     * Default constructor which initializes this object to an empty index.
+     */
+    public LocationIndex() {
+        this.byLocation = newBlocks(BLOCK_COUNT);
+        this.misplaced = new HashSet<>();
+        this.valueAt = new long[BLOCK_COUNT][];
+    }
+
+    /**
+     * A helper method to create an array of blocks of item sets, which Java cannot do with a
+     * generic array creation expression.
+     * @param size
+     * The number of blocks.
+     * @return
+     * Returns an array of null blocks.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Set<ItemInfo>[][] newBlocks(int size) {
+        return new Set[size][];
+    }
+
+    /**
+     * A helper method to create a block of item sets.
+     * @return
+     * Returns a block of nulls.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Set<ItemInfo>[] newSets() {
+        return new Set[BLOCK_SIZE];
+    }
+
+    /**
+     * Adds an item to the index under its current location.
+     * @param item
+     * The item to add.
+     */
+    public void add(ItemInfo item) {
+        int code = item.getCurrentLocationCode();
+        int block = code >> BLOCK_BITS;
+        int slot = code & (BLOCK_SIZE - 1);
+        if (byLocation[block] == null) {
+            byLocation[block] = newSets();
+            valueAt[block] = new long[BLOCK_SIZE];
+        }
+        Set<ItemInfo> items = byLocation[block][slot];
+        if (items == null) {
+            items = code == ItemCodes.OUT ? new LinkedHashSet<>() : new HashSet<>();
+            byLocation[block][slot] = items;
+        }
+        if (items.add(item)) {
+            valueAt[block][slot] += item.getPriceCents();
+            totalValue += item.getPriceCents();
+            totalCount++;
+        }
+        if (isMisplaced(item)) {
+            misplaced.add(item);
+        }
+    }
+
+    /**
+     * Removes an item from the index.
+     * @param item
+     * The item to remove.
+     */
+    public void remove(ItemInfo item) {
+        removeFrom(item.getCurrentLocationCode(), item);
+        misplaced.remove(item);
+    }
+
+    /**
+     * Moves an item from one location to another in the index.
+     * @param item
+     * The item that moved. Its current location must already be the new location.
+     * @param oldLocation
+     * The location code the item was in before the move.
+     */
+    public void move(ItemInfo item, int oldLocation) {
+        removeFrom(oldLocation, item);
+        misplaced.remove(item);
+        add(item);
+    }
+
+    /**
+     * Updates the misplaced items after the original location of an item in the index has
+     * changed.
+     * @param item
+     * The item whose original location changed. It must already have the new one.
+     */
+    public void originalLocationChanged(ItemInfo item) {
+        Set<ItemInfo> items = setAt(item.getCurrentLocationCode());
+        if (items == null || !items.contains(item)) {
+            return;
+        }
+        if (isMisplaced(item)) {
+            misplaced.add(item);
+        }
+        else {
+            misplaced.remove(item);
+        }
+    }
+
+    /**
+     * Updates the running totals after the price of an item in the index has changed.
+     * @param item
+     * The item whose price changed. Its price must already be the new price.
+     * @param oldCents
+     * The price of the item in cents before the change.
+     */
+    public void priceChanged(ItemInfo item, long oldCents) {
+        int code = item.getCurrentLocationCode();
+        Set<ItemInfo> items = setAt(code);
+        if (items != null && items.contains(item)) {
+            long delta = item.getPriceCents() - oldCents;
+            valueAt[code >> BLOCK_BITS][code & (BLOCK_SIZE - 1)] += delta;
+            totalValue += delta;
+        }
+    }
+
+    /**
+     * Gets the items at a location.
+     * @param location
+     * The location code to look up.
+     * @return
+     * Returns the items at that location, or an empty collection if there are none.
+     */
+    public Collection<ItemInfo> itemsAt(int location) {
+        Set<ItemInfo> items = setAt(location);
+        return items == null ? Collections.emptySet() : Collections.unmodifiableSet(items);
+    }
+
+    /**
+     * Gets the items that have been out the longest.
+     * @param max
+     * The largest number of items to return.
+     * @return
+     * Returns a new list of up to <code>max</code> items that are out, in the order they
+     * went out.
+     */
+    public List<ItemInfo> oldestOut(int max) {
+        // The Big-O notation of this method is O(max) because the out items are linked in
+        // the order they went out.
+        List<ItemInfo> oldest = new ArrayList<>(Math.min(max, countAt(ItemCodes.OUT)));
+        Iterator<ItemInfo> it = itemsAt(ItemCodes.OUT).iterator();
+        while (oldest.size() < max && it.hasNext()) {
+            oldest.add(it.next());
+        }
+        return oldest;
+    }
+
+    /**
+     * Gets the number of items at a location.
+     * @param location
+     * The location code to look up.
+     * @return
+     * Returns the number of items at that location.
+     */
+    public int countAt(int location) {
+        Set<ItemInfo> items = setAt(location);
+        return items == null ? 0 : items.size();
+    }
+
+    /**
+     * Gets the total price of the items at a location.
+     * @param location
+     * The location code to look up.
+     * @return
+     * Returns the total price in cents.
+     */
+    public long valueAt(int location) {
+        long[] values = valueAt[location >> BLOCK_BITS];
+        return values == null ? 0 : values[location & (BLOCK_SIZE - 1)];
+    }
+
+    /**
+     * Gets the total price of every item in the index, wherever it is.
+     * @return
+     * Returns the total price in cents.
+     */
+    public long totalValue() {
+        return totalValue;
+    }
+
+    /**
+     * Gets the number of items in the index.
+     * @return
+     * Returns the number of items.
+     */
+    public int totalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Gets the items at a location, sorted by rfid tag number.
+     * @param location
+     * The location to look up.
+     * @return
+     * Returns a new list of the items at that location.
+     */
+    public List<ItemInfo> sortedItemsAt(String location) {
+        return sortedItemsAt(ItemCodes.encodeLocation(location));
+    }
+
+    /**
+     * Gets the items at a location code, sorted by rfid tag number.
+     * @param location
+     * The location code to look up.
+     * @return
+     * Returns a new list of the items at that location.
+     */
+    public List<ItemInfo> sortedItemsAt(int location) {
+        return sorted(itemsAt(location));
+    }
+
+    /**
+     * Gets the misplaced items, sorted by rfid tag number.
+     * @return
+     * Returns a new list of the items on the wrong shelf.
+     */
+    public List<ItemInfo> sortedMisplaced() {
+        return sorted(misplaced);
+    }
+
+    /**
+     * Gets the misplaced items.
+     * @return
+     * Returns the items on the wrong shelf, in no particular order.
+     */
+    public Collection<ItemInfo> misplacedItems() {
+        return Collections.unmodifiableSet(misplaced);
+    }
+
+    /**
+     * Gets the number of misplaced items.
+     * @return
+     * Returns the number of items on the wrong shelf.
+     */
+    public int misplacedCount() {
+        return misplaced.size();
+    }
+
+    /**
+     * Removes every item from the index.
+     */
+    public void clear() {
+        Arrays.fill(byLocation, null);
+        misplaced.clear();
+        Arrays.fill(valueAt, null);
+        totalValue = 0;
+        totalCount = 0;
+    }
+
+    /**
+     * A helper method to check whether an item is on a shelf other than its original one.
+     * @param item
+     * The item to check.
+     * @return
+     * Returns whether the item is misplaced.
+     */
+    public static boolean isMisplaced(ItemInfo item) {
+        int current = item.getCurrentLocationCode();
+        return ItemCodes.isShelf(current) && current != item.getOriginalLocationCode();
+    }
+
+    /**
+     * A helper method to remove an item from one location's set.
+     * @param location
+     * The location code.
+     * @param item
+     * The item to remove.
+     */
+    private void removeFrom(int location, ItemInfo item) {
+        Set<ItemInfo> items = setAt(location);
+        if (items != null) {
+            if (items.remove(item)) {
+                valueAt[location >> BLOCK_BITS][location & (BLOCK_SIZE - 1)] -= item.getPriceCents();
+                totalValue -= item.getPriceCents();
+                totalCount--;
+            }
+            if (items.isEmpty()) {
+                byLocation[location >> BLOCK_BITS][location & (BLOCK_SIZE - 1)] = null;
+            }
+        }
+    }
+
+    /**
+     * A helper method to find the set of items at a location.
+     * @param location
+     * The location code.
+     * @return
+     * Returns the set, or null if no item is filed there.
+     */
+    private Set<ItemInfo> setAt(int location) {
+        Set<ItemInfo>[] block = byLocation[location >> BLOCK_BITS];
+        return block == null ? null : block[location & (BLOCK_SIZE - 1)];
+    }
+
+    /**
+     * A helper method to sort items the same way the item list orders them.
+     * @param items
+     * The items to sort.
+     * @return
+     * Returns a new sorted list.
+     */
+    private static List<ItemInfo> sorted(Collection<ItemInfo> items) {
+        List<ItemInfo> list = new ArrayList<>(items);
+        list.sort(ItemInfo::compareTo);
+        return list;
+    }
+}
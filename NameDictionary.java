@@ -0,0 +1,58 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The <code>NameDictionary</code> class stores each distinct item name once and hands out
+ * an int id for it, so that items with the same name share one string.
+ */
+public class NameDictionary {
+    private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[1024];
+    private static int count = 0;
+
+    /**
+     * Gets the id of a name, adding the name to the dictionary if it is new.
+     * @param name
+     * The name to look up.
+     * @return
+     * Returns the id of the name.
+     */
+    public static int idOf(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (NameDictionary.class) {
+            id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            if (count == names.length) {
+                names = Arrays.copyOf(names, count * 2);
+            }
+            names[count] = name;
+            ids.put(name, count);
+            return count++;
+        }
+    }
+
+    /**
+     * Gets the name with an id.
+     * @param id
+     * The id handed out by <code>idOf</code>.
+     * @return
+     * Returns the name.
+     */
+    public static String nameOf(int id) {
+        return names[id];
+    }
+
+    /**
+     * Gets the number of distinct names in the dictionary.
+     * @return
+     * Returns the number of names.
+     */
+    public static int size() {
+        return ids.size();
+    }
+}
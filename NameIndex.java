@@ -0,0 +1,298 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * The <code>NameIndex</code> class is used for looking up items by name, ignoring case,
+ * either by the start of the name or by any part of it.
+ * <p>
+ * Items are filed by their <code>NameDictionary</code> id, in one array per name, and each
+ * item remembers its slot so that it can be removed without a search. Searches never look
+ * at the items of a name that does not match: the distinct lower case names are kept
+ * sorted for prefix searches, and every three-character run of each name is indexed for
+ * substring searches. Only names that some item in the index has are kept, so a query
+ * costs time in the number of matching names and results, not in the size of the list.
+ */
+public class NameIndex {
+    private ItemInfo[][] byName;
+    private int[] counts;
+    private TreeMap<String, NameEntry> byLower;
+    private Map<Long, Set<NameEntry>> trigrams;
+
+    /**
+     * Default constructor which initializes this object to an empty index.
+     */
+    public NameIndex() {
+        this.byName = new ItemInfo[1024][];
+        this.counts = new int[1024];
+        this.byLower = new TreeMap<>();
+        this.trigrams = new HashMap<>();
+    }
+
+    /**
+     * Adds an item to the index under its name.
+     * @param item
+     * The item to add.
+     */
+    public void add(ItemInfo item) {
+        // The Big-O notation of this method is O(1) amortized, plus O(c) for a name of c
+        // characters that no other item in the index has.
+        int id = item.getNameId();
+        if (id >= byName.length) {
+            int length = Math.max(id + 1, byName.length * 2);
+            byName = Arrays.copyOf(byName, length);
+            counts = Arrays.copyOf(counts, length);
+        }
+        ItemInfo[] items = byName[id];
+        if (items == null) {
+            items = new ItemInfo[4];
+            byName[id] = items;
+            addName(id);
+        }
+        else if (counts[id] == items.length) {
+            items = Arrays.copyOf(items, items.length * 2);
+            byName[id] = items;
+        }
+        item.setNameSlot(counts[id]);
+        items[counts[id]++] = item;
+    }
+
+    /**
+     * Removes an item from the index.
+     * @param item
+     * The item to remove. It must be in the index under its current name.
+     */
+    public void remove(ItemInfo item) {
+        removeFrom(item.getNameId(), item);
+    }
+
+    /**
+     * Moves an item from its old name to its new one in the index.
+     * @param item
+     * The item that was renamed. Its name must already be the new name.
+     * @param oldNameId
+     * The name id the item had before the rename.
+     */
+    public void rename(ItemInfo item, int oldNameId) {
+        removeFrom(oldNameId, item);
+        add(item);
+    }
+
+    /**
+     * Gets the number of items with a name.
+     * @param nameId
+     * The name id to look up.
+     * @return
+     * Returns the number of items with that exact name.
+     */
+    public int countOf(int nameId) {
+        return nameId < counts.length ? counts[nameId] : 0;
+    }
+
+    /**
+     * Removes every item from the index.
+     */
+    public void clear() {
+        Arrays.fill(byName, null);
+        Arrays.fill(counts, 0);
+        byLower.clear();
+        trigrams.clear();
+    }
+
+    /**
+     * Visits the items whose name starts with some text, ignoring case. Names are visited in
+     * alphabetical order of their lower case form.
+     * @param prefix
+     * The text the names must start with.
+     * @param visitor
+     * Receives each matching item, and returns false to stop the search.
+     */
+    public void findPrefix(String prefix, Predicate<ItemInfo> visitor) {
+        // The Big-O notation of this method is O(log d + r), where d is the number of
+        // distinct names and r the number of names and items visited.
+        String lower = prefix.toLowerCase(Locale.ROOT);
+        for (NameEntry entry : byLower.tailMap(lower, true).values()) {
+            if (!entry.lower.startsWith(lower) || !visit(entry, visitor)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Visits the items whose name contains some text, ignoring case. Names are visited in
+     * alphabetical order of their lower case form.
+     * @param text
+     * The text the names must contain.
+     * @param visitor
+     * Receives each matching item, and returns false to stop the search.
+     */
+    public void findContaining(String text, Predicate<ItemInfo> visitor) {
+        // The Big-O notation of this method is O(p log p + r), where p is the number of names
+        // sharing the rarest three-character run of the text and r the number of items
+        // visited. Text shorter than three characters checks every distinct name instead.
+        String lower = text.toLowerCase(Locale.ROOT);
+        List<NameEntry> matches = new ArrayList<>();
+        if (lower.length() < 3) {
+            for (NameEntry entry : byLower.values()) {
+                if (entry.lower.contains(lower)) {
+                    matches.add(entry);
+                }
+            }
+        }
+        else {
+            Set<NameEntry> rarest = null;
+            for (int i = 0; i + 3 <= lower.length(); i++) {
+                Set<NameEntry> posting = trigrams.get(trigram(lower, i));
+                if (posting == null) {
+                    return;
+                }
+                if (rarest == null || posting.size() < rarest.size()) {
+                    rarest = posting;
+                }
+            }
+            for (NameEntry entry : rarest) {
+                if (entry.lower.contains(lower)) {
+                    matches.add(entry);
+                }
+            }
+            matches.sort((a, b) -> a.lower.compareTo(b.lower));
+        }
+        for (NameEntry entry : matches) {
+            if (!visit(entry, visitor)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * A helper method to visit every item of every name in an entry.
+     * @param entry
+     * The entry to visit.
+     * @param visitor
+     * Receives each item, and returns false to stop.
+     * @return
+     * Returns whether the visitor wants more items.
+     */
+    private boolean visit(NameEntry entry, Predicate<ItemInfo> visitor) {
+        for (int i = 0; i < entry.idCount; i++) {
+            int id = entry.ids[i];
+            ItemInfo[] items = byName[id];
+            for (int j = 0; j < counts[id]; j++) {
+                if (!visitor.test(items[j])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A helper method to remove an item from one name's array, moving the last item of the
+     * array into its slot.
+     * @param id
+     * The name id the item is filed under.
+     * @param item
+     * The item to remove.
+     */
+    private void removeFrom(int id, ItemInfo item) {
+        ItemInfo[] items = byName[id];
+        int slot = item.getNameSlot();
+        if (items == null || slot >= counts[id] || items[slot] != item) {
+            return;
+        }
+        int last = --counts[id];
+        items[slot] = items[last];
+        items[slot].setNameSlot(slot);
+        items[last] = null;
+        if (last == 0) {
+            byName[id] = null;
+            removeName(id);
+        }
+    }
+
+    /**
+     * A helper method to make a name searchable once the first item with it is added.
+     * @param id
+     * The name id.
+     */
+    private void addName(int id) {
+        String lower = NameDictionary.nameOf(id).toLowerCase(Locale.ROOT);
+        NameEntry entry = byLower.get(lower);
+        if (entry == null) {
+            entry = new NameEntry(lower);
+            byLower.put(lower, entry);
+            for (int i = 0; i + 3 <= lower.length(); i++) {
+                trigrams.computeIfAbsent(trigram(lower, i), key -> new HashSet<>()).add(entry);
+            }
+        }
+        if (entry.idCount == entry.ids.length) {
+            entry.ids = Arrays.copyOf(entry.ids, entry.ids.length * 2);
+        }
+        entry.ids[entry.idCount++] = id;
+    }
+
+    /**
+     * A helper method to stop a name being searchable once its last item is removed.
+     * @param id
+     * The name id.
+     */
+    private void removeName(int id) {
+        String lower = NameDictionary.nameOf(id).toLowerCase(Locale.ROOT);
+        NameEntry entry = byLower.get(lower);
+        for (int i = 0; i < entry.idCount; i++) {
+            if (entry.ids[i] == id) {
+                entry.ids[i] = entry.ids[--entry.idCount];
+                break;
+            }
+        }
+        if (entry.idCount > 0) {
+            return;
+        }
+        byLower.remove(lower);
+        for (int i = 0; i + 3 <= lower.length(); i++) {
+            Long key = trigram(lower, i);
+            Set<NameEntry> posting = trigrams.get(key);
+            if (posting != null) {
+                posting.remove(entry);
+                if (posting.isEmpty()) {
+                    trigrams.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * A helper method to pack three characters of a string into one key.
+     * @param s
+     * The string.
+     * @param i
+     * The index of the first of the three characters.
+     * @return
+     * Returns the key.
+     */
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    /**
+     * The <code>NameEntry</code> class is one distinct lower case name and the ids of the
+     * names that have that lower case form, such as "Milk" and "MILK".
+     */
+    private static class NameEntry {
+        private final String lower;
+        private int[] ids;
+        private int idCount;
+
+        NameEntry(String lower) {
+            this.lower = lower;
+            this.ids = new int[1];
+        }
+    }
+}
@@ -0,0 +1,96 @@
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * The <code>PurgeScheduler</code> class removes purchased items from an <code>ItemList</code>
+ * in the background, a bounded batch at a time, and hands them to an archive.
+ * <p>
+ * It runs as a <code>ScheduledListTask</code>, so each batch holds the monitor of the list,
+ * and the lock is released between batches so that checkouts are never held up for long.
+ */
+public class PurgeScheduler implements Closeable {
+    private ItemList list;
+    private int batchSize;
+    private Consumer<ItemInfo> archive;
+    private ScheduledListTask task;
+    private AtomicLong purged;
+
+    /**
+     * Parameterized constructor which starts purging right away.
+     * @param list
+     * The list to purge.
+     * @param batchSize
+     * The largest number of items to remove while holding the lock.
+     * @param period
+     * The time to wait after one purge has emptied the purchased items before the next.
+     * @param unit
+     * The unit of <code>period</code>.
+     * @param archive
+     * Receives each removed item. It is called while the list is locked.
+     * @throws IllegalArgumentException
+     * Indicates that the batch size or period is not positive.
+     */
+    public PurgeScheduler(ItemList list, int batchSize, long period, TimeUnit unit, Consumer<ItemInfo> archive) {
+        if (batchSize <= 0 || period <= 0) {
+            throw new IllegalArgumentException("Batch size and period must be positive.");
+        }
+        this.list = list;
+        this.batchSize = batchSize;
+        this.archive = archive;
+        this.purged = new AtomicLong();
+        this.task = new ScheduledListTask(list, "item-purge", this::purgeBatches);
+        task.start(period, unit);
+    }
+
+    /**
+     * Removes purchased items batch by batch until none are left.
+     * @return
+     * Returns the number of items removed, or 0 if a batch failed.
+     */
+    public int purge() {
+        return task.run();
+    }
+
+    /**
+     * A helper method to remove purchased items batch by batch, locking the list for each.
+     * @return
+     * Returns the number of items removed.
+     */
+    private int purgeBatches() {
+        int total = 0;
+        int removed;
+        do {
+            removed = task.locked(() -> list.purgePurchased(batchSize, archive));
+            total += removed;
+            purged.addAndGet(removed);
+        } while (removed == batchSize);
+        return total;
+    }
+
+    /**
+     * Gets the number of items removed since the scheduler started.
+     * @return
+     * Returns the number of items purged.
+     */
+    public long getPurgedCount() {
+        return purged.get();
+    }
+
+    /**
+     * Gets the last error thrown by a purge, such as a failing archive.
+     * @return
+     * Returns the last error, or null if there has been none.
+     */
+    public RuntimeException getLastError() {
+        return task.getLastError();
+    }
+
+    /**
+     * Stops purging, waiting for a purge that is running to finish.
+     */
+    public void close() {
+        task.close();
+    }
+}
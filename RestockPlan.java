@@ -0,0 +1,124 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The <code>RestockPlan</code> class lists the misplaced items of a store grouped by the
+ * shelf they belong on, so that staff can put them back one shelf at a time instead of in
+ * rfid tag order. Within a shelf the moves are in list order. See
+ * <code>ItemList.planRestock</code>.
+ */
+public class RestockPlan {
+    private SortedMap<String, List<Move>> shelves;
+    private int moveCount;
+
+    /**
+     * Parameterized constructor for creating a plan.
+     * @param shelves
+     * The moves to make, keyed by the shelf position they put items back on.
+     */
+    public RestockPlan(SortedMap<String, List<Move>> shelves) {
+        SortedMap<String, List<Move>> copy = new TreeMap<>();
+        for (SortedMap.Entry<String, List<Move>> shelf : shelves.entrySet()) {
+            copy.put(shelf.getKey(), Collections.unmodifiableList(shelf.getValue()));
+            moveCount += shelf.getValue().size();
+        }
+        this.shelves = Collections.unmodifiableSortedMap(copy);
+    }
+
+    /**
+     * Gets the moves of every shelf.
+     * @return
+     * Returns the moves keyed by shelf position, in shelf order.
+     */
+    public SortedMap<String, List<Move>> getShelves() {
+        return shelves;
+    }
+
+    /**
+     * Gets the moves that put items back on a shelf.
+     * @param shelf
+     * The shelf position.
+     * @return
+     * Returns the moves in list order, or an empty list if no item belongs back there.
+     */
+    public List<Move> getMoves(String shelf) {
+        return shelves.getOrDefault(shelf, Collections.emptyList());
+    }
+
+    /**
+     * Gets the number of moves in the plan.
+     * @return
+     * Returns the number of misplaced items.
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Returns a one line summary of the plan.
+     * @return
+     * Returns the number of items and shelves in the plan.
+     */
+    public String toString() {
+        return moveCount + " item(s) to put back on " + shelves.size() + " shelf(s).";
+    }
+
+    /**
+     * The <code>Move</code> class is one item of a plan and where it was when the plan was
+     * made.
+     */
+    public static class Move {
+        private ItemInfo item;
+        private int from;
+
+        /**
+         * Parameterized constructor for creating a move.
+         * @param item
+         * The misplaced item.
+         * @param from
+         * The location code the item was at when the plan was made.
+         */
+        public Move(ItemInfo item, int from) {
+            this.item = item;
+            this.from = from;
+        }
+
+        /**
+         * Gets the item to move.
+         * @return
+         * Returns the item.
+         */
+        public ItemInfo getItem() {
+            return item;
+        }
+
+        /**
+         * Gets the location code the item was at when the plan was made.
+         * @return
+         * Returns the location code.
+         */
+        public int getFromCode() {
+            return from;
+        }
+
+        /**
+         * Gets the location the item was at when the plan was made.
+         * @return
+         * Returns the shelf position.
+         */
+        public String getFrom() {
+            return ItemCodes.decodeLocation(from);
+        }
+
+        /**
+         * Gets the shelf the item belongs on.
+         * @return
+         * Returns the original location of the item.
+         */
+        public String getTo() {
+            return item.getOriginalLocation();
+        }
+    }
+}
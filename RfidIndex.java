@@ -0,0 +1,214 @@
+import java.util.Arrays;
+
+/**
+ * The <code>RfidIndex</code> class is used for looking up item nodes by rfid tag number.
+ * It is an open addressing hash table keyed on the 9 hex digit tag packed into a long.
+ * Nodes with the same tag sit next to each other in the sorted list, so each key only
+ * holds the first of them and the rest are reached by following next links.
+ */
+public class RfidIndex {
+    private static final long EMPTY = -1L;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys;
+    private ItemInfoNode[] values;
+    private int size;
+
+    /**
+     * Default constructor which initializes this object to an empty index.
+     */
+    public RfidIndex() {
+        this.keys = new long[INITIAL_CAPACITY];
+        this.values = new ItemInfoNode[INITIAL_CAPACITY];
+        Arrays.fill(keys, EMPTY);
+        this.size = 0;
+    }
+
+    /**
+     * Packs an rfid tag number into a long. Hex digits are read case insensitively, so
+     * "00000abcd" and "00000ABCD" pack to the same key.
+     * @param rfidTag
+     * The 9 character hexadecimal rfid tag number.
+     * @return
+     * Returns the packed tag.
+     */
+    public static long pack(String rfidTag) {
+        return ItemCodes.packTag(rfidTag);
+    }
+
+    /**
+     * Gets the first node in the list with the given tag. The other nodes with that tag
+     * follow it directly.
+     * @param tag
+     * The packed rfid tag.
+     * @return
+     * Returns the first node with that tag, or null if there is none.
+     */
+    public ItemInfoNode get(long tag) {
+        // The Big-O notation of this method is O(1) on average.
+        int slot = find(tag);
+        return slot < 0 ? null : values[slot];
+    }
+
+    /**
+     * Adds a node to the index. The node must be linked, or about to be linked, in front
+     * of any node already holding the same tag, which is where <code>insertInfo</code> puts it.
+     * @param tag
+     * The packed rfid tag.
+     * @param node
+     * The node to add.
+     */
+    public void add(long tag, ItemInfoNode node) {
+        int slot = find(tag);
+        if (slot >= 0) {
+            values[slot] = node;
+            return;
+        }
+        if ((size + 1) * 4 > keys.length * 3) {
+            resize(keys.length * 2);
+        }
+        slot = indexFor(tag, keys.length);
+        while (keys[slot] != EMPTY) {
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        keys[slot] = tag;
+        values[slot] = node;
+        size++;
+    }
+
+    /**
+     * Removes a node from the index. This must be called before the node is unlinked
+     * from the list, so that the next node with the same tag can be found.
+     * @param tag
+     * The packed rfid tag.
+     * @param node
+     * The node to remove.
+     */
+    public void remove(long tag, ItemInfoNode node) {
+        int slot = find(tag);
+        if (slot < 0 || values[slot] != node) {
+            return;
+        }
+        ItemInfoNode next = node.getNext();
+        if (next != null && next.getData().getRfidTag() == tag) {
+            values[slot] = next;
+        }
+        else {
+            deleteSlot(slot);
+        }
+    }
+
+    /**
+     * Grows the table ahead of time so that it can hold a number of distinct tags
+     * without resizing along the way.
+     * @param tags
+     * The number of distinct tags the index should be able to hold.
+     */
+    public void ensureCapacity(int tags) {
+        int capacity = keys.length;
+        while (tags * 4L > capacity * 3L) {
+            capacity *= 2;
+        }
+        if (capacity > keys.length) {
+            resize(capacity);
+        }
+    }
+
+    /**
+     * Removes every node from the index.
+     */
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Gets the number of distinct tags in the index.
+     * @return
+     * Returns the number of distinct tags.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * A helper method to find the slot holding a tag.
+     * @param tag
+     * The packed rfid tag.
+     * @return
+     * Returns the slot, or -1 if the tag is not in the index.
+     */
+    private int find(long tag) {
+        int mask = keys.length - 1;
+        int slot = indexFor(tag, keys.length);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == tag) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * A helper method to empty a slot, shifting back any later entries of the same
+     * probe run so that lookups never stop early.
+     * @param slot
+     * The slot to empty.
+     */
+    private void deleteSlot(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = indexFor(keys[next], keys.length);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        values[hole] = null;
+        size--;
+    }
+
+    /**
+     * A helper method to grow the table.
+     * @param capacity
+     * The new capacity, which must be a power of two.
+     */
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        ItemInfoNode[] oldValues = values;
+        keys = new long[capacity];
+        values = new ItemInfoNode[capacity];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = indexFor(oldKeys[i], capacity);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * A helper method to spread a tag over the table.
+     * @param tag
+     * The packed rfid tag.
+     * @param capacity
+     * The capacity of the table.
+     * @return
+     * Returns the home slot of the tag.
+     */
+    private static int indexFor(long tag, int capacity) {
+        long h = tag * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (capacity - 1);
+    }
+}
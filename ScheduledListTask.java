@@ -0,0 +1,115 @@
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The <code>ScheduledListTask</code> class runs upkeep on an <code>ItemList</code> in the
+ * background, such as purging purchased items or evicting idle carts.
+ * <p>
+ * An <code>ItemList</code> is not thread safe, so the task changes it only inside
+ * <code>locked</code>, which holds the monitor of the list. Any other thread using the list
+ * while a task is scheduled must synchronize on the list too. A task that throws is kept as
+ * the last error and tried again at the next run, since an executor never runs a task again
+ * once it has thrown.
+ */
+public class ScheduledListTask implements Closeable {
+    private ItemList list;
+    private IntSupplier task;
+    private ScheduledExecutorService executor;
+    private volatile RuntimeException lastError;
+
+    /**
+     * Parameterized constructor for a task that is not scheduled yet.
+     * @param list
+     * The list the task works on.
+     * @param threadName
+     * The name of the daemon thread the task runs on.
+     * @param task
+     * The work of one run. It returns how many items or carts it handled, and should only
+     * touch the list inside <code>locked</code>.
+     */
+    public ScheduledListTask(ItemList list, String threadName, IntSupplier task) {
+        this.list = list;
+        this.task = task;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts running the task in the background, waiting a fixed time after each run
+     * before the next.
+     * @param period
+     * The time between runs.
+     * @param unit
+     * The unit of <code>period</code>.
+     * @throws IllegalArgumentException
+     * Indicates that the period is not positive.
+     */
+    public void start(long period, TimeUnit unit) throws IllegalArgumentException {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive.");
+        }
+        executor.scheduleWithFixedDelay(this::run, period, period, unit);
+    }
+
+    /**
+     * Runs the task once on the calling thread.
+     * @return
+     * Returns what the task returned, or 0 if it threw.
+     */
+    public int run() {
+        try {
+            return task.getAsInt();
+        }
+        catch (RuntimeException e) {
+            lastError = e;
+            return 0;
+        }
+    }
+
+    /**
+     * Runs one step of the task while holding the monitor of the list.
+     * @param step
+     * The step to run.
+     * @return
+     * Returns what the step returned.
+     */
+    public <T> T locked(Supplier<T> step) {
+        synchronized (list) {
+            return step.get();
+        }
+    }
+
+    /**
+     * Gets the last error thrown by a run.
+     * @return
+     * Returns the last error, or null if there has been none.
+     */
+    public RuntimeException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Stops running the task, waiting for a run that is in progress to finish. When the
+     * calling thread holds the monitor of the list, a run in progress could be waiting for
+     * it, so it is left to finish once the monitor is released instead.
+     */
+    public void close() {
+        executor.shutdown();
+        if (Thread.holdsLock(list)) {
+            return;
+        }
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
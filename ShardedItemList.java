@@ -0,0 +1,427 @@
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The <code>ShardedItemList</code> class is an item store that splits its items across
+ * several independent <code>ItemList</code> shards, so that threads working on different
+ * shards never wait for each other.
+ * <p>
+ * Items are assigned to a shard by a hash of their rfid tag number. Every item with a given
+ * tag therefore lives in the same shard, which lets <code>insertInfo</code>,
+ * <code>moveItem</code> and <code>printByRFID</code> go straight to one shard and keeps the
+ * order of items sharing a tag exactly as one <code>ItemList</code> would have it. Those
+ * operations are checked by the shard alone; a tag that does not parse is still sent to
+ * some shard, which rejects it with the same message as one list would. The other
+ * operations run on every shard in parallel and their rows are merged back into rfid tag
+ * order, so the output is the same as from a single list. When the report has a page, each
+ * shard keeps no more rows than the page can use, and the merge stops once it is full.
+ * <p>
+ * Each shard is locked while it is used. An operation that spans every shard locks them one
+ * at a time, so it is not atomic with respect to other threads.
+ */
+public class ShardedItemList implements ItemStore {
+    private ItemList[] shards;
+    private PrintStream out;
+
+    /**
+     * Parameterized constructor which creates a store with a number of empty shards.
+     * @param shardCount
+     * The number of shards, typically the number of cores.
+     * @throws IllegalArgumentException
+     * Indicates that the shard count is not positive.
+     */
+    public ShardedItemList(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive.");
+        }
+        this.shards = new ItemList[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new ItemList();
+        }
+        this.out = System.out;
+    }
+
+    /**
+     * Sets where the tables printed by this store are written. By default they go to
+     * <code>System.out</code>.
+     * @param out
+     * The stream to print to.
+     */
+    public void setOutput(PrintStream out) {
+        this.out = out;
+        for (ItemList shard : shards) {
+            synchronized (shard) {
+                shard.setOutput(out);
+            }
+        }
+    }
+
+    /**
+     * Sets the ring every shard publishes its changes to. The ring takes events from
+     * several threads at once, so the shards can share it.
+     * @param events
+     * The ring to publish to, or null to stop publishing.
+     */
+    public void setEvents(ItemEventRing events) {
+        for (ItemList shard : shards) {
+            synchronized (shard) {
+                shard.setEvents(events);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of shards.
+     * @return
+     * Returns the number of shards.
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * A method to insert items into the store.
+     * @param name
+     * The name of the item to insert.
+     * @param rfidTag
+     * The rfidTag number of the item to insert.
+     * @param price
+     * The price of the item to insert.
+     * @param initPosition
+     * The initial position of the item to insert.
+     */
+    public void insertInfo(String name, String rfidTag, double price, String initPosition) throws IllegalArgumentException {
+        // The Big-O notation of this method is O(log(n / s)) expected for s shards.
+        ItemList shard = shardFor(ItemCodes.parseTag(rfidTag));
+        synchronized (shard) {
+            shard.insertInfo(name, rfidTag, price, initPosition);
+        }
+    }
+
+    /**
+     * A method to move the item from a source location to a dest location.
+     * @param rfidTag
+     * The rfidTag number of the item to be moved.
+     * @param source
+     * The source location of the item to be moved.
+     * @param dest
+     * The destination location of the item to be moved.
+     * @return
+     * Return whether the item was found.
+     */
+    public boolean moveItem(String rfidTag, String source, String dest) throws IllegalArgumentException {
+        // The Big-O notation of this method is O(k) on average, where k is the number of
+        // items sharing the tag.
+        ItemList shard = shardFor(ItemCodes.parseTag(rfidTag));
+        synchronized (shard) {
+            return shard.moveItem(rfidTag, source, dest);
+        }
+    }
+
+    /**
+     * A method to print a neatly formatted list of all items in the store.
+     */
+    public void printAll() {
+        ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+        printAll(report);
+        report.finish();
+    }
+
+    /**
+     * A method to write all items in the store to a report.
+     * @param report
+     * The report to write to. The caller finishes it.
+     */
+    public void printAll(ItemReportWriter report) {
+        // The Big-O notation of this method is O(n log s) for s shards: O(n / s) per shard in
+        // parallel, then a merge of the shards.
+        RowCollector[] rows = fanOut(report, (shard, collector) -> shard.printAllRows(collector));
+        report.header();
+        merge(rows, report);
+    }
+
+    /**
+     * Prints a neatly formatted list of all items in a specified location.
+     * @param location
+     * The location of the items to be printed in the table.
+     */
+    public void printByLocation(String location) {
+        ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+        printByLocation(location, report);
+        report.finish();
+    }
+
+    /**
+     * Writes all items in a specified location to a report.
+     * @param location
+     * The location of the items to write.
+     * @param report
+     * The report to write to. The caller finishes it.
+     */
+    public void printByLocation(String location, ItemReportWriter report) {
+        // The Big-O notation of this method is O(k log k) for the k items at the location.
+        int code = ItemList.checkLocation(location);
+        RowCollector[] rows = fanOut(report, (shard, collector) -> shard.printByLocationRows(code, collector));
+        report.header();
+        merge(rows, report);
+    }
+
+    /**
+     * A method to print all items that have the same rfid number.
+     * @param rfid
+     * The rfid of the items.
+     */
+    public void printByRFID(String rfid) {
+        ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+        printByRFID(rfid, report);
+        report.finish();
+    }
+
+    /**
+     * A method to write all items that have the same rfid number to a report.
+     * @param rfid
+     * The rfid of the items.
+     * @param report
+     * The report to write to. The caller finishes it.
+     */
+    public void printByRFID(String rfid, ItemReportWriter report) {
+        ItemList shard = shardFor(ItemCodes.parseTag(rfid));
+        synchronized (shard) {
+            shard.printByRFID(rfid, report);
+        }
+    }
+
+    /**
+     * A method to take every item that is in the store and on the wrong shelf and place it where
+     * it belongs.
+     */
+    public void cleanStore() {
+        ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+        cleanStore(report);
+        report.finish();
+    }
+
+    /**
+     * A method to put every misplaced item back on its shelf, writing them to a report as
+     * they were before the move.
+     * @param report
+     * The report to write the moved items to. The caller finishes it.
+     */
+    public void cleanStore(ItemReportWriter report) {
+        // The Big-O notation of this method is O(k log k) for the k misplaced items, spread
+        // over the shards.
+        RowCollector[] rows = fanOut(report, (shard, collector) -> shard.cleanStoreRows(collector));
+        report.title("The following items(s) have been moved back to their original locations: ");
+        report.header();
+        report.setCurrentFirst(true);
+        merge(rows, report);
+    }
+
+    /**
+     * A method that checks out each item in a cart.
+     * @param cartNumber
+     * The cart number to check out.
+     * @return
+     * Returns the total price of all items in that cart.
+     */
+    public double checkOut(String cartNumber) {
+        ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+        double total = checkOut(cartNumber, report);
+        report.finish();
+        return total;
+    }
+
+    /**
+     * A method that checks out each item in a cart, writing them to a report.
+     * @param cartNumber
+     * The cart number to check out.
+     * @param report
+     * The report to write the checked out items to. The caller finishes it.
+     * @return
+     * Returns the total price of all items in that cart, added up in cents across shards.
+     */
+    public double checkOut(String cartNumber, ItemReportWriter report) {
+        // The Big-O notation of this method is O(k log k) for the k items in the cart.
+        int cart = ItemList.checkCart(cartNumber);
+        RowCollector[] rows = fanOut(report, (shard, collector) -> shard.checkOutCents(cart, collector));
+        report.header();
+        merge(rows, report);
+        long cents = 0;
+        for (RowCollector collector : rows) {
+            cents += collector.totalCents();
+        }
+        return ItemCodes.toDollars(cents);
+    }
+
+    /**
+     * A method to remove all purchased items from the store and display them.
+     */
+    public void removeAllPurchased() {
+        ItemReportWriter report = new ItemReportWriter(out, ItemReportWriter.Format.TABLE);
+        removeAllPurchased(report);
+        report.finish();
+    }
+
+    /**
+     * A method to remove all purchased items from the store, writing them to a report.
+     * @param report
+     * The report to write the removed items to. The caller finishes it.
+     */
+    public void removeAllPurchased(ItemReportWriter report) {
+        // The Big-O notation of this method is O(k log k) for the k purchased items, spread
+        // over the shards.
+        RowCollector[] rows = fanOut(report, (shard, collector) -> shard.removeAllPurchasedRows(collector));
+        report.title("The following items(s) have been removed from the system: ");
+        report.header();
+        merge(rows, report);
+    }
+
+    /**
+     * Gets the number of items in the store.
+     * @return
+     * Returns the number of items across every shard.
+     */
+    public int size() {
+        int size = 0;
+        for (ItemList shard : shards) {
+            synchronized (shard) {
+                size += shard.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * A helper method to pick the shard holding a tag.
+     * @param tag
+     * The packed rfid tag, or -1 for a tag that does not parse.
+     * @return
+     * Returns the shard for the tag.
+     */
+    private ItemList shardFor(long tag) {
+        return shards[(int) Long.remainderUnsigned(tag * 0x9E3779B97F4A7C15L, shards.length)];
+    }
+
+    /**
+     * A helper method to run an operation on every shard in parallel, each writing its rows
+     * to a collector of its own.
+     * @param report
+     * The report the rows will be merged into. No shard keeps more rows than its page can
+     * still use, since the rows of the page come from the first rows of each shard.
+     * @param operation
+     * The operation to run on each shard.
+     * @return
+     * Returns the collected rows of each shard, in shard order.
+     */
+    private RowCollector[] fanOut(ItemReportWriter report, ShardOperation operation) {
+        long max = report.getRowsToPageEnd();
+        RowCollector[] rows = new RowCollector[shards.length];
+        IntStream.range(0, shards.length).parallel().forEach(i -> {
+            RowCollector collector = new RowCollector(max);
+            synchronized (shards[i]) {
+                operation.run(shards[i], collector);
+            }
+            rows[i] = collector;
+        });
+        return rows;
+    }
+
+    /**
+     * A helper method to write the rows of every shard in rfid tag order, until the page of
+     * the report is full. Since a tag only lives in one shard, each run of equal tags is
+     * copied from its shard as it is.
+     * @param rows
+     * The rows of each shard, each already in list order.
+     * @param report
+     * The report to write to.
+     */
+    private static void merge(RowCollector[] rows, ItemReportWriter report) {
+        // The Big-O notation of this method is O(k s) for the k rows up to the end of the
+        // page and s shards.
+        int[] next = new int[rows.length];
+        while (true) {
+            int best = -1;
+            for (int i = 0; i < rows.length; i++) {
+                if (next[i] < rows[i].size()
+                        && (best < 0 || rows[i].tag(next[i]) < rows[best].tag(next[best]))) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                return;
+            }
+            long tag = rows[best].tag(next[best]);
+            do {
+                if (!rows[best].write(next[best]++, report)) {
+                    return;
+                }
+            } while (next[best] < rows[best].size() && rows[best].tag(next[best]) == tag);
+        }
+    }
+
+    /**
+     * The <code>ShardOperation</code> interface is an operation run on one shard.
+     */
+    private interface ShardOperation {
+        void run(ItemList shard, ItemRowSink collector);
+    }
+
+    /**
+     * The <code>RowCollector</code> class is a sink that keeps the rows of one shard, so that
+     * the rows of several shards can be merged. It keeps at most a set number of rows, but
+     * adds up the price of every row it is given.
+     */
+    private static class RowCollector implements ItemRowSink {
+        private String[] names = new String[16];
+        private long[] tags = new long[16];
+        private int[] originals = new int[16];
+        private int[] currents = new int[16];
+        private long[] prices = new long[16];
+        private int size;
+        private long max;
+        private long totalCents;
+
+        RowCollector(long max) {
+            this.max = max;
+        }
+
+        public boolean item(String name, long tag, int originalLocation, int currentLocation, long priceCents) {
+            totalCents += priceCents;
+            if (size >= max) {
+                return false;
+            }
+            if (size == tags.length) {
+                int capacity = size * 2;
+                names = Arrays.copyOf(names, capacity);
+                tags = Arrays.copyOf(tags, capacity);
+                originals = Arrays.copyOf(originals, capacity);
+                currents = Arrays.copyOf(currents, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+            }
+            names[size] = name;
+            tags[size] = tag;
+            originals[size] = originalLocation;
+            currents[size] = currentLocation;
+            prices[size] = priceCents;
+            size++;
+            return size < max;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long tag(int row) {
+            return tags[row];
+        }
+
+        long totalCents() {
+            return totalCents;
+        }
+
+        boolean write(int row, ItemReportWriter report) {
+            return report.item(names[row], tags[row], originals[row], currents[row], prices[row]);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The <code>StoreLoadClient</code> class drives a <code>StoreServer</code> the way a room full
+ * of register terminals would, and reports the throughput and latency it sees.
+ * <p>
+ * Each connection first inserts its own items, then sends a mix of moves, lookups and
+ * checkouts, timing every request from send to answer.
+ * <p>
+ * Usage: <code>java StoreLoadClient [host] [port] [connections] [requestsPerConnection]</code>
+ */
+public class StoreLoadClient {
+    private static final int ITEMS_PER_CONNECTION = 500;
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7214;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int requests = args.length > 3 ? Integer.parseInt(args[3]) : 2000;
+        long[][] latencies = new long[connections][];
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        CountDownLatch ready = new CountDownLatch(connections);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[connections];
+        for (int c = 0; c < connections; c++) {
+            int id = c;
+            threads[c] = new Thread(() -> {
+                try (Socket socket = new Socket(host, port)) {
+                    socket.setTcpNoDelay(true);
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                    Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+                    for (int item = 0; item < ITEMS_PER_CONNECTION; item++) {
+                        request(in, out, "INSERT " + tag(id, item) + " 1.99 " + shelf(id) + " load" + id);
+                    }
+                    ready.countDown();
+                    start.await();
+                    latencies[id] = run(in, out, id, requests);
+                    request(in, out, "QUIT");
+                }
+                catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                    ready.countDown();
+                }
+            });
+            threads[c].start();
+        }
+        ready.await();
+        long began = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - began;
+        if (failure.get() != null) {
+            System.out.println("FAILED: " + failure.get());
+            System.exit(1);
+        }
+        long[] all = new long[connections * requests];
+        for (int c = 0; c < connections; c++) {
+            System.arraycopy(latencies[c], 0, all, c * requests, requests);
+        }
+        Arrays.sort(all);
+        System.out.printf("%d connections, %d requests in %.1f ms: %.0f requests/s%n", connections, all.length,
+                elapsed / 1e6, all.length / (elapsed / 1e9));
+        System.out.printf("latency us: p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n", percentile(all, 0.50),
+                percentile(all, 0.90), percentile(all, 0.99), percentile(all, 0.999), all[all.length - 1] / 1e3);
+    }
+
+    /**
+     * A helper method to send one connection's timed requests.
+     * @return
+     * Returns the latency of each request in nanoseconds.
+     */
+    private static long[] run(BufferedReader in, Writer out, int id, int requests) throws IOException {
+        Random random = new Random(id);
+        long[] latencies = new long[requests];
+        String cart = String.format("c%03d", id % 1000);
+        for (int r = 0; r < requests; r++) {
+            int choice = random.nextInt(10);
+            String command;
+            if (choice < 6) {
+                String item = tag(id, random.nextInt(ITEMS_PER_CONNECTION));
+                command = random.nextBoolean() ? "MOVE " + item + " " + shelf(id) + " " + cart : "MOVE " + item + " " + cart + " " + shelf(id);
+            }
+            else if (choice < 9) {
+                command = "LOCATE " + tag(id, random.nextInt(ITEMS_PER_CONNECTION));
+            }
+            else {
+                command = "CHECKOUT " + cart;
+            }
+            long sent = System.nanoTime();
+            request(in, out, command);
+            latencies[r] = System.nanoTime() - sent;
+        }
+        return latencies;
+    }
+
+    /**
+     * A helper method to send one command and read its one line answer.
+     */
+    private static String request(BufferedReader in, Writer out, String command) throws IOException {
+        out.write(command);
+        out.write('\n');
+        out.flush();
+        if (command.equals("QUIT")) {
+            return null;
+        }
+        String answer = in.readLine();
+        if (answer == null || answer.startsWith("ERROR")) {
+            throw new IOException("Request \"" + command + "\" failed: " + answer);
+        }
+        return answer;
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))] / 1e3;
+    }
+
+    private static String tag(int id, int item) {
+        return String.format("%09X", (long) id * ITEMS_PER_CONNECTION + item);
+    }
+
+    private static String shelf(int id) {
+        return String.format("s%05d", id % 100000);
+    }
+}
@@ -0,0 +1,224 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The <code>StoreServer</code> class lets many register terminals drive one inventory over a
+ * local TCP socket. Every connection is served on its own thread, and all of them share one
+ * <code>ConcurrentItemList</code>.
+ * <p>
+ * The protocol is one command per line, answered by one line starting with <code>OK</code>,
+ * <code>NOT_FOUND</code> or <code>ERROR</code>. <code>PRINT</code> answers with the table
+ * followed by a line holding only <code>END</code>.
+ * <pre>
+ * INSERT rfid price location name   OK
+ * MOVE rfid source dest             OK or NOT_FOUND
+ * LOCATE rfid                       OK location...  or NOT_FOUND
+ * CHECKOUT cart                     OK total
+ * CLEAN                             OK
+ * PURGE                             OK
+ * PRINT [location]                  table, then END
+ * QUIT                              closes the connection
+ * </pre>
+ */
+public class StoreServer implements AutoCloseable {
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    private ConcurrentItemList store;
+    private ServerSocket serverSocket;
+    private ExecutorService connections;
+
+    /**
+     * Parameterized constructor which starts listening on the loopback address.
+     * @param store
+     * The store every connection shares.
+     * @param port
+     * The port to listen on, or 0 for any free port.
+     * @throws IOException
+     * Indicates that the port could not be opened.
+     */
+    public StoreServer(ConcurrentItemList store, int port) throws IOException {
+        this.store = store;
+        this.serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        this.connections = newConnectionExecutor();
+    }
+
+    /**
+     * Gets the port the server is listening on.
+     * @return
+     * Returns the port.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the server is closed.
+     * @throws IOException
+     * Indicates that accepting failed for a reason other than the server closing.
+     */
+    public void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            }
+            catch (IOException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+            socket.setTcpNoDelay(true);
+            connections.execute(() -> handle(socket));
+        }
+    }
+
+    /**
+     * Stops accepting connections and stops the connection threads.
+     * @throws IOException
+     * Indicates that the server socket could not be closed.
+     */
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+
+    /**
+     * Answers the commands of one connection until it quits or disconnects.
+     * @param socket
+     * The connection.
+     */
+    private void handle(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             PrintStream out = new PrintStream(new BufferedOutputStream(s.getOutputStream()), false, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().equalsIgnoreCase("QUIT")) {
+                    break;
+                }
+                execute(line, out);
+                out.flush();
+            }
+        }
+        catch (IOException e) {
+            // The terminal went away; there is nobody left to answer.
+        }
+    }
+
+    /**
+     * Runs one command and writes its answer.
+     * @param line
+     * The command line.
+     * @param out
+     * Where to write the answer.
+     */
+    private void execute(String line, PrintStream out) {
+        String[] words = line.trim().split("\\s+", 5);
+        String command = words[0].toUpperCase();
+        try {
+            switch (command) {
+                case "INSERT":
+                    requireWords(words, 5);
+                    double price;
+                    try {
+                        price = Double.parseDouble(words[2]);
+                    }
+                    catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Price must be a number.");
+                    }
+                    store.insertInfo(words[4], words[1].toUpperCase(), price, words[3].toLowerCase());
+                    out.println("OK");
+                    break;
+                case "MOVE":
+                    requireWords(words, 4);
+                    boolean found = store.moveItem(words[1].toUpperCase(), words[2].toLowerCase(), words[3].toLowerCase());
+                    out.println(found ? "OK" : "NOT_FOUND");
+                    break;
+                case "LOCATE":
+                    requireWords(words, 2);
+                    List<String> locations = store.locationsOf(words[1].toUpperCase());
+                    out.println(locations.isEmpty() ? "NOT_FOUND" : "OK " + String.join(" ", locations));
+                    break;
+                case "CHECKOUT":
+                    requireWords(words, 2);
+                    out.printf("OK %.2f%n", store.checkOut(words[1].toLowerCase(), DISCARD));
+                    break;
+                case "CLEAN":
+                    store.cleanStore(DISCARD);
+                    out.println("OK");
+                    break;
+                case "PURGE":
+                    store.removeAllPurchased(DISCARD);
+                    out.println("OK");
+                    break;
+                case "PRINT":
+                    if (words.length > 1) {
+                        store.printByLocation(words[1].toLowerCase(), out);
+                    }
+                    else {
+                        store.printAll(out);
+                    }
+                    out.println("END");
+                    break;
+                default:
+                    out.println("ERROR Unknown command " + words[0] + ".");
+            }
+        }
+        catch (IllegalArgumentException e) {
+            out.println("ERROR " + e.getMessage());
+        }
+    }
+
+    private static void requireWords(String[] words, int count) {
+        if (words.length < count) {
+            throw new IllegalArgumentException(words[0].toUpperCase() + " needs " + (count - 1) + " argument(s).");
+        }
+    }
+
+    /**
+     * A helper method to make the executor connections run on. Virtual threads are used when
+     * the running Java has them, and ordinary threads otherwise.
+     * @return
+     * Returns the executor.
+     */
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "store-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Starts a server on a port and serves until the process is stopped.
+     * Usage: <code>java StoreServer [port]</code>
+     * @param args
+     * The port to listen on, 7214 by default.
+     * @throws IOException
+     * Indicates that the port could not be opened.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7214;
+        try (StoreServer server = new StoreServer(new ConcurrentItemList(), port)) {
+            System.out.println("Serving the store on port " + server.getPort() + ".");
+            server.serve();
+        }
+    }
+}